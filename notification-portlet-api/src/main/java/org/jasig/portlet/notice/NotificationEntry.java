@@ -296,6 +296,29 @@ public class NotificationEntry implements Serializable, Cloneable {
 
     }
 
+    /**
+     * Creates a copy of this entry suitable for copy-on-write use.  Unlike {@link #clone()}, the
+     * copy shares the attributes and states of this entry;  these are only ever replaced (e.g.
+     * with <code>setAttributes</code>), never modified in place, so sharing them is safe.  Actions
+     * are copied (shallowly) because each action refers to the entry to which it is attached.
+     *
+     * @since 4.9
+     */
+    public NotificationEntry shallowCopy() {
+        try {
+            final NotificationEntry rslt = (NotificationEntry) super.clone();
+            final List<NotificationAction> actList = new ArrayList<>(availableActions.size());
+            for (NotificationAction action : availableActions) {
+                actList.add((NotificationAction) action.clone());
+            }
+            rslt.setAvailableActions(actList);
+            return rslt;
+        } catch (CloneNotSupportedException e) {
+            // Per the comment on clone(), should not happen
+            throw new IllegalStateException("Failed to copy entry:  " + id, e);
+        }
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this);
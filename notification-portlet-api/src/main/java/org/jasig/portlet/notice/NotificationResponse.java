@@ -18,16 +18,13 @@
  */
 package org.jasig.portlet.notice;
 
-import static java.util.stream.Collectors.partitioningBy;
-import static java.util.stream.Collectors.toMap;
-
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -154,10 +151,7 @@ public class NotificationResponse implements Serializable, Cloneable {
      * @param response A new {@link NotificationResponse} that contains data from both originals
      */
     public NotificationResponse combine(NotificationResponse response) {
-        NotificationResponse rslt = new NotificationResponse(this);
-        rslt.addCategories(response.getCategories());
-        rslt.addErrors(response.getErrors());
-        return rslt;
+        return new NotificationResponseMerger().add(this).add(response).build();
     }
 
     /**
@@ -186,18 +180,39 @@ public class NotificationResponse implements Serializable, Cloneable {
      */
     public NotificationResponse filter(Predicate<NotificationEntry> predicate) {
 
-        final List<NotificationCategory> filteredCategories = categories.stream()
-                .map(category -> {
-                    final List<NotificationEntry> filteredEntries = category.getEntries().stream()
-                            .filter(predicate)
-                            .collect(Collectors.toList());
-                    return filteredEntries.size() > 0
-                            ? new NotificationCategory(category.getTitle(), filteredEntries)
-                            : null;
-                })
-                .filter(value -> value != null)
-                .collect(Collectors.toList());
-        return new NotificationResponse(filteredCategories, getErrors()); // deep copy
+        final NotificationResponse rslt = transformEntries(entry -> predicate.test(entry) ? entry : null);
+        rslt.categories.removeIf(category -> category.getEntries().isEmpty());
+        return rslt;
+
+    }
+
+    /**
+     * Return a <b>new instance</b> of {@link NotificationResponse} in which each
+     * {@link NotificationEntry} is replaced by the result of the specified function.  The function
+     * may return the entry itself (unchanged), a modified {@link NotificationEntry#shallowCopy()}
+     * of it, or <code>null</code> to remove it.  The category structure is preserved (including
+     * categories that become empty).
+     *
+     * <p>Unlike {@link #cloneIfNotCloned()}, this method copies nothing beyond the category
+     * structure;  the new instance shares entries (and errors) with this one.  Like any response
+     * that is not a clone, it must not be modified in place.
+     *
+     * @since 4.9
+     */
+    public NotificationResponse transformEntries(UnaryOperator<NotificationEntry> transformer) {
+
+        final List<NotificationCategory> cList = new ArrayList<>(categories.size());
+        for (NotificationCategory category : categories) {
+            final List<NotificationEntry> eList = new ArrayList<>(category.getEntries().size());
+            for (NotificationEntry entry : category.getEntries()) {
+                final NotificationEntry transformed = transformer.apply(entry);
+                if (transformed != null) {
+                    eList.add(transformed);
+                }
+            }
+            cList.add(new NotificationCategory(category.getTitle(), eList));
+        }
+        return wrap(cList, new ArrayList<>(errors));
 
     }
 
@@ -257,35 +272,16 @@ public class NotificationResponse implements Serializable, Cloneable {
      * Implementation
      */
 
-    /** 
-     * Insert the given categories and their entries into the any existing
-     * categories of the same title. If a category doesn't match an existing
-     * one, add it to the list.
-     * @param newCategories collection of new categories and their entries.
+    /**
+     * Creates a response that takes ownership of the specified lists (without copying them).  For
+     * use by {@link NotificationResponseMerger}.
      */
-    private void addCategories(List<NotificationCategory> newCategories) {
-        if (newCategories == null) {
-            return;
-        }
-
-        // Start with a deep copy of the method parameter to simplify remaining logic
-        newCategories = newCategories.parallelStream().map(NotificationCategory::cloneNoExceptions).collect(Collectors.toList());
-
-        // Create a map of current categories by title for processing
-        Map<String, NotificationCategory> catsByName =
-                this.categories.parallelStream().collect(toMap(c -> c.getTitle().toLowerCase(), c -> c));
-
-        // Split new categories between those that match an existing category and those that are completely new
-        Map<Boolean, List<NotificationCategory>> matchingNewCats =
-                newCategories.stream()
-                        .collect(partitioningBy(c -> catsByName.containsKey(c.getTitle().toLowerCase())));
-
-        // Add new entries to existing categories
-        matchingNewCats.get(Boolean.TRUE).stream()
-                .forEachOrdered(c -> catsByName.get(c.getTitle().toLowerCase()).addEntries(c.getEntries()));
-
-        // Add new categories
-        this.categories.addAll(matchingNewCats.get(Boolean.FALSE));
+    /* package-private */ static NotificationResponse wrap(List<NotificationCategory> categories,
+            List<NotificationError> errors) {
+        final NotificationResponse rslt = new NotificationResponse();
+        rslt.categories = categories;
+        rslt.errors = errors;
+        return rslt;
     }
 
     private void addErrors(List<NotificationError> newErrors) {
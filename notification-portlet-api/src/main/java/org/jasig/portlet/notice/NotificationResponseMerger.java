@@ -0,0 +1,107 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges any number of {@link NotificationResponse} objects in a single pass.  Categories with the
+ * same title (ignoring case) are combined, and each entry and error is copied exactly once.  The
+ * sources are unchanged.
+ *
+ * <p>This class is the N-way counterpart of {@link NotificationResponse#combine(NotificationResponse)};
+ * prefer it when aggregating more than two responses.  Instances are not thread-safe.
+ *
+ * @since 4.9
+ */
+public final class NotificationResponseMerger {
+
+    private final Map<String,NotificationCategory> categoriesByTitle = new LinkedHashMap<>();
+    private final List<NotificationError> errors = new ArrayList<>();
+
+    /**
+     * Merges all the specified responses into a new {@link NotificationResponse}.
+     */
+    public static NotificationResponse merge(Collection<NotificationResponse> responses) {
+        final NotificationResponseMerger rslt = new NotificationResponseMerger();
+        for (NotificationResponse response : responses) {
+            rslt.add(response);
+        }
+        return rslt.build();
+    }
+
+    /**
+     * Adds (a copy of) the contents of the specified response.
+     */
+    public NotificationResponseMerger add(NotificationResponse response) {
+        for (NotificationCategory category : response.getCategories()) {
+            final String title = category.getTitle();
+            final String key = title != null ? title.toLowerCase() : null;
+            NotificationCategory target = categoriesByTitle.get(key);
+            if (target == null) {
+                target = new NotificationCategory(title, Collections.emptyList());
+                categoriesByTitle.put(key, target);
+            }
+            final List<NotificationEntry> entries = new ArrayList<>(category.getEntries().size());
+            for (NotificationEntry entry : category.getEntries()) {
+                entries.add(cloneEntry(entry));
+            }
+            target.addEntries(entries);
+        }
+        addErrors(response.getErrors());
+        return this;
+    }
+
+    /**
+     * Adds (copies of) the specified errors.
+     */
+    public NotificationResponseMerger addErrors(List<NotificationError> errors) {
+        for (NotificationError error : errors) {
+            this.errors.add(error.cloneNoExceptions());
+        }
+        return this;
+    }
+
+    /**
+     * Provides a new {@link NotificationResponse} containing everything added so far.  The merger
+     * should not be used afterwards.
+     */
+    public NotificationResponse build() {
+        return NotificationResponse.wrap(new ArrayList<>(categoriesByTitle.values()), errors);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static NotificationEntry cloneEntry(NotificationEntry entry) {
+        try {
+            return (NotificationEntry) entry.clone();
+        } catch (CloneNotSupportedException e) {
+            // Per the comment on NotificationEntry.clone(), should not happen
+            throw new IllegalStateException("Failed to clone entry:  " + entry.getId(), e);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.rest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk create:  the ids of the new notifications, how many
+ * events (ISSUED to individual recipients) were written, and how long it took.
+ *
+ * @since 4.9
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonIgnoreProperties(value = "rowsPerSecond", allowGetters = true)
+public class BulkCreateResultDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<Long> notificationIds = new ArrayList<>();
+    private long eventCount;
+    private long elapsedMillis;
+
+
+    public List<Long> getNotificationIds() {
+        return notificationIds;
+    }
+
+
+    public void setNotificationIds(List<Long> notificationIds) {
+        this.notificationIds = notificationIds;
+    }
+
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+
+    /**
+     * Notifications and events written per second.
+     */
+    public long getRowsPerSecond() {
+        final long rows = notificationIds.size() + eventCount;
+        return elapsedMillis > 0 ? rows * 1000L / elapsedMillis : rows;
+    }
+}
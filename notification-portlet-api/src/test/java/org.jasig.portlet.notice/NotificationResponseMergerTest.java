@@ -0,0 +1,97 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests {@link NotificationResponseMerger}.
+ */
+public class NotificationResponseMergerTest {
+
+    @Test
+    public void testMergeCombinesCategoriesByTitle() {
+        final NotificationResponse first = new NotificationResponse(
+                Arrays.asList(category("News", "n1"), category("Alerts", "a1")),
+                Collections.singletonList(new NotificationError("Oops", "first")));
+        final NotificationResponse second = new NotificationResponse(
+                Collections.singletonList(category("news", "n2")),
+                Collections.emptyList());
+        final NotificationResponse third = new NotificationResponse(
+                Collections.singletonList(category("Events", "e1")),
+                Collections.singletonList(new NotificationError("Oops", "third")));
+
+        final NotificationResponse rslt = NotificationResponseMerger.merge(Arrays.asList(first, second, third));
+
+        assertEquals(3, rslt.getCategories().size());
+        assertEquals("News", rslt.getCategories().get(0).getTitle());
+        assertEquals(2, rslt.getCategories().get(0).getEntries().size());
+        assertEquals("n2", rslt.getCategories().get(0).getEntries().get(1).getId());
+        assertEquals("Alerts", rslt.getCategories().get(1).getTitle());
+        assertEquals("Events", rslt.getCategories().get(2).getTitle());
+        assertEquals(2, rslt.getErrors().size());
+        assertEquals(4, rslt.size());
+    }
+
+    @Test
+    public void testMergeCopiesEntries() {
+        final NotificationResponse source = new NotificationResponse(
+                Collections.singletonList(category("News", "n1")),
+                Collections.emptyList());
+
+        final NotificationResponse rslt = NotificationResponseMerger.merge(Collections.singletonList(source));
+
+        final NotificationEntry original = source.getCategories().get(0).getEntries().get(0);
+        final NotificationEntry copy = rslt.getCategories().get(0).getEntries().get(0);
+        assertNotSame(original, copy);
+        copy.setTitle("Changed");
+        assertEquals("Title of n1", original.getTitle());
+        assertEquals(1, source.getCategories().get(0).getEntries().size());
+    }
+
+    @Test
+    public void testCombineMatchesMerge() {
+        final NotificationResponse first = new NotificationResponse(
+                Collections.singletonList(category("News", "n1")),
+                Collections.emptyList());
+        final NotificationResponse second = new NotificationResponse(
+                Collections.singletonList(category("NEWS", "n2")),
+                Collections.emptyList());
+
+        final NotificationResponse combined = first.combine(second);
+
+        assertEquals(1, combined.getCategories().size());
+        assertEquals(2, combined.size());
+        assertEquals(1, first.size());
+    }
+
+    private NotificationCategory category(String title, String entryId) {
+        final NotificationEntry entry = new NotificationEntry();
+        entry.setId(entryId);
+        entry.setTitle("Title of " + entryId);
+        return new NotificationCategory(title, Collections.singletonList(entry));
+    }
+
+}
@@ -18,7 +18,13 @@
  */
 package org.jasig.portlet.notice;
 
+import java.util.concurrent.ExecutorService;
+
 import net.sf.ehcache.CacheManager;
+import org.jasig.portlet.notice.util.StaleWhileRevalidatePolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.ehcache.EhCacheCacheManager;
 import org.springframework.cache.ehcache.EhCacheManagerFactoryBean;
 import org.springframework.context.annotation.Bean;
@@ -28,6 +34,22 @@ import org.springframework.core.io.ClassPathResource;
 @Configuration
 public class CacheConfiguration {
 
+    @Autowired
+    @Qualifier("notificationRevalidationExecutor")
+    private ExecutorService revalidationExecutor;
+
+    @Value("${notificationResponseCache.staleSeconds:300}")
+    private int notificationResponseCacheStaleSeconds;
+
+    @Value("${notificationResponseCache.jitterPercent:20}")
+    private int notificationResponseCacheJitterPercent;
+
+    @Value("${AbstractJdbcNotificationService.responseCache.staleSeconds:300}")
+    private int jdbcResponseCacheStaleSeconds;
+
+    @Value("${AbstractJdbcNotificationService.responseCache.jitterPercent:20}")
+    private int jdbcResponseCacheJitterPercent;
+
     /**
      * Tells Spring Boot to use EhCache for caching.  (Configuration in ehcache.xml)
      */
@@ -42,4 +64,17 @@ public class CacheConfiguration {
         cmfb.setShared(true);
         return cmfb;
     }
+
+    @Bean("notificationResponseCachePolicy")
+    public StaleWhileRevalidatePolicy notificationResponseCachePolicy() {
+        return new StaleWhileRevalidatePolicy(revalidationExecutor, notificationResponseCacheStaleSeconds,
+                notificationResponseCacheJitterPercent);
+    }
+
+    @Bean("AbstractJdbcNotificationService.responseCachePolicy")
+    public StaleWhileRevalidatePolicy jdbcResponseCachePolicy() {
+        return new StaleWhileRevalidatePolicy(revalidationExecutor, jdbcResponseCacheStaleSeconds,
+                jdbcResponseCacheJitterPercent);
+    }
+
 }
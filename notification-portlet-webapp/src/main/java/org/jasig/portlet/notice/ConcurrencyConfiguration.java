@@ -0,0 +1,140 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Thread pools shared by beans that invoke several {@link INotificationService} beans (or remote
+ * sources) on behalf of a single request, and schedulers for background work.
+ *
+ * @since 4.9
+ */
+@Configuration
+public class ConcurrencyConfiguration {
+
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    @Value("${notificationServiceExecutor.poolSize:20}")
+    private int notificationServiceExecutorPoolSize;
+
+    @Value("${notificationServiceExecutor.queueCapacity:500}")
+    private int notificationServiceExecutorQueueCapacity;
+
+    @Value("${notificationRepositoryExecutor.poolSize:20}")
+    private int notificationRepositoryExecutorPoolSize;
+
+    @Value("${notificationRepositoryExecutor.queueCapacity:500}")
+    private int notificationRepositoryExecutorQueueCapacity;
+
+    @Value("${notificationRevalidationExecutor.poolSize:4}")
+    private int notificationRevalidationExecutorPoolSize;
+
+    @Value("${notificationRevalidationExecutor.queueCapacity:100}")
+    private int notificationRevalidationExecutorQueueCapacity;
+
+    /**
+     * Bounded pool for fetching from {@link INotificationService} beans concurrently.  When the
+     * pool and the queue are both full, the calling thread runs the task itself;  the request
+     * degrades to the (old) sequential behavior rather than failing.
+     */
+    @Bean(name = "notificationServiceExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService notificationServiceExecutor() {
+        final ThreadPoolExecutor rslt = new ThreadPoolExecutor(
+                notificationServiceExecutorPoolSize,
+                notificationServiceExecutorPoolSize,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(notificationServiceExecutorQueueCapacity),
+                new CustomizableThreadFactory("notificationService-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        rslt.allowCoreThreadTimeOut(true);
+        return rslt;
+    }
+
+    /**
+     * Bounded pool for the services invoked by the REST API (<code>notificationRepository</code>).
+     * When the pool and the queue are both full, the task is rejected and the service reported as
+     * unavailable;  running it on the calling thread would keep the caller from enforcing its
+     * deadline.
+     */
+    @Bean(name = "notificationRepositoryExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService notificationRepositoryExecutor() {
+        final ThreadPoolExecutor rslt = new ThreadPoolExecutor(
+                notificationRepositoryExecutorPoolSize,
+                notificationRepositoryExecutorPoolSize,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(notificationRepositoryExecutorQueueCapacity),
+                new CustomizableThreadFactory("notificationRepository-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        rslt.allowCoreThreadTimeOut(true);
+        return rslt;
+    }
+
+    /**
+     * Small bounded pool for reloading stale cache elements in the background (see
+     * {@link org.jasig.portlet.notice.util.StaleWhileRevalidatePolicy}).  When the pool and the
+     * queue are both full, the task is rejected;  the stale element remains in use and the
+     * requesting thread never runs the reload itself.
+     */
+    @Bean(name = "notificationRevalidationExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService notificationRevalidationExecutor() {
+        final ThreadPoolExecutor rslt = new ThreadPoolExecutor(
+                notificationRevalidationExecutorPoolSize,
+                notificationRevalidationExecutorPoolSize,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(notificationRevalidationExecutorQueueCapacity),
+                new CustomizableThreadFactory("notificationRevalidation-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        rslt.allowCoreThreadTimeOut(true);
+        return rslt;
+    }
+
+    /**
+     * One thread for periodic jobs (e.g. rebuilding derived tables);  jobs run one at a time and
+     * never take threads from the pool that serves requests.
+     */
+    @Bean(name = "notificationMaintenanceScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService notificationMaintenanceScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("notificationMaintenance-"));
+    }
+
+    /**
+     * One thread that decides which RSS/Atom feeds to refresh in the background (the refreshes
+     * themselves run on <code>notificationServiceExecutor</code>);  kept apart from
+     * <code>notificationMaintenanceScheduler</code> so that a long maintenance job can't hold up
+     * feed refreshes until the feeds expire.
+     */
+    @Bean(name = "notificationFeedRefreshScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService notificationFeedRefreshScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("notificationFeedRefresh-"));
+    }
+
+}
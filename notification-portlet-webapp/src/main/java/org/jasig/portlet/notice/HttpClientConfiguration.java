@@ -18,30 +18,110 @@
  */
 package org.jasig.portlet.notice;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * The pooled <code>HttpClient</code> used by the <code>restTemplate</code> (and the beans that use
+ * it, e.g. <code>restfulJsonNotificationService</code>).  Pool limits and timeouts may be set in
+ * configuration.properties;  <code>httpClient.maxPerRouteOverrides</code> is a comma-separated
+ * list of <code>scheme://host[:port]=limit</code> pairs for routes that need more (or fewer)
+ * connections than <code>httpClient.maxPerRoute</code>.
+ */
 @Configuration
 public class HttpClientConfiguration {
 
-    private static final int MAX_TOTAL_CONNECTIONS = 1000;
+    @Value("${httpClient.maxTotal:1000}")
+    private int maxTotal;
+
+    @Value("${httpClient.maxPerRoute:20}")
+    private int maxPerRoute;
+
+    @Value("${httpClient.maxPerRouteOverrides:}")
+    private String maxPerRouteOverrides;
+
+    @Value("${httpClient.connectTimeoutMillis:5000}")
+    private int connectTimeoutMillis;
+
+    @Value("${httpClient.socketTimeoutMillis:15000}")
+    private int socketTimeoutMillis;
+
+    @Value("${httpClient.connectionRequestTimeoutMillis:5000}")
+    private int connectionRequestTimeoutMillis;
+
+    @Value("${httpClient.statsIntervalMinutes:0}")
+    private long statsIntervalMinutes;
+
+    @Autowired
+    @Qualifier("notificationMaintenanceScheduler")
+    private ScheduledExecutorService scheduler;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Bean(name = "httpConnectionManager", destroyMethod = "shutdown")
     public HttpClientConnectionManager httpConnectionManager() {
-        PoolingHttpClientConnectionManager rslt = new PoolingHttpClientConnectionManager();
-        rslt.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        final MeteredHttpClientConnectionManager rslt = new MeteredHttpClientConnectionManager();
+        rslt.setMaxTotal(maxTotal);
+        rslt.setDefaultMaxPerRoute(maxPerRoute);
+        if (StringUtils.isNotBlank(maxPerRouteOverrides)) {
+            for (String item : maxPerRouteOverrides.split(",")) {
+                final String[] tokens = item.trim().split("=");
+                if (tokens.length != 2) {
+                    throw new IllegalArgumentException("Invalid httpClient.maxPerRouteOverrides entry:  " + item);
+                }
+                final HttpHost host = HttpHost.create(tokens[0].trim());
+                rslt.setMaxPerRoute(toRoute(host), Integer.parseInt(tokens[1].trim()));
+                logger.info("Connections to {} are limited to {}", host, tokens[1].trim());
+            }
+        }
+        if (statsIntervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(rslt::logStats,
+                    statsIntervalMinutes, statsIntervalMinutes, TimeUnit.MINUTES);
+        }
         return rslt;
     }
 
     @Bean("httpClient")
     public HttpClient httpClient() {
+        final RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .build();
         HttpClientBuilder builder = HttpClientBuilder.create();
         builder.setConnectionManager(httpConnectionManager());
+        builder.setDefaultRequestConfig(requestConfig);
         return builder.build();
     }
 
+    /*
+     * Implementation
+     */
+
+    /**
+     * Matches the route HttpClient plans for a direct connection to the host, which always has
+     * an explicit port.
+     */
+    private HttpRoute toRoute(HttpHost host) {
+        final boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        final int port = host.getPort() > 0 ? host.getPort() : secure ? 443 : 80;
+        final HttpHost target = new HttpHost(host.getHostName(), port, host.getSchemeName());
+        return new HttpRoute(target, null, secure);
+    }
+
 }
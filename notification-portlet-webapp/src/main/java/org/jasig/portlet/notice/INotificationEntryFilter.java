@@ -0,0 +1,58 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.function.UnaryOperator;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Optional contract for {@link INotificationServiceFilter} implementations that work on each
+ * {@link NotificationEntry} independently.  The notification repository fuses adjacent
+ * implementations of this interface into a single traversal of the entries, rather than invoking
+ * <code>doFilter</code> on each of them in turn.
+ *
+ * @since 4.9
+ */
+public interface INotificationEntryFilter extends INotificationServiceFilter {
+
+    /**
+     * Prepares the per-entry operation of this filter for the specified request.  The operation
+     * must return the entry it receives (unchanged), a modified
+     * {@link NotificationEntry#shallowCopy()} of it, or <code>null</code> to remove it.
+     *
+     * @param request The current request
+     * @param response Contains (at least) every entry that the operation will receive;  useful
+     * for loading whatever the operation needs in bulk
+     * @return The operation, or <code>null</code> if this filter has nothing to do for this request
+     */
+    UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request, NotificationResponse response);
+
+    /**
+     * Indicates that the operation depends on the session or the credentials of the request, not
+     * only on the user and the request parameters.  The notification repository applies such
+     * filters to each request on top of its cached responses, rather than caching their results.
+     *
+     * @return <code>true</code> if the results of this filter must not be shared among requests
+     */
+    default boolean isRequestSpecific() {
+        return false;
+    }
+
+}
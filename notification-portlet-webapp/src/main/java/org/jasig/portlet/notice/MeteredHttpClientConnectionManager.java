@@ -0,0 +1,133 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pooling connection manager that measures how long callers wait to lease a connection and how
+ * long they hold it.  Long waits (or lease timeouts) mean the pool -- most likely the per-route
+ * limit -- is too small for the load.
+ *
+ * @since 4.9
+ */
+public class MeteredHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
+
+    private final ConcurrentMap<HttpClientConnection,Long> leasedAt = new ConcurrentHashMap<>();
+
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseTimeoutCount = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+    private final LongAccumulator maxLeaseWaitNanos = new LongAccumulator(Long::max, 0L);
+    private final LongAdder releaseCount = new LongAdder();
+    private final LongAdder leaseHoldNanos = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                final long start = System.nanoTime();
+                try {
+                    final HttpClientConnection rslt = request.get(timeout, tunit);
+                    final long now = System.nanoTime();
+                    leasedAt.put(rslt, now);
+                    leaseCount.increment();
+                    leaseWaitNanos.add(now - start);
+                    maxLeaseWaitNanos.accumulate(now - start);
+                    return rslt;
+                } catch (ConnectionPoolTimeoutException e) {
+                    leaseTimeoutCount.increment();
+                    logger.warn("Timed out waiting for a connection to {};  {}", route, getStats(route));
+                    throw e;
+                }
+            }
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state,
+            long keepalive, TimeUnit tunit) {
+        final Long leased = leasedAt.remove(managedConn);
+        if (leased != null) {
+            releaseCount.increment();
+            leaseHoldNanos.add(System.nanoTime() - leased);
+        }
+        super.releaseConnection(managedConn, state, keepalive, tunit);
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.sum();
+    }
+
+    /**
+     * Number of requests that gave up waiting for a connection (see
+     * <code>connectionRequestTimeout</code>).
+     */
+    public long getLeaseTimeoutCount() {
+        return leaseTimeoutCount.sum();
+    }
+
+    public double getAverageLeaseWaitMillis() {
+        final long count = leaseCount.sum();
+        return count != 0L ? leaseWaitNanos.sum() / 1e6 / count : 0.0;
+    }
+
+    public double getMaxLeaseWaitMillis() {
+        return maxLeaseWaitNanos.get() / 1e6;
+    }
+
+    public double getAverageLeaseHoldMillis() {
+        final long count = releaseCount.sum();
+        return count != 0L ? leaseHoldNanos.sum() / 1e6 / count : 0.0;
+    }
+
+    public void logStats() {
+        final PoolStats total = getTotalStats();
+        logger.info("HTTP connection pool:  {};  leases={}, leaseTimeouts={}, avgWaitMillis={}, "
+                        + "maxWaitMillis={}, avgHoldMillis={}",
+                total, getLeaseCount(), getLeaseTimeoutCount(),
+                String.format("%.1f", getAverageLeaseWaitMillis()),
+                String.format("%.1f", getMaxLeaseWaitMillis()),
+                String.format("%.1f", getAverageLeaseHoldMillis()));
+    }
+
+}
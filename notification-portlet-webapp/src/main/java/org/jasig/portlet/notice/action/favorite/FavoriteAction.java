@@ -19,18 +19,18 @@
 package org.jasig.portlet.notice.action.favorite;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Set;
 
 import javax.portlet.ActionRequest;
 import javax.portlet.ActionResponse;
-import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.util.INotificationIdSetStore;
+import org.jasig.portlet.notice.util.SpringContext;
 
 public class FavoriteAction extends NotificationAction {
 
@@ -42,7 +42,8 @@ public class FavoriteAction extends NotificationAction {
     public static final FavoriteAction FAVORITE = new FavoriteAction();
 
     /**
-     * Stores the Ids of notices marked as favorite.
+     * Names the set of ids of notices marked as favorite (see
+     * {@link INotificationIdSetStore});  formerly a preference.
      */
     private static final String FAVORITE_NOTIFICATION_IDS_PREFERENCE =
             FavoriteAction.class.getName() + ".FAVORITE_NOTIFICATION_IDS_PREFERENCE";
@@ -75,14 +76,7 @@ public class FavoriteAction extends NotificationAction {
     @Override
     public void invoke(final ActionRequest req, final ActionResponse res) throws IOException {
         final NotificationEntry entry = getTarget();
-        final String notificationId = entry.getId();
-        final Set<String> favoriteNotices = this.getFavoriteNotices(req);
-        if (favoriteNotices.contains(notificationId)) {
-            favoriteNotices.remove(notificationId);
-        } else {
-            favoriteNotices.add(notificationId);
-        }
-        setFavoriteNotices(req, favoriteNotices);
+        getIdSetStore().toggle(req, FAVORITE_NOTIFICATION_IDS_PREFERENCE, entry.getId());
     }
 
     @Override
@@ -112,38 +106,22 @@ public class FavoriteAction extends NotificationAction {
     }
 
     public void removeFavoriteNotices (final PortletRequest req, Set<String> idsToRemove) {
-        Set<String> currentIds = getFavoriteNotices(req);
-        currentIds.removeAll(idsToRemove);
-        setFavoriteNotices(req, currentIds);
+        getIdSetStore().removeAll(req, FAVORITE_NOTIFICATION_IDS_PREFERENCE, idsToRemove);
     }
 
     /*
      * Non-public API
      */
 
+    /**
+     * @return the ids of notices marked as favorite (read-only)
+     */
     /* package-private */ Set<String> getFavoriteNotices(final PortletRequest req) {
-
-        final HashSet<String> rslt = new HashSet<String>();
-
-        final PortletPreferences prefs = req.getPreferences();
-        final String[] ids = prefs.getValues(FAVORITE_NOTIFICATION_IDS_PREFERENCE, new String[0]);
-
-        for (int i=0; i < ids.length; i++) {
-            rslt.add(ids[i]);
-        }
-        return rslt;
-
+        return getIdSetStore().getIds(req, FAVORITE_NOTIFICATION_IDS_PREFERENCE);
     }
 
-    /* package-private */ void setFavoriteNotices(final PortletRequest req, final Set<String> favoriteNotices) {
-        final String[] ids = favoriteNotices.toArray(new String[favoriteNotices.size()]);
-        final PortletPreferences prefs = req.getPreferences();
-        try {
-            prefs.setValues(FAVORITE_NOTIFICATION_IDS_PREFERENCE, ids);
-            prefs.store();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    private INotificationIdSetStore getIdSetStore() {
+        return (INotificationIdSetStore) SpringContext.getApplicationContext().getBean("notificationIdSetStore");
     }
 
 }
@@ -20,17 +20,16 @@ package org.jasig.portlet.notice.action.hide;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 import javax.portlet.ActionRequest;
 import javax.portlet.ActionResponse;
-import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
 import org.jasig.portlet.notice.NotificationAction;
+import org.jasig.portlet.notice.NotificationAttribute;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationState;
 import org.jasig.portlet.notice.rest.EventDTO;
@@ -113,26 +112,32 @@ public class HideAction extends NotificationAction {
     }
 
     /* package-private */ long calculateHideDurationMillis(final NotificationEntry entry, final PortletRequest req) {
+        final String defaultHideDurationHours = req.getPreferences().getValue(
+                HideNotificationServiceDecorator.HIDE_DURATION_HOURS_PREFERENCE, null);
+        return calculateHideDurationMillis(entry, defaultHideDurationHours);
+    }
 
-        /*
-         * A notification may specify it's own duration as an attribute;
-         * if it doesn't, there is a default from the (portlet) publication record.
-         */
-
-        final PortletPreferences prefs = req.getPreferences();
+    /**
+     * A notification may specify it's own duration as an attribute;  if it doesn't, there is a
+     * default from the (portlet) publication record, which the caller reads once per request.
+     */
+    /* package-private */ long calculateHideDurationMillis(final NotificationEntry entry,
+            final String defaultHideDurationHours) {
 
         // This is the default
-        String hideDurationHours = prefs.getValue(
-                HideNotificationServiceDecorator.HIDE_DURATION_HOURS_PREFERENCE, null);
-
-        // Duration specified on the entry itself will trump
-        final Map<String,List<String>> attributes = entry.getAttributesMap();
-        if (attributes.containsKey(HIDE_DURATION_HOURS_ATTRIBUTE_NAME)) {
-            final List<String> values = attributes.get(HIDE_DURATION_HOURS_ATTRIBUTE_NAME);
-            if (values.size() != 0) {
-                hideDurationHours = values.get(0);  // First is the only one that matters
+        String hideDurationHours = defaultHideDurationHours;
+
+        // Duration specified on the entry itself will trump (the last attribute by that name, as
+        // with getAttributesMap(), without building the map)
+        List<String> values = null;
+        for (NotificationAttribute attribute : entry.getAttributes()) {
+            if (HIDE_DURATION_HOURS_ATTRIBUTE_NAME.equals(attribute.getName())) {
+                values = attribute.getValues();
             }
         }
+        if (values != null && values.size() != 0) {
+            hideDurationHours = values.get(0);  // First is the only one that matters
+        }
 
         final long rslt = hideDurationHours != null
                 ? Long.parseLong(hideDurationHours) * MILLIS_IN_ONE_HOUR
@@ -144,6 +149,15 @@ public class HideAction extends NotificationAction {
 
     }
 
+    /**
+     * The period for which hiding this entry lasts;  subclasses may use something other than
+     * hours.
+     */
+    /* package-private */ long getSnoozeDurationMillis(final NotificationEntry entry,
+            final String defaultHideDurationHours) {
+        return calculateHideDurationMillis(entry, defaultHideDurationHours);
+    }
+
     /* package-private */ boolean isEntrySnoozed(NotificationEntry entry, PortletRequest req) {
 
         // An id is required for hide behavior
@@ -153,42 +167,48 @@ public class HideAction extends NotificationAction {
 
         boolean rslt = false;  // default (clearly)
 
-        final long snoozeDurationMillis = calculateHideDurationMillis(entry, req);
+        final long snoozeDurationMillis = getSnoozeDurationMillis(entry, req.getPreferences().getValue(
+                HideNotificationServiceDecorator.HIDE_DURATION_HOURS_PREFERENCE, null));
 
         // An entry with a negative snooze duration cannot be snoozed
         if (snoozeDurationMillis > HideNotificationServiceDecorator.HIDE_DURATION_NONE) {
             final JpaServices jpaServices = (JpaServices) SpringContext.getApplicationContext().getBean("jpaServices");
             final List<EventDTO> history = jpaServices.getHistory(entry, req.getRemoteUser());
             logger.debug("List<EventDTO> within getNotificationsBySourceAndCustomAttribute contains {} elements", history.size());
-
-            // Review the history...
-            for (EventDTO event : history) {
-                switch (event.getState()) {
-                    case SNOOZED:
-                        logger.debug("Found a SNOOZED event:  {}", event);
-                        // Nice, but it only counts if it isn't expired...
-                        if (event.getTimestamp().getTime() + snoozeDurationMillis > System.currentTimeMillis()) {
-                            rslt = true;
-                        }
-                        break;
-                    case ISSUED:
-                        logger.debug("Found an ISSUED event:  {}", event);
-                        // Re-issuing a notification un-snoozes it...
-                        rslt = false;
-                        break;
-                    default:
-                        // We don't care about any other events in the SNOOZED evaluation...
-                        break;
-                }
-            }
+            rslt = isSnoozed(history, snoozeDurationMillis, System.currentTimeMillis());
         }
 
-
         logger.debug("Returning SNOOZED='{}' for the following notification:  {}", rslt, entry);
         return rslt;
 
     }
 
+    /**
+     * Evaluates a history <strong>in chronological order</strong>:  the entry is snoozed if the
+     * most recent SNOOZED event has not expired and the entry has not been re-issued since.
+     */
+    /* package-private */ static boolean isSnoozed(List<EventDTO> history, long snoozeDurationMillis, long now) {
+        boolean rslt = false;
+        for (EventDTO event : history) {
+            switch (event.getState()) {
+                case SNOOZED:
+                    // Nice, but it only counts if it isn't expired...
+                    if (event.getTimestamp().getTime() + snoozeDurationMillis > now) {
+                        rslt = true;
+                    }
+                    break;
+                case ISSUED:
+                    // Re-issuing a notification un-snoozes it...
+                    rslt = false;
+                    break;
+                default:
+                    // We don't care about any other events in the SNOOZED evaluation...
+                    break;
+            }
+        }
+        return rslt;
+    }
+
     /*
      * Implementation
      */
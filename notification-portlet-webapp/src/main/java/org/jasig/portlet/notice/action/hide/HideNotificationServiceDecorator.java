@@ -19,7 +19,10 @@
 package org.jasig.portlet.notice.action.hide;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.portlet.ActionRequest;
 import javax.portlet.ActionResponse;
@@ -33,9 +36,12 @@ import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.service.AbstractNotificationServiceDecorator;
+import org.jasig.portlet.notice.util.IJpaServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * This class can be used to add a "hide" or "snooze" feature to notifications 
@@ -53,6 +59,9 @@ public class HideNotificationServiceDecorator extends AbstractNotificationServic
     // Instance members
     private INotificationService enclosedNotificationService;
 
+    @Autowired
+    private IJpaServices jpaServices;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     public void setEnclosedNotificationService(INotificationService enclosedNotificationService) {
@@ -87,14 +96,23 @@ public class HideNotificationServiceDecorator extends AbstractNotificationServic
         final NotificationResponse sourceResponse = enclosedNotificationService.fetch(req);
         NotificationResponse rslt = sourceResponse.cloneIfNotCloned();
 
-        // Add and implement the hide behavior with our copy
-        for (NotificationCategory category : rslt.getCategories()) {
+        final String username = req.getRemoteUser();
 
-            // We have to track if any were removed, and which ones remain
-            final List<NotificationEntry> entriesAfterHiding = new ArrayList<>(category.getEntries());
+        // Resolved once per request, rather than once per entry
+        final String defaultHideDurationHours = req.getPreferences().getValue(HIDE_DURATION_HOURS_PREFERENCE, null);
+
+        // Entries that have hide behavior, with the period for which hiding each one lasts
+        final Map<NotificationEntry,Long> snoozeDurations = new IdentityHashMap<>();
 
+        // Add the hide behavior to our copy
+        for (NotificationCategory category : rslt.getCategories()) {
             for (NotificationEntry entry : category.getEntries()) {
 
+                // An id is required for hide behavior (#1, below)
+                if (StringUtils.isBlank(entry.getId())) {
+                    continue;
+                }
+
                 final List<NotificationAction> currentList = entry.getAvailableActions();
 
                 /*
@@ -105,23 +123,48 @@ public class HideNotificationServiceDecorator extends AbstractNotificationServic
                  *   - (3) Hiding the entry must be *meaningful* (i.e. must be a duration specified
                  *         on either the portlet or the entry)
                  */
-                if (StringUtils.isNotBlank(entry.getId()) // #1
-                        && !currentList.stream().anyMatch(action -> action instanceof HideAction) // #2
-                        && HideAction.INSTANCE.calculateHideDurationMillis(entry, req)
+                if (!currentList.stream().anyMatch(action -> action instanceof HideAction) // #2
+                        && HideAction.INSTANCE.calculateHideDurationMillis(entry, defaultHideDurationHours)
                                 > HIDE_DURATION_NONE) { // #3
-                    logger.debug("Adding hide action to notification with id='{}' for username='{}'", entry.getId(), req.getRemoteUser());
+                    logger.debug("Adding hide action to notification with id='{}' for username='{}'", entry.getId(), username);
                     final List<NotificationAction> replacementList = new ArrayList<>(currentList);
                     replacementList.add(new HideAction());
                     entry.setAvailableActions(replacementList); // Also sets HideAction.targetEntity
                 }
 
-                /*
-                 * Now that we know yea or nay (WRT Hide behavior), is the entry currently hidden?
-                 */
-                if (entry.getAvailableActions().stream()
+                // The longest snooze is the one that matters
+                entry.getAvailableActions().stream()
                         .filter(action -> action instanceof HideAction)
-                        .anyMatch(action -> ((HideAction) action).isEntrySnoozed(entry, req))) {
-                    logger.debug("Hiding entry with id='{}' for username='{}' based on user's previous action", entry.getId(), req.getRemoteUser());
+                        .mapToLong(action -> ((HideAction) action).getSnoozeDurationMillis(entry, defaultHideDurationHours))
+                        .max()
+                        .ifPresent(duration -> {
+                            if (duration > HIDE_DURATION_NONE) {
+                                snoozeDurations.put(entry, duration);
+                            }
+                        });
+            }
+        }
+
+        if (snoozeDurations.isEmpty()) {
+            return rslt;
+        }
+
+        /*
+         * Now that we know yea or nay (WRT Hide behavior), which entries are currently hidden?
+         * The history of all of them comes from one bulk lookup.
+         */
+        final Map<String,List<EventDTO>> histories = jpaServices.getHistories(snoozeDurations.keySet(), username);
+        final long now = System.currentTimeMillis();
+        for (NotificationCategory category : rslt.getCategories()) {
+
+            // We have to track if any were removed, and which ones remain
+            final List<NotificationEntry> entriesAfterHiding = new ArrayList<>(category.getEntries());
+
+            for (NotificationEntry entry : category.getEntries()) {
+                final Long snoozeDurationMillis = snoozeDurations.get(entry);
+                if (snoozeDurationMillis != null && HideAction.isSnoozed(
+                        histories.getOrDefault(entry.getId(), Collections.emptyList()), snoozeDurationMillis, now)) {
+                    logger.debug("Hiding entry with id='{}' for username='{}' based on user's previous action", entry.getId(), username);
                     entriesAfterHiding.remove(entry);
                 }
             }
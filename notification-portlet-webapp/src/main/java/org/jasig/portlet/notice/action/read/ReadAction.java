@@ -19,13 +19,11 @@
 package org.jasig.portlet.notice.action.read;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import javax.portlet.ActionRequest;
 import javax.portlet.ActionResponse;
-import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,6 +33,7 @@ import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationState;
 import org.jasig.portlet.notice.filter.ReadStateAction;
 import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.util.INotificationIdSetStore;
 import org.jasig.portlet.notice.util.JpaServices;
 import org.jasig.portlet.notice.util.SpringContext;
 import org.jasig.portlet.notice.util.UsernameFinder;
@@ -55,7 +54,8 @@ public class ReadAction extends ReadStateAction {
     public static final ReadAction READ = new ReadAction();
 
     /**
-     * Stores the Ids of read notices.
+     * Names the set of read notice ids (see {@link INotificationIdSetStore});  formerly a
+     * preference.
      */
     private static final String READ_NOTIFICATION_IDS_PREFERENCE = 
             ReadAction.class.getName() + ".READ_NOTIFICATION_IDS_PREFERENCE";
@@ -86,14 +86,7 @@ public class ReadAction extends ReadStateAction {
     @Override
     public void invoke(final ActionRequest req, final ActionResponse res) throws IOException {
         final NotificationEntry entry = getTarget();
-        final String notificationId = entry.getId();
-        final Set<String> readNotices = this.getReadNotices(req);
-        if (readNotices.contains(notificationId)) {
-            readNotices.remove(notificationId);
-        } else {
-            readNotices.add(notificationId);
-        }
-        setReadNotices(req, readNotices);
+        getIdSetStore().toggle(req, READ_NOTIFICATION_IDS_PREFERENCE, entry.getId());
     }
 
     @Override
@@ -129,34 +122,18 @@ public class ReadAction extends ReadStateAction {
     }
 
     public void removeReadNotices (final PortletRequest req, Set<String> idsToRemove) {
-        Set<String> currentIds = getReadNotices(req);
-        currentIds.removeAll(idsToRemove);
-        setReadNotices(req, currentIds);
+        getIdSetStore().removeAll(req, READ_NOTIFICATION_IDS_PREFERENCE, idsToRemove);
     }
 
     /*
      * Non-public API
      */
 
+    /**
+     * @return the ids of read notices (read-only)
+     */
     /* package-private */ Set<String> getReadNotices(final PortletRequest req) {
-        final HashSet<String> rslt = new HashSet<>();
-        final PortletPreferences prefs = req.getPreferences();
-        final String[] ids = prefs.getValues(READ_NOTIFICATION_IDS_PREFERENCE, new String[0]);
-        for (int i=0; i < ids.length; i++) {
-            rslt.add(ids[i]);
-        }
-        return rslt;
-    }
-
-    /* package-private */ void setReadNotices(final PortletRequest req, final Set<String> favoriteNotices) {
-        final String[] ids = favoriteNotices.toArray(new String[favoriteNotices.size()]);
-        final PortletPreferences prefs = req.getPreferences();
-        try {
-            prefs.setValues(READ_NOTIFICATION_IDS_PREFERENCE, ids);
-            prefs.store();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return getIdSetStore().getIds(req, READ_NOTIFICATION_IDS_PREFERENCE);
     }
 
     protected boolean isRead(NotificationEntry entry, String username) {
@@ -180,4 +157,8 @@ public class ReadAction extends ReadStateAction {
 
     }
 
+    private INotificationIdSetStore getIdSetStore() {
+        return (INotificationIdSetStore) SpringContext.getApplicationContext().getBean("notificationIdSetStore");
+    }
+
 }
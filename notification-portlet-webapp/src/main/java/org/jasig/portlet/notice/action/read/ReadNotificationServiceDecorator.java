@@ -37,7 +37,6 @@ import org.apache.commons.logging.LogFactory;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationAttribute;
-import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.service.AbstractNotificationServiceDecorator;
@@ -84,9 +83,8 @@ public class ReadNotificationServiceDecorator extends AbstractNotificationServic
             return enclosedNotificationService.fetch(req);
         }
 
-        // Build a fresh NotificationResponse based on a deep-copy of the one we enclose
+        // Build a fresh NotificationResponse that shares unchanged entries with the one we enclose
         final NotificationResponse sourceResponse = enclosedNotificationService.fetch(req);
-        NotificationResponse rslt = sourceResponse.cloneIfNotCloned();
 
         final Set<String> readNotificationIds = ReadAction.READ.getReadNotices(req);
         Set<String> potentiallyMissingIds = new HashSet<>(readNotificationIds);
@@ -95,39 +93,43 @@ public class ReadNotificationServiceDecorator extends AbstractNotificationServic
         readAttribute.setName(READ_ATTRIBUTE_NAME);
         readAttribute.setValues(new ArrayList<>(Arrays.asList((new Boolean(true)).toString())));
         
-        // Add and implement the read behavior with our copy
-        for (NotificationCategory category : rslt.getCategories()) {
-
-            for (NotificationEntry entry : category.getEntries()) {
-
-                final List<NotificationAction> currentList = entry.getAvailableActions();
-
-                /*
-                 * There are 2 requirements for an entry to be decorated with Read behavior:
-                 * 
-                 *   - (1) It must have an id set
-                 *   - (2) It must not have a ReadAction already
-                 */
-                if (StringUtils.isNotBlank(entry.getId())) {
-                    // If the id is in the reads list, set read=true and remove the ID from the potentially
-                    // missing set.
-                    if (readNotificationIds.contains(entry.getId())) {
-                        
-                        List<NotificationAttribute> attributes = new ArrayList<>(entry.getAttributes());
-                        attributes.add(readAttribute);
-                        entry.setAttributes(attributes);
-                        potentiallyMissingIds.remove(entry.getId());
-                    }
-                    if (!currentList.contains(ReadAction.READ)) {
-                        final List<NotificationAction> replacementList = new ArrayList<>(currentList);
-                        boolean isMarkedRead = entry.getAttributes().contains(readAttribute);
-                        replacementList.add(!isMarkedRead ?
-                                ReadAction.createReadInstance() : ReadAction.createUnReadInstance());
-                        entry.setAvailableActions(replacementList);
-                    }
-                }
+        // Add and implement the read behavior with copies of the entries we change
+        final NotificationResponse rslt = sourceResponse.transformEntries(entry -> {
+
+            /*
+             * There are 2 requirements for an entry to be decorated with Read behavior:
+             * 
+             *   - (1) It must have an id set
+             *   - (2) It must not have a ReadAction already
+             */
+            if (StringUtils.isBlank(entry.getId())) {
+                return entry;
             }
-        }
+
+            final boolean isMarkedRead = readNotificationIds.contains(entry.getId());
+            final boolean needsReadAction = !entry.getAvailableActions().contains(ReadAction.READ);
+            if (!isMarkedRead && !needsReadAction) {
+                return entry;
+            }
+
+            final NotificationEntry copy = entry.shallowCopy();
+            // If the id is in the reads list, set read=true and remove the ID from the potentially
+            // missing set.
+            if (isMarkedRead) {
+                List<NotificationAttribute> attributes = new ArrayList<>(copy.getAttributes());
+                attributes.add(readAttribute);
+                copy.setAttributes(attributes);
+                potentiallyMissingIds.remove(entry.getId());
+            }
+            if (needsReadAction) {
+                final List<NotificationAction> replacementList = new ArrayList<>(copy.getAvailableActions());
+                replacementList.add(!copy.getAttributes().contains(readAttribute) ?
+                        ReadAction.createReadInstance() : ReadAction.createUnReadInstance());
+                copy.setAvailableActions(replacementList);
+            }
+            return copy;
+
+        });
 
         // If there were no errors from the sources and there were read IDs that were not in the results, remove
         // them so we don't have them build up over time if the user doesn't un-read an item that goes away.
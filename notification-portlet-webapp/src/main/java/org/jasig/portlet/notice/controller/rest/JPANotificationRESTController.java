@@ -18,6 +18,8 @@
  */
 package org.jasig.portlet.notice.controller.rest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
@@ -26,7 +28,10 @@ import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkCreateResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.service.jpa.IJpaNotificationRESTService;
@@ -34,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -42,6 +48,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
  * Controller for the REST endpoints exposed to manage
@@ -56,25 +63,75 @@ public class JPANotificationRESTController {
 
     public static final String REQUEST_ROOT = "/api/v1/notifications";
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     @Autowired
     private IJpaNotificationRESTService restService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
-     * Get the list of notifications.  Supports optional (and recommended!) paging
+     * Get the list of notifications.  Supports optional (and recommended!) paging.
+     * Specify <code>after</code> (the id of the last notification on the previous
+     * page, or 0 to begin) for keyset pagination, which performs the same at any
+     * depth;  the response then carries a <code>Link</code> header (rel="next")
+     * when there may be more.  The older <code>page</code> parameter uses offset
+     * pagination.
      *
      * @param page The 0 based page number
+     * @param after The id after which the page begins
      * @param pageSize the page size
      * @return the list of matching notifications.
      */
     @RequestMapping(method = RequestMethod.GET)
     @ResponseBody
-    public List<EntryDTO> getNotifications(
+    public List<EntryDTO> getNotifications(HttpServletResponse response,
             @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "after", required = false) Long after,
             @RequestParam(value = "pageSize", required = false) Integer pageSize) {
 
-        return restService.getNotifications(page, pageSize);
+        if (after == null) {
+            return restService.getNotifications(page, pageSize);
+        }
+
+        final int size = pageSize != null && pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+        final List<EntryDTO> rslt = restService.getNotificationsAfter(after, size);
+        if (rslt.size() == size) {
+            final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", rslt.get(rslt.size() - 1).getId())
+                    .replaceQueryParam("pageSize", size)
+                    .toUriString();
+            response.addHeader("Link", "<" + next + ">; rel=\"next\"");
+        }
+        return rslt;
+    }
+
+    /**
+     * Streams every notification as a JSON array, in order of id.  Entries are
+     * written as they are read, so the size of the export is not limited by
+     * memory.
+     *
+     * @param response the Http response
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "stream=true")
+    public void streamNotifications(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            restService.forEachNotification(entry -> {
+                try {
+                    generator.writeObject(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
     /**
@@ -97,6 +154,22 @@ public class JPANotificationRESTController {
         return persisted;
     }
 
+    /**
+     * Create many notifications in a single transaction.  Intended for
+     * campus-wide sends, where one request per notification (and one insert
+     * per ISSUED event) is far too slow.
+     *
+     * @param entries the entries to create;  none may carry an id
+     * @return the ids of the persisted entries, in request order, plus throughput figures
+     * @since 4.9
+     */
+    @RequestMapping(value = "/bulk", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.CREATED)
+    @ResponseBody
+    public BulkCreateResultDTO createNotifications(@RequestBody List<EntryDTO> entries) {
+        return restService.createNotifications(entries);
+    }
+
     /**
      * Get 1 notification by id.
      *
@@ -180,7 +253,10 @@ public class JPANotificationRESTController {
     }
 
     /**
-     * Get the list of events for a notification.
+     * Get the list of events for a notification.  Events older than the
+     * retention period of the event compaction job
+     * (<code>JpaEventCompactionJob.retainHours</code>) are summarized per user
+     * and state, and are no longer listed here.
      *
      * @param id the notification id
      * @return the list of events
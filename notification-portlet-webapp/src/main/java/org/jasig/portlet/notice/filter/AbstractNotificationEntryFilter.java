@@ -0,0 +1,53 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.function.UnaryOperator;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jasig.portlet.notice.INotificationEntryFilter;
+import org.jasig.portlet.notice.INotificationServiceFilterChain;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+
+/**
+ * Base class for {@link INotificationEntryFilter} implementations.  Provides
+ * <code>doFilter</code> in terms of <code>prepareEntryFilter</code>, for use when the filter is
+ * not fused with others.
+ *
+ * @since 4.9
+ */
+public abstract class AbstractNotificationEntryFilter extends AbstractNotificationServiceFilter
+        implements INotificationEntryFilter {
+
+    protected AbstractNotificationEntryFilter(int order) {
+        super(order);
+    }
+
+    @Override
+    public final NotificationResponse doFilter(HttpServletRequest request, INotificationServiceFilterChain chain) {
+        final NotificationResponse response = chain.doFilter();
+        final UnaryOperator<NotificationEntry> operation = prepareEntryFilter(request, response);
+        return operation != null
+                ? response.transformEntries(operation)
+                : response;
+    }
+
+}
@@ -18,18 +18,15 @@
  */
 package org.jasig.portlet.notice.filter;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
-import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.action.acknowledge.AcknowledgeAction;
@@ -46,86 +43,81 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
-public class AcknowledgePerSessionFilter extends AbstractNotificationServiceFilter {
+public class AcknowledgePerSessionFilter extends AbstractNotificationEntryFilter {
 
-    private static final String REQ_ACK_PARAM = "ack";
+    /* package-private */ static final String REQ_ACK_PARAM = "ack";
 
     public AcknowledgePerSessionFilter() {
         super(AbstractNotificationServiceFilter.ORDER_EARLY);
     }
 
     @Override
-    public NotificationResponse doFilter(HttpServletRequest request, INotificationServiceFilterChain chain) {
+    public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request, NotificationResponse response) {
 
-        log.debug("{}.doFilter called", AcknowledgePerSessionFilter.class.getCanonicalName());
+        log.debug("{}.prepareEntryFilter called", AcknowledgePerSessionFilter.class.getCanonicalName());
 
         final String ackParameter = request.getParameter(REQ_ACK_PARAM);
 
         final HttpSession session = request.getSession(true);
         log.debug("session id = {}", session.getId());
-        final NotificationResponse response = chain.doFilter().cloneIfNotCloned();
         log.debug("response = {}", response);
 
-        if (ackParameter == null) {
+        final Boolean filterAck = ackParameter != null ? Boolean.parseBoolean(ackParameter) : null;
+        if (filterAck == null) {
             // Don't filter entries, just the acknowledge actions
             log.debug("{} was not found in the parameter list", REQ_ACK_PARAM);
-            return removeAckActionsWhenAck(response, session);
+        } else {
+            log.debug("{} parsed to {} in request", REQ_ACK_PARAM, filterAck);
         }
 
-        final boolean filterAck = Boolean.parseBoolean(ackParameter);
-        log.debug("{} parsed to {} in request", REQ_ACK_PARAM, filterAck);
-
-        for (NotificationCategory category : response.getCategories()) {
-            // new entry list
-            final List<NotificationEntry> newEntries = new ArrayList<>();
-            for (NotificationEntry entry : category.getEntries()) {
-                log.debug("entry: {}", entry);
-
-                final List<NotificationAction> currentActions = entry.getAvailableActions();
-                final Optional<NotificationAction> acknowledgeActionOptional = currentActions.stream()
-                        .filter(AcknowledgeAction.class::isInstance)
-                        .findFirst();
-                final AcknowledgeAction ackAction = (AcknowledgeAction) acknowledgeActionOptional.orElse(null);
-                assert (ackAction == null) || entry.equals(ackAction.getTarget());
-                final boolean isAck = ackAction.isAck(session);
-                log.debug("{} acknowledge state = {}", entry.getId(), isAck);
-                if (filterAck && isAck) {
-                    log.debug("entry {} ack and {}=true", entry.getId(), REQ_ACK_PARAM);
-                    newEntries.add(entry);
-                } else if (!filterAck && (ackAction == null || !isAck)) {
-                    log.debug("entry {} not ack and {}=false", entry.getId(), REQ_ACK_PARAM);
-                    newEntries.add(entry);
-                } else {
-                    log.debug("entry {} not selected when {}={} ... removed", entry.getId(), REQ_ACK_PARAM, filterAck);
-                }
+        // Copy-on-write:  entries we neither remove nor change are passed along as they are
+        return entry -> {
+            log.debug("entry: {}", entry);
+
+            final AcknowledgeAction ackAction = entry.getAvailableActions().stream()
+                    .filter(AcknowledgeAction.class::isInstance)
+                    .map(AcknowledgeAction.class::cast)
+                    .findFirst()
+                    .orElse(null);
+            assert (ackAction == null) || entry.equals(ackAction.getTarget());
+            final boolean isAck = ackAction != null && ackAction.isAck(session);
+            log.debug("{} acknowledge state = {}", entry.getId(), isAck);
+
+            if (filterAck != null && filterAck != isAck) {
+                log.debug("entry {} not selected when {}={} ... removed", entry.getId(), REQ_ACK_PARAM, filterAck);
+                return null;
             }
-            // replace entries in current category
-            category.setEntries(newEntries);
-        }
 
-        return removeAckActionsWhenAck(response, session);
+            return removeAckActionsWhenAck(entry, session);
+        };
     }
 
     /**
-     * Remove {@code AcknowledgeAction} actions from entries in returned {@code NotificationResponse}.
+     * Acknowledgements are tracked in the session.
+     */
+    @Override
+    public boolean isRequestSpecific() {
+        return true;
+    }
+
+    /**
+     * Remove {@code AcknowledgeAction} actions that have been acknowledged from the entry.
      *
-     * @param resp response with entries that will have their acknowledge actions removed
+     * @param entry entry that may have acknowledge actions
      * @param session session to check for acknowledgements
-     * @return processed response that is the same as the parameter
+     * @return the entry itself, if it has no acknowledged actions, or else a copy without them
      */
-    private NotificationResponse removeAckActionsWhenAck(NotificationResponse resp, HttpSession session) {
-        // perform in-place removal of AcknowledgeActions
-        for (NotificationCategory category : resp.getCategories()) {
-            for (NotificationEntry entry : category.getEntries()) {
-                log.debug("entry {} actions filtered", entry.getId());
-                List<NotificationAction> list = entry.getAvailableActions().stream()
-                        .filter(a -> !AcknowledgeAction.class.isInstance(a)
-                                || !((AcknowledgeAction) a).isAck(session))
-                        .collect(Collectors.toList());
-                entry.setAvailableActions(list);
-            }
+    private NotificationEntry removeAckActionsWhenAck(NotificationEntry entry, HttpSession session) {
+        final Predicate<NotificationAction> isAckAction = a -> AcknowledgeAction.class.isInstance(a)
+                && ((AcknowledgeAction) a).isAck(session);
+        if (entry.getAvailableActions().stream().noneMatch(isAckAction)) {
+            return entry;
         }
-        log.debug("updated response = {}", resp);
-        return resp;
+        log.debug("entry {} actions filtered", entry.getId());
+        final NotificationEntry rslt = entry.shallowCopy();
+        rslt.setAvailableActions(rslt.getAvailableActions().stream()
+                .filter(isAckAction.negate())
+                .collect(Collectors.toList()));
+        return rslt;
     }
 }
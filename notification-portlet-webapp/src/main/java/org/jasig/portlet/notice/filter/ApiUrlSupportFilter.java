@@ -18,17 +18,14 @@
  */
 package org.jasig.portlet.notice.filter;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.UnaryOperator;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apereo.portal.soffit.Headers;
 import org.jasig.portlet.notice.INotificationServiceFilter;
-import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
-import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.springframework.http.HttpHeaders;
@@ -42,7 +39,7 @@ import org.springframework.stereotype.Component;
  * @since 4.0
  */
 @Component
-public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
+public class ApiUrlSupportFilter extends AbstractNotificationEntryFilter {
 
     public static final String AUTHORIZATION_PARAMETER_NAME = "_authorization";
 
@@ -68,47 +65,48 @@ public class ApiUrlSupportFilter extends AbstractNotificationServiceFilter {
     }
 
     @Override
-    public NotificationResponse doFilter(HttpServletRequest request, INotificationServiceFilterChain chain) {
-
-        final NotificationResponse response = chain.doFilter();
-
-        final NotificationResponse rslt = response.cloneIfNotCloned();
-
-        // Add apiUrl values to actions with our copy
-        for (NotificationCategory category : rslt.getCategories()) {
-
-            for (NotificationEntry entry : category.getEntries()) {
-
-                final List<NotificationAction> actions = entry.getAvailableActions().stream()
-                        .peek(action -> {
-                            if (StringUtils.isNotBlank(action.getId())
-                                    && action.getTarget() != null
-                                    && StringUtils.isNotBlank(action.getTarget().getId())) {
-                                // Pick up scheme, host[, port,] and context from the request
-                                final String requestUrl = request.getRequestURL().toString();
-                                final String contextPath = request.getContextPath();
-                                final String urlBase = requestUrl.substring(0,
-                                        requestUrl.indexOf(contextPath)) + contextPath;
-                                final CsrfToken csrf =
-                                        (CsrfToken) request.getAttribute(CsrfToken.class.getName());
-                                final String apiUrl = String.format(REST_API_URL_FORMAT,
-                                        urlBase,
-                                        action.getId(),
-                                        action.getTarget().getId(),
-                                        csrf != null ? csrf.getToken() : null,
-                                        getBearerToken(request));
-                                action.setApiUrl(apiUrl);
-                            }
-                        })
-                        .collect(Collectors.toList());
-                entry.setAvailableActions(actions);
+    public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request, NotificationResponse response) {
 
+        // Pick up scheme, host[, port,] and context from the request
+        final String requestUrl = request.getRequestURL().toString();
+        final String contextPath = request.getContextPath();
+        final String urlBase = requestUrl.substring(0, requestUrl.indexOf(contextPath)) + contextPath;
+        final CsrfToken csrf = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        final String bearerToken = getBearerToken(request);
+
+        // Add apiUrl values to actions;  entries without actions are passed along unchanged
+        return entry -> {
+
+            if (entry.getAvailableActions().isEmpty()) {
+                return entry;
             }
 
-        }
+            final NotificationEntry rslt = entry.shallowCopy();
+            rslt.getAvailableActions().forEach(action -> {
+                if (StringUtils.isNotBlank(action.getId())
+                        && action.getTarget() != null
+                        && StringUtils.isNotBlank(action.getTarget().getId())) {
+                    final String apiUrl = String.format(REST_API_URL_FORMAT,
+                            urlBase,
+                            action.getId(),
+                            action.getTarget().getId(),
+                            csrf != null ? csrf.getToken() : null,
+                            bearerToken);
+                    action.setApiUrl(apiUrl);
+                }
+            });
+            return rslt;
+
+        };
 
-        return rslt;
+    }
 
+    /**
+     * The URLs carry the server, the CSRF token and the Bearer token of the request.
+     */
+    @Override
+    public boolean isRequestSpecific() {
+        return true;
     }
 
     private String getBearerToken(HttpServletRequest request) {
@@ -0,0 +1,225 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * A copy of the parts of an {@link HttpServletRequest} that services read while fetching, for use
+ * on threads other than the one processing the request.  Servlet containers parse parameters,
+ * headers and cookies lazily and don't make the request safe for use by several threads (nor after
+ * it completes), so services that are invoked concurrently receive {@link #getRequest()} instead
+ * of the original.  The copy is taken up front and never refers to the original afterwards;
+ * attributes set by one service are visible to the others (but not to the original).  Methods
+ * beyond these throw {@link UnsupportedOperationException}.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class DetachedHttpServletRequest implements InvocationHandler {
+
+    private final Principal userPrincipal;
+    private final String remoteUser;
+    private final String authType;
+    private final Map<String,List<String>> headers;
+    private final Map<String,String[]> parameters;
+    private final Map<String,Object> attributes;
+    private final Cookie[] cookies;
+    private final HttpSession session;
+    private final Map<String,Object> properties;
+    private final List<Locale> locales;
+    private final String requestUrl;
+    private final HttpServletRequest proxy;
+
+    /**
+     * Must be invoked on the thread processing the request.
+     */
+    /* package-private */ DetachedHttpServletRequest(HttpServletRequest req) {
+        this.userPrincipal = req.getUserPrincipal();
+        this.remoteUser = req.getRemoteUser();
+        this.authType = req.getAuthType();
+
+        final Map<String,List<String>> hdrs = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final Enumeration<String> headerNames = req.getHeaderNames();
+        if (headerNames != null) {
+            while (headerNames.hasMoreElements()) {
+                final String name = headerNames.nextElement();
+                hdrs.put(name, Collections.unmodifiableList(Collections.list(req.getHeaders(name))));
+            }
+        }
+        this.headers = Collections.unmodifiableMap(hdrs);
+
+        final Map<String,String[]> params = new HashMap<>();
+        for (Map.Entry<String,String[]> y : req.getParameterMap().entrySet()) {
+            params.put(y.getKey(), y.getValue().clone());
+        }
+        this.parameters = Collections.unmodifiableMap(params);
+
+        this.attributes = new ConcurrentHashMap<>();
+        for (Enumeration<String> names = req.getAttributeNames(); names.hasMoreElements();) {
+            final String name = names.nextElement();
+            final Object value = req.getAttribute(name);
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+
+        final Cookie[] originalCookies = req.getCookies();
+        if (originalCookies != null) {
+            this.cookies = new Cookie[originalCookies.length];
+            for (int i = 0; i < originalCookies.length; i++) {
+                this.cookies[i] = (Cookie) originalCookies[i].clone();
+            }
+        } else {
+            this.cookies = null;
+        }
+
+        // Sessions outlive the request and support concurrent access
+        this.session = req.getSession(false);
+
+        // Simple (immutable) properties, by the name of their getter
+        final Map<String,Object> props = new HashMap<>();
+        props.put("getMethod", req.getMethod());
+        props.put("getScheme", req.getScheme());
+        props.put("getServerName", req.getServerName());
+        props.put("getServerPort", req.getServerPort());
+        props.put("isSecure", req.isSecure());
+        props.put("getContextPath", req.getContextPath());
+        props.put("getServletPath", req.getServletPath());
+        props.put("getPathInfo", req.getPathInfo());
+        props.put("getRequestURI", req.getRequestURI());
+        props.put("getQueryString", req.getQueryString());
+        props.put("getRemoteAddr", req.getRemoteAddr());
+        props.put("getCharacterEncoding", req.getCharacterEncoding());
+        props.put("getContentType", req.getContentType());
+        props.put("getRequestedSessionId", req.getRequestedSessionId());
+        props.put("getLocale", req.getLocale());
+        this.properties = Collections.unmodifiableMap(props);
+
+        this.locales = Collections.unmodifiableList(Collections.list(req.getLocales()));
+        this.requestUrl = req.getRequestURL().toString();
+
+        this.proxy = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, this);
+    }
+
+    /**
+     * The copy, for use by services on other threads.
+     */
+    public HttpServletRequest getRequest() {
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+
+        final String name = method.getName();
+        if (properties.containsKey(name) && method.getParameterCount() == 0) {
+            return properties.get(name);
+        }
+
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "DetachedHttpServletRequest[remoteUser=" + remoteUser
+                        + ", requestURI=" + properties.get("getRequestURI") + "]";
+            case "getUserPrincipal":
+                return userPrincipal;
+            case "getRemoteUser":
+                return remoteUser;
+            case "getAuthType":
+                return authType;
+            case "getHeader": {
+                final List<String> values = headers.get((String) args[0]);
+                return values != null && !values.isEmpty() ? values.get(0) : null;
+            }
+            case "getHeaders": {
+                final List<String> values = headers.get((String) args[0]);
+                return Collections.enumeration(values != null ? values : Collections.<String>emptyList());
+            }
+            case "getHeaderNames":
+                return Collections.enumeration(new ArrayList<>(headers.keySet()));
+            case "getIntHeader": {
+                final List<String> values = headers.get((String) args[0]);
+                return values != null && !values.isEmpty() ? Integer.parseInt(values.get(0)) : -1;
+            }
+            case "getParameter": {
+                final String[] values = parameters.get((String) args[0]);
+                return values != null && values.length != 0 ? values[0] : null;
+            }
+            case "getParameterValues": {
+                final String[] values = parameters.get((String) args[0]);
+                return values != null ? values.clone() : null;
+            }
+            case "getParameterNames":
+                return Collections.enumeration(parameters.keySet());
+            case "getParameterMap":
+                return parameters;
+            case "getAttribute":
+                return attributes.get((String) args[0]);
+            case "getAttributeNames":
+                return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+            case "setAttribute":
+                if (args[1] != null) {
+                    attributes.put((String) args[0], args[1]);
+                } else {
+                    attributes.remove((String) args[0]);
+                }
+                return null;
+            case "removeAttribute":
+                attributes.remove((String) args[0]);
+                return null;
+            case "getCookies":
+                return cookies != null ? cookies.clone() : null;
+            case "getLocales":
+                return Collections.enumeration(locales);
+            case "getRequestURL":
+                return new StringBuffer(requestUrl);
+            case "getSession":
+                if (session == null && (args == null || (Boolean) args[0])) {
+                    throw new IllegalStateException("The request had no session;  services that are "
+                            + "invoked concurrently can't create one");
+                }
+                return session;
+            default:
+                throw new UnsupportedOperationException("Method '" + name
+                        + "' is not available to services that are invoked concurrently");
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.util.IJpaServices;
+
+/**
+ * The histories of the entries in a response, for one user.  {@link ReadStateSupportFilter} and
+ * {@link ReadActionFilter} prepare their operations over the same response in the same link of the
+ * chain;  the first to ask loads the histories (in a fixed number of queries) and the other reuses
+ * them, by way of a request attribute.  A different response (or user) loads again.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class EntryHistories {
+
+    private static final String ATTRIBUTE_NAME = EntryHistories.class.getName();
+
+    private final NotificationResponse response;
+    private final String username;
+    private final Map<String,List<EventDTO>> histories;
+
+    private EntryHistories(NotificationResponse response, String username,
+            Map<String,List<EventDTO>> histories) {
+        this.response = response;
+        this.username = username;
+        this.histories = histories;
+    }
+
+    /**
+     * Provides the histories of the entries in the specified response (by entry id), loading them
+     * unless they were loaded for the same response and user earlier in this request.
+     */
+    /* package-private */ static Map<String,List<EventDTO>> get(HttpServletRequest request,
+            NotificationResponse response, String username, IJpaServices jpaServices) {
+
+        final Object previous = request.getAttribute(ATTRIBUTE_NAME);
+        if (previous instanceof EntryHistories) {
+            final EntryHistories loaded = (EntryHistories) previous;
+            if (loaded.response == response && loaded.username.equals(username)) {
+                return loaded.histories;
+            }
+        }
+
+        final Map<String,List<EventDTO>> rslt = jpaServices.getHistories(response.getCategories().stream()
+                .flatMap(category -> category.getEntries().stream())
+                .collect(Collectors.toList()), username);
+        request.setAttribute(ATTRIBUTE_NAME, new EntryHistories(response, username, rslt));
+        return rslt;
+
+    }
+
+}
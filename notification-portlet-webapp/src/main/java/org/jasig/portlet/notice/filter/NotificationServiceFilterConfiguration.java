@@ -19,24 +19,54 @@
 package org.jasig.portlet.notice.filter;
 
 import org.jasig.portlet.notice.INotificationRepository;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.jasig.portlet.notice.INotificationEntryFilter;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.INotificationServiceFilter;
 import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.IRefreshable;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationError;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationResponseMerger;
 import org.jasig.portlet.notice.util.UsernameFinder;
+import org.jasig.portlet.notice.util.sort.Sorting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 /**
  * Configuration of {@link INotificationServiceFilter} and {@link INotificationServiceFilterChain}
@@ -56,24 +86,43 @@ public class NotificationServiceFilterConfiguration {
     @Autowired
     private UsernameFinder usernameFinder;
 
+    @Autowired
+    @Qualifier("notificationRepositoryExecutor")
+    private ExecutorService executorService;
+
+    /**
+     * Services that have not responded within this many milliseconds contribute an error instead.
+     */
+    @Value("${NotificationRepository.serviceTimeoutMillis:10000}")
+    private long serviceTimeoutMillis;
+
+    @Resource(name="NotificationRepository.responseCache")
+    private Cache responseCache;
+
     private static final Logger logger = LoggerFactory.getLogger(NotificationServiceFilterConfiguration.class);
 
     @Bean("notificationRepository")
     public INotificationRepository notificationRepository() {
-        return new NotificationRepositoryImpl(filters, services, usernameFinder);
+        return new NotificationRepositoryImpl(filters, services, usernameFinder, executorService,
+                serviceTimeoutMillis, responseCache);
     }
 
     /*
      * Nested Types
      */
 
-    private static class NotificationRepositoryImpl implements INotificationRepository {
+    /* package-private */ static class NotificationRepositoryImpl implements INotificationRepository {
 
         private final List<INotificationServiceFilter> sortedFilters;
+        private final List<INotificationEntryFilter> requestFilters;
         private final Set<INotificationService> services;
         private final UsernameFinder usernameFinder;
+        private final ExecutorService executorService;
+        private final long serviceTimeoutMillis;
+        private final Cache responseCache;
 
-        /* package-private */ NotificationRepositoryImpl(List<INotificationServiceFilter> filters, Set<INotificationService> services, UsernameFinder usernameFinder) {
+        /* package-private */ NotificationRepositoryImpl(List<INotificationServiceFilter> filters, Set<INotificationService> services, UsernameFinder usernameFinder,
+                ExecutorService executorService, long serviceTimeoutMillis, Cache responseCache) {
 
             // Prep the filters collection
             List<INotificationServiceFilter> filtersCopy = new ArrayList<>(filters);
@@ -82,12 +131,25 @@ public class NotificationServiceFilterConfiguration {
             Collections.reverse(filtersCopy);
             this.sortedFilters = Collections.unmodifiableList(filtersCopy);
 
+            // Filters that depend on the session or credentials apply to each request after the cache
+            final List<INotificationEntryFilter> requestFiltersCopy = new ArrayList<>();
+            for (INotificationServiceFilter filter : sortedFilters) {
+                if (filter instanceof INotificationEntryFilter
+                        && ((INotificationEntryFilter) filter).isRequestSpecific()) {
+                    requestFiltersCopy.add((INotificationEntryFilter) filter);
+                }
+            }
+            this.requestFilters = Collections.unmodifiableList(requestFiltersCopy);
+
             // Services
             logger.info("Found the following INotificationService beans:  {}", services);
             this.services = services;
 
             // Etc.
             this.usernameFinder = usernameFinder;
+            this.executorService = executorService;
+            this.serviceTimeoutMillis = serviceTimeoutMillis;
+            this.responseCache = responseCache;
 
         }
 
@@ -105,6 +167,11 @@ public class NotificationServiceFilterConfiguration {
                     ((IRefreshable) filter).refresh(request, response);
                 }
             }
+            final String username = usernameFinder.findUsername(request);
+            if (username != null) {
+                logger.debug("Clearing cached responses for user '{}'", username);
+                responseCache.remove(username);
+            }
         }
 
         @Override
@@ -113,26 +180,92 @@ public class NotificationServiceFilterConfiguration {
             final String username = usernameFinder.findUsername(request);
             logger.debug("Fetching notifications on behalf of user '{}'", username);
 
+            if (username == null) {
+                return applyRequestFilters(request, fetchFromServices(request));
+            }
+
+            /*
+             * Responses are cached per user (so refresh() can clear them all at once), then by the
+             * request parameters that influence them.  Nothing specific to the session or the
+             * credentials is cached;  the filters that depend on those apply to every request.
+             */
+            final ResponseCacheKey cacheKey = new ResponseCacheKey(request);
+            ConcurrentMap<ResponseCacheKey,NotificationResponse> userResponses = getUserResponses(username);
+            NotificationResponse rslt = userResponses.get(cacheKey);
+            if (rslt != null) {
+                logger.debug("Cache HIT for user '{}' and {}", username, cacheKey);
+                return applyRequestFilters(request, rslt);
+            }
+
+            logger.debug("Cache MISS for user '{}' and {}", username, cacheKey);
+            rslt = fetchFromServices(request);
+            if (rslt.getErrors().isEmpty()) {
+                /*
+                 * Cache a private copy (not marked as cloned) so that consumers who want to modify
+                 * it must clone it first.  Responses with errors (e.g. a service that timed out) are
+                 * not cached so that the next request tries again.
+                 */
+                rslt = new NotificationResponse(rslt);
+                userResponses.put(cacheKey, rslt);
+            }
+            return applyRequestFilters(request, rslt);
+
+        }
+
+        /*
+         * Implementation
+         */
+
+        private ConcurrentMap<ResponseCacheKey,NotificationResponse> getUserResponses(String username) {
+            final Element m = responseCache.get(username);
+            if (m != null) {
+                return (ConcurrentMap<ResponseCacheKey,NotificationResponse>) m.getObjectValue();
+            }
+            final ConcurrentMap<ResponseCacheKey,NotificationResponse> rslt = new ConcurrentHashMap<>();
+            final Element existing = responseCache.putIfAbsent(new Element(username, rslt));
+            return existing != null
+                    ? (ConcurrentMap<ResponseCacheKey,NotificationResponse>) existing.getObjectValue()
+                    : rslt;
+        }
+
+        private NotificationResponse applyRequestFilters(HttpServletRequest request, NotificationResponse response) {
+            if (requestFilters.isEmpty()) {
+                return response;
+            }
+            return new FusedEntryFilterChainImpl(requestFilters, request, () -> response).doFilter();
+        }
+
+        private NotificationResponse fetchFromServices(HttpServletRequest request) {
+
             /*
              * The end of the line:  the INotificationServiceFilterChain that wraps the collection
              * of INotificationService beans.
              */
-            INotificationServiceFilterChain chain = () -> {
-                NotificationResponse rslt = new NotificationResponse();
-                for (INotificationService service : services) {
-                    NotificationResponse response = service.fetch(request);
-                    rslt = rslt.combine(response);
-                    logger.debug("Processed INotificationService bean '{}';  size={}", service.getName(), rslt.size());
-                }
-                return rslt;
-            };
+            INotificationServiceFilterChain chain = new ConcurrentServicesFilterChainImpl(services,
+                    request, executorService, serviceTimeoutMillis);
 
             /*
-             * Build the rest of the INotificationServiceFilterChain.
+             * Build the rest of the INotificationServiceFilterChain.  Adjacent INotificationEntryFilter
+             * beans share a single link (and a single pass over the entries).
              */
+            final List<INotificationEntryFilter> entryFilters = new ArrayList<>();
             for (INotificationServiceFilter filter : sortedFilters) {
+                if (requestFilters.contains(filter)) {
+                    continue;  // See applyRequestFilters()
+                }
+                if (filter instanceof INotificationEntryFilter) {
+                    entryFilters.add((INotificationEntryFilter) filter);
+                    continue;
+                }
+                if (!entryFilters.isEmpty()) {
+                    chain = new FusedEntryFilterChainImpl(new ArrayList<>(entryFilters), request, chain);
+                    entryFilters.clear();
+                }
                 chain = new NotificationServiceFilterChainImpl(filter, request, chain);
             }
+            if (!entryFilters.isEmpty()) {
+                chain = new FusedEntryFilterChainImpl(entryFilters, request, chain);
+            }
 
             return chain.doFilter();
 
@@ -140,6 +273,68 @@ public class NotificationServiceFilterConfiguration {
 
     }
 
+    /**
+     * The request parameters (beyond the user) that determine the cached response.  Filters that
+     * depend on the session or the credentials, like {@link AcknowledgePerSessionFilter}, apply
+     * after the cache, so neither they nor their parameters are represented here.
+     */
+    private static final class ResponseCacheKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String read;
+        private final String minPriority;
+        private final String maxPriority;
+        private final String sortStrategy;
+        private final String sortOrder;
+
+        /* package-private */ ResponseCacheKey(HttpServletRequest request) {
+            this.read = request.getParameter(ReadStateSupportFilter.READ_PARAMETER_NAME);
+            this.minPriority = request.getParameter(PriorityNotificationServiceFilter.MIN_PRIORITY_PARAMETER_NAME);
+            this.maxPriority = request.getParameter(PriorityNotificationServiceFilter.MAX_PRIORITY_PARAMETER_NAME);
+            this.sortStrategy = request.getParameter(Sorting.SORT_STRATEGY_PARAMETER_NAME);
+            this.sortOrder = request.getParameter(Sorting.SORT_ORDER_PARAMETER_NAME);
+        }
+
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this)
+                    .append("read", read)
+                    .append("minPriority", minPriority)
+                    .append("maxPriority", maxPriority)
+                    .append("sortStrategy", sortStrategy)
+                    .append("sortOrder", sortOrder)
+                    .toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ResponseCacheKey key = (ResponseCacheKey) o;
+
+            return new EqualsBuilder()
+                    .append(read, key.read)
+                    .append(minPriority, key.minPriority)
+                    .append(maxPriority, key.maxPriority)
+                    .append(sortStrategy, key.sortStrategy)
+                    .append(sortOrder, key.sortOrder)
+                    .isEquals();
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder(17, 37)
+                    .append(read)
+                    .append(minPriority)
+                    .append(maxPriority)
+                    .append(sortStrategy)
+                    .append(sortOrder)
+                    .toHashCode();
+        }
+    }
+
     private static class NotificationServiceFilterChainImpl implements INotificationServiceFilterChain {
 
         private final INotificationServiceFilter filter;
@@ -163,4 +358,169 @@ public class NotificationServiceFilterConfiguration {
         }
     }
 
+    /**
+     * Applies several {@link INotificationEntryFilter} beans in one traversal of the entries.  Each
+     * entry passes through the filters in the order they would take effect as separate links.
+     */
+    /* package-private */ static class FusedEntryFilterChainImpl implements INotificationServiceFilterChain {
+
+        private final List<INotificationEntryFilter> filters;
+        private final HttpServletRequest request;
+        private final INotificationServiceFilterChain nextLink;
+
+        /* package-private */ FusedEntryFilterChainImpl(List<INotificationEntryFilter> filters,
+                HttpServletRequest request, INotificationServiceFilterChain nextLink) {
+
+            this.filters = filters;
+            this.request = request;
+            this.nextLink = nextLink;
+
+        }
+
+        @Override
+        public NotificationResponse doFilter() {
+
+            final NotificationResponse response = nextLink.doFilter();
+
+            final List<UnaryOperator<NotificationEntry>> operations = new ArrayList<>(filters.size());
+            for (INotificationEntryFilter filter : filters) {
+                final UnaryOperator<NotificationEntry> operation = filter.prepareEntryFilter(request, response);
+                if (operation != null) {
+                    operations.add(operation);
+                }
+            }
+            if (operations.isEmpty()) {
+                return response;
+            }
+
+            final NotificationResponse rslt = response.transformEntries(entry -> {
+                NotificationEntry current = entry;
+                for (UnaryOperator<NotificationEntry> operation : operations) {
+                    current = operation.apply(current);
+                    if (current == null) {
+                        break;  // Removed
+                    }
+                }
+                return current;
+            });
+            logger.debug("Processed INotificationEntryFilter beans {} in a single pass;  size={}", filters, rslt.size());
+            return rslt;
+
+        }
+
+    }
+
+    /**
+     * Terminal link in the chain:  invokes every {@link INotificationService} concurrently and
+     * merges responses as they arrive.  Services that have not responded by the deadline (or that
+     * the executor rejects because it's saturated) are represented by a {@link NotificationError}.
+     * The executor must not run tasks on the calling thread, which would keep it from enforcing
+     * the deadline.
+     */
+    private static class ConcurrentServicesFilterChainImpl implements INotificationServiceFilterChain {
+
+        private final Set<INotificationService> services;
+        private final HttpServletRequest request;
+        private final ExecutorService executorService;
+        private final long serviceTimeoutMillis;
+
+        /* package-private */ ConcurrentServicesFilterChainImpl(Set<INotificationService> services,
+                HttpServletRequest request, ExecutorService executorService, long serviceTimeoutMillis) {
+
+            this.services = services;
+            this.request = request;
+            this.executorService = executorService;
+            this.serviceTimeoutMillis = serviceTimeoutMillis;
+
+        }
+
+        @Override
+        public NotificationResponse doFilter() {
+
+            final long start = System.currentTimeMillis();
+            final long deadline = start + serviceTimeoutMillis;
+
+            /*
+             * UsernameFinder (and others) rely on the SecurityContextHolder and the
+             * RequestContextHolder, which are thread-bound;  each task must carry those of the
+             * current thread.  The request itself isn't safe for use by other threads, so tasks
+             * see a copy taken here (see DetachedHttpServletRequest).
+             */
+            final HttpServletRequest taskRequest = new DetachedHttpServletRequest(request).getRequest();
+            final RequestAttributes taskAttributes = wrap(RequestContextHolder.getRequestAttributes(), taskRequest);
+            final CompletionService<NotificationResponse> completionService =
+                    new ExecutorCompletionService<>(executorService);
+            final Map<Future<NotificationResponse>,INotificationService> pending = new HashMap<>();
+            final NotificationResponseMerger merger = new NotificationResponseMerger();
+            final List<NotificationError> errors = new ArrayList<>();
+            for (INotificationService service : services) {
+                try {
+                    pending.put(completionService.submit(new DelegatingSecurityContextCallable<>(() -> {
+                        RequestContextHolder.setRequestAttributes(taskAttributes);
+                        try {
+                            return service.fetch(taskRequest);
+                        } finally {
+                            RequestContextHolder.resetRequestAttributes();
+                        }
+                    })), service);
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Unable to invoke INotificationService bean '{}';  the executor is saturated",
+                            service.getName());
+                    errors.add(new NotificationError("Service Unavailable", service.getName()));
+                }
+            }
+
+            try {
+                while (!pending.isEmpty()) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    final Future<NotificationResponse> future = remaining > 0
+                            ? completionService.poll(remaining, TimeUnit.MILLISECONDS)
+                            : null;
+                    if (future == null) {
+                        break;  // Out of time
+                    }
+                    final INotificationService service = pending.remove(future);
+                    try {
+                        final NotificationResponse response = future.get();
+                        merger.add(response);
+                        logger.debug("Processed INotificationService bean '{}';  size={}", service.getName(), response.size());
+                    } catch (ExecutionException e) {
+                        logger.error("Failed to invoke INotificationService bean '{}'", service.getName(), e.getCause());
+                        errors.add(new NotificationError("Service Unavailable", service.getName()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Anything still pending missed the deadline
+            for (Map.Entry<Future<NotificationResponse>,INotificationService> y : pending.entrySet()) {
+                y.getKey().cancel(true);
+                final String serviceName = y.getValue().getName();
+                logger.warn("INotificationService bean '{}' did not respond within {}ms", serviceName, serviceTimeoutMillis);
+                errors.add(new NotificationError("Service did not respond within " + serviceTimeoutMillis + "ms", serviceName));
+            }
+
+            final NotificationResponse rslt = merger.addErrors(errors).build();
+
+            logger.debug("Fetched from {} INotificationService beans in {}ms", services.size(),
+                    System.currentTimeMillis() - start);
+
+            return rslt;
+
+        }
+
+        /**
+         * Provides <code>RequestAttributes</code> for the tasks that expose the copy of the request
+         * in place of the original.
+         */
+        private RequestAttributes wrap(RequestAttributes attributes, HttpServletRequest taskRequest) {
+            if (attributes instanceof ServletRequestAttributes) {
+                return new ServletRequestAttributes(taskRequest, ((ServletRequestAttributes) attributes).getResponse());
+            }
+            return attributes;
+        }
+
+    }
+
 }
@@ -18,8 +18,10 @@
  */
 package org.jasig.portlet.notice.filter;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.lang.StringUtils;
@@ -33,7 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
-public class ReadActionFilter extends AbstractNotificationServiceFilter {
+public class ReadActionFilter extends AbstractNotificationEntryFilter {
 
     public static final String READ_ATTRIBUTE_NAME = "READ";
 
@@ -50,46 +52,46 @@ public class ReadActionFilter extends AbstractNotificationServiceFilter {
     }
 
     @Override
-    public NotificationResponse doFilter(
-            HttpServletRequest request, INotificationServiceFilterChain chain) {
-        final NotificationResponse response = chain.doFilter();
-
-        final NotificationResponse rslt = response.cloneIfNotCloned();
-
-        for (NotificationCategory category : rslt.getCategories()) {
-
-            for (NotificationEntry entry : category.getEntries()) {
-
-                if (StringUtils.isBlank(entry.getId())) {
-                    continue;
-                }
-
-                final String username = usernameFinder.findUsername(request);
-                final List<EventDTO> history = jpaServices.getHistory(entry, username);
-
-                logger.trace(
-                        "Found the following history for username='{}' and entryId='{}': {}",
-                        username,
-                        entry.getId(),
-                        history);
-
-                final List<NotificationAttribute> attributes =
-                        new ArrayList<>(entry.getAttributes());
-                final boolean isRead =
-                        history.stream()
-                                .anyMatch(event -> NotificationState.READ.equals(event.getState()));
-
-                if (isRead) {
-                    final List<NotificationAction> filteredActions =
-                            entry.getAvailableActions()
-                                    .stream()
-                                    .filter(action -> !ReadStateAction.class.isInstance(action))
-                                    .collect(Collectors.toList());
-                    entry.setAvailableActions(filteredActions);
-                }
+    public UnaryOperator<NotificationEntry> prepareEntryFilter(
+            HttpServletRequest request, NotificationResponse response) {
+
+        final String username = usernameFinder.findUsername(request);
+        // Shared with ReadStateSupportFilter
+        final Map<String, List<EventDTO>> histories =
+                EntryHistories.get(request, response, username, jpaServices);
+
+        return entry -> {
+
+            if (StringUtils.isBlank(entry.getId())) {
+                return entry;
             }
-        }
 
-        return rslt;
+            final List<EventDTO> history =
+                    histories.getOrDefault(entry.getId(), Collections.emptyList());
+
+            logger.trace(
+                    "Found the following history for username='{}' and entryId='{}': {}",
+                    username,
+                    entry.getId(),
+                    history);
+
+            final boolean isRead =
+                    history.stream()
+                            .anyMatch(event -> NotificationState.READ.equals(event.getState()));
+
+            if (!isRead) {
+                return entry;
+            }
+
+            final NotificationEntry rslt = entry.shallowCopy();
+            final List<NotificationAction> filteredActions =
+                    rslt.getAvailableActions()
+                            .stream()
+                            .filter(action -> !ReadStateAction.class.isInstance(action))
+                            .collect(Collectors.toList());
+            rslt.setAvailableActions(filteredActions);
+            return rslt;
+
+        };
     }
 }
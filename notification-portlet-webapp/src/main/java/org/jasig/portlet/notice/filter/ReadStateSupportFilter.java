@@ -19,16 +19,17 @@
 package org.jasig.portlet.notice.filter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang.StringUtils;
 import org.jasig.portlet.notice.INotificationServiceFilter;
-import org.jasig.portlet.notice.INotificationServiceFilterChain;
 import org.jasig.portlet.notice.NotificationAction;
 import org.jasig.portlet.notice.NotificationAttribute;
-import org.jasig.portlet.notice.NotificationCategory;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.NotificationState;
@@ -49,7 +50,7 @@ import org.springframework.stereotype.Component;
  * @since 4.0
  */
 @Component
-public class ReadStateSupportFilter extends AbstractNotificationServiceFilter {
+public class ReadStateSupportFilter extends AbstractNotificationEntryFilter {
 
     public static final String READ_ATTRIBUTE_NAME = "READ";
     public static final String READ_PARAMETER_NAME = "read";
@@ -74,75 +75,97 @@ public class ReadStateSupportFilter extends AbstractNotificationServiceFilter {
     }
 
     @Override
-    public NotificationResponse doFilter(HttpServletRequest request, INotificationServiceFilterChain chain) {
-
-        final NotificationResponse response = chain.doFilter();
+    public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request, NotificationResponse response) {
 
         final String readFilterParameter = request.getParameter(READ_PARAMETER_NAME);
+        final Boolean readFilterValue = StringUtils.isNotBlank(readFilterParameter)
+                ? Boolean.parseBoolean(readFilterParameter)
+                : null;
+
+        if (disableDefaultAction && readFilterValue == null) {
+            return null;  // Nothing to do
+        }
 
-        final NotificationResponse rslt = response.cloneIfNotCloned();
-
-        if (!disableDefaultAction) {
-            // Add and implement the read behavior with our copy
-            for (NotificationCategory category : rslt.getCategories()) {
-
-                for (NotificationEntry entry : category.getEntries()) {
-
-                    /*
-                     * Participation in READ behavior is 100%
-                     * dependant on having an id set on the entry.
-                     */
-                    if (StringUtils.isBlank(entry.getId())) {
-                        continue;
-                    }
-
-                    /*
-                     * Apply the READ attribute if the circumstances call for it.
-                     */
-                    final String username = usernameFinder.findUsername(request);
-                    final List<EventDTO> history = jpaServices.getHistory(entry, username);
-
-                    logger.trace("Found the following history for username='{}' and entryId='{}': {}",
-                            username, entry.getId(), history);
-
-                    final List<NotificationAttribute> attributes = new ArrayList<>(entry.getAttributes());
-                    final boolean isRead = history.stream()
-                            .anyMatch(event -> NotificationState.READ.equals(event.getState()));
-                    attributes.add(isRead ? READ_ATTRIBUTE : UNREAD_ATTRIBUTE);
-                    entry.setAttributes(attributes);
-
-                    /*
-                     * Decorate with READ behavior, but only if (1) the entry is unread and (2) the
-                     * entry does not have a ReadAction already
-                     */
-                    if (!isRead) {
-                        final List<NotificationAction> currentActions = entry.getAvailableActions();
-                        boolean hasReadActionAlready = currentActions.stream()
-                                .anyMatch(action -> ReadStateAction.class.isInstance(action));
-                        if (!hasReadActionAlready) {
-                            final List<NotificationAction> replacementList = new ArrayList<>(currentActions);
-                            replacementList.add(new MarkAsReadAndRedirectAction());
-                            entry.setAvailableActions(replacementList);
-                        }
-                    }
+        final String username = usernameFinder.findUsername(request);
+
+        /*
+         * Resolve the history of every entry up front in a fixed number of
+         * queries, rather than one lookup (or more) per entry;  ReadActionFilter
+         * shares them.
+         */
+        final Map<String,List<EventDTO>> histories = disableDefaultAction
+                ? Collections.emptyMap()
+                : EntryHistories.get(request, response, username, jpaServices);
+
+        return entry -> {
+
+            // Copy-on-write:  entries without an id are passed along unchanged
+            final NotificationEntry rslt = disableDefaultAction
+                    ? entry
+                    : applyReadState(entry, username, histories);
+
+            if (readFilterValue != null) {
+                final boolean isRead = rslt.getAttributes().stream()
+                        .anyMatch(attribute -> attribute.equals(READ_ATTRIBUTE));
+                if (isRead != readFilterValue) {
+                    return null;
                 }
             }
-        }
 
-        if (StringUtils.isNotBlank(readFilterParameter)) {
-            boolean readFilterValue = Boolean.parseBoolean(readFilterParameter);
+            return rslt;
+
+        };
+
+    }
 
-            return rslt.filter(
-                    entry -> {
-                        boolean isRead =
-                                entry.getAttributes()
-                                        .stream()
-                                        .anyMatch(attribute -> attribute.equals(READ_ATTRIBUTE));
+    /*
+     * Implementation
+     */
 
-                        return isRead == readFilterValue;
-                    });
+    private NotificationEntry applyReadState(NotificationEntry entry, String username,
+            Map<String,List<EventDTO>> histories) {
+
+        /*
+         * Participation in READ behavior is 100%
+         * dependant on having an id set on the entry.
+         */
+        if (StringUtils.isBlank(entry.getId())) {
+            return entry;
+        }
+
+        final NotificationEntry rslt = entry.shallowCopy();
+
+        /*
+         * Apply the READ attribute if the circumstances call for it.
+         */
+        final List<EventDTO> history = histories.getOrDefault(entry.getId(), Collections.emptyList());
+
+        logger.trace("Found the following history for username='{}' and entryId='{}': {}",
+                username, entry.getId(), history);
+
+        final List<NotificationAttribute> attributes = new ArrayList<>(rslt.getAttributes());
+        final boolean isRead = history.stream()
+                .anyMatch(event -> NotificationState.READ.equals(event.getState()));
+        attributes.add(isRead ? READ_ATTRIBUTE : UNREAD_ATTRIBUTE);
+        rslt.setAttributes(attributes);
+
+        /*
+         * Decorate with READ behavior, but only if (1) the entry is unread and (2) the
+         * entry does not have a ReadAction already
+         */
+        if (!isRead) {
+            final List<NotificationAction> currentActions = rslt.getAvailableActions();
+            boolean hasReadActionAlready = currentActions.stream()
+                    .anyMatch(action -> ReadStateAction.class.isInstance(action));
+            if (!hasReadActionAlready) {
+                final List<NotificationAction> replacementList = new ArrayList<>(currentActions);
+                replacementList.add(new MarkAsReadAndRedirectAction());
+                rslt.setAvailableActions(replacementList);
+            }
         }
 
         return rslt;
+
     }
+
 }
@@ -18,9 +18,21 @@
  */
 package org.jasig.portlet.notice.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -38,9 +50,11 @@ import net.sf.ehcache.Element;
 import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.IRefreshable;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationResponseMerger;
 import org.jasig.portlet.notice.service.filter.FilteringNotificationServiceDecorator;
 import org.jasig.portlet.notice.service.jdbc.AbstractJdbcNotificationService;
 import org.jasig.portlet.notice.util.PortletXmlRoleService;
+import org.jasig.portlet.notice.util.StaleWhileRevalidatePolicy;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,13 +66,37 @@ import org.springframework.context.ApplicationContext;
 /**
  * This class decorates and aggregates all the notification service providers. It also provides
  * caching via EHCache. Each child context (e.g. portlet) has it's own instance of this class.
+ *
+ * <p>When an <code>executorService</code> is provided, services are invoked concurrently and each
+ * one must respond within its deadline (<code>serviceTimeoutMillis</code>, or an entry in
+ * <code>serviceTimeouts</code>).  A service that misses its deadline contributes a
+ * {@link org.jasig.portlet.notice.NotificationError} to the response and is fetched again on the
+ * next request.  Services invoked concurrently receive a copy of the request (see
+ * {@link DetachedPortletRequest}), since portlet containers don't support sharing the request
+ * with other threads.
+ *
+ * <p>Once a cached response goes stale (see {@link StaleWhileRevalidatePolicy}) it is returned as
+ * is, and every service is fetched again in the background using a {@link DetachedPortletRequest};
+ * the new response replaces the stale one in the cache when it's complete.  The stale response of a
+ * service that misses its deadline is kept in place of an error.  Background fetches have no
+ * request to write preferences to, so preferences that services store during revalidation are
+ * discarded.
  */
 public final class CacheNotificationService extends AbstractNotificationService implements IRefreshable {
 
+    /**
+     * Deadline applied to services that have no entry in <code>serviceTimeouts</code>.
+     */
+    public static final long DEFAULT_SERVICE_TIMEOUT_MILLIS = 10000L;
+
     // Wired by Spring
     private ApplicationContext applicationContext;
     private List<INotificationService> embeddedServices;
     private Cache cache;
+    private StaleWhileRevalidatePolicy cachePolicy;
+    private ExecutorService executorService;  // Optional;  null means fetch sequentially
+    private long serviceTimeoutMillis = DEFAULT_SERVICE_TIMEOUT_MILLIS;
+    private Map<String,Long> serviceTimeouts = Collections.emptyMap();
 
     // Some portlets want to ONLY use explicit services, e.g. Emergency Alerts
     private boolean useDiscoverable = true;
@@ -70,6 +108,7 @@ public final class CacheNotificationService extends AbstractNotificationService
 
     // Managed internally
     private final Map<String,INotificationService> servicesMap = new HashMap<>();
+    private Set<String> definedRoles = Collections.emptySet();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Autowired
@@ -87,6 +126,40 @@ public final class CacheNotificationService extends AbstractNotificationService
         this.cache = cache;
     }
 
+    /**
+     * @since 4.9
+     */
+    @Resource(name="notificationResponseCachePolicy")
+    public void setCachePolicy(StaleWhileRevalidatePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * Enables concurrent fetching from the embedded (and discovered) services.
+     *
+     * @since 4.9
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * @since 4.9
+     */
+    public void setServiceTimeoutMillis(long serviceTimeoutMillis) {
+        this.serviceTimeoutMillis = serviceTimeoutMillis;
+    }
+
+    /**
+     * Per-service deadlines (in milliseconds) keyed by service name;  these override
+     * <code>serviceTimeoutMillis</code>.
+     *
+     * @since 4.9
+     */
+    public void setServiceTimeouts(Map<String,Long> serviceTimeouts) {
+        this.serviceTimeouts = Collections.unmodifiableMap(new HashMap<>(serviceTimeouts));
+    }
+
     @PostConstruct
     public void init() {
         servicesMap.clear();  // reset the Map
@@ -104,6 +177,13 @@ public final class CacheNotificationService extends AbstractNotificationService
             logger.info("Added configured Notification Service:  {}", s.getName());
         }
 
+        // Role membership must be captured for services invoked concurrently
+        if (applicationContext.containsBean("portletXmlRoleService")) {
+            final PortletXmlRoleService portletXmlRoleService =
+                    (PortletXmlRoleService) applicationContext.getBean("portletXmlRoleService");
+            definedRoles = portletXmlRoleService.getAllRoles();
+        }
+
         if (useDiscoverable) {
             // Discover services provided by implementors (TODO: we should move everything to discovery)
             final Map<String,AbstractJdbcNotificationService> discoverableServices =
@@ -170,7 +250,13 @@ public final class CacheNotificationService extends AbstractNotificationService
         CacheTuple tuple;  // Existing or new?
         final String cacheKey = createServiceUserWindowSpecificCacheKey(req);
         final Element m = cache.get(cacheKey);
-        if (m != null) {
+        if (m != null && cachePolicy.isStale(m)) {
+            logger.debug("Cache HIT (stale) for user='{}' and windowId={}", username, req.getWindowID());
+
+            // Serve what we have;  fetch everything again in the background
+            tuple = (CacheTuple) m.getObjectValue();
+            revalidate(req, cacheKey, tuple);
+        } else if (m != null) {
             logger.debug("Cache HIT for user='{}' and windowId={}", username, req.getWindowID());
 
             // We have a cached element, but it could be
@@ -178,6 +264,7 @@ public final class CacheNotificationService extends AbstractNotificationService
             tuple = (CacheTuple) m.getObjectValue();
             final Map<String,NotificationResponse> iterable =
                     new HashMap<>(tuple.getResponses());  // Can't iterate & modify the same collection
+            final List<INotificationService> staleServices = new ArrayList<>();
             for (Map.Entry<String,NotificationResponse> entry : iterable.entrySet()) {
                 final INotificationService service = servicesMap.get(entry.getKey());
                 if (service == null) {
@@ -187,38 +274,167 @@ public final class CacheNotificationService extends AbstractNotificationService
                     tuple.getResponses().remove(entry.getKey());
                     continue;
                 }
-                // Refresh if needed
-                if (!service.isValid(req, entry.getValue())) {
-                    final NotificationResponse freshResponse = getResponseFromService(req, service);
-                    tuple.getResponses().put(entry.getKey(), freshResponse);
+                // Refresh if needed (including services that missed their deadline last time)
+                if (tuple.getIncompleteServices().contains(entry.getKey())
+                        || !service.isValid(req, entry.getValue())) {
+                    staleServices.add(service);
                 }
             }
+            if (!staleServices.isEmpty()) {
+                tuple.getIncompleteServices().removeAll(
+                        staleServices.stream().map(INotificationService::getName).collect(Collectors.toSet()));
+                tuple.getResponses().putAll(
+                        getResponsesFromServices(req, staleServices, tuple.getIncompleteServices()));
+            }
         } else {
             logger.debug("Cache MISS for user='{}' and windowId={}", username, req.getWindowID());
 
             // For whatever reason we can't pull from cache;  we need to hit
             // the underlying data sources, then cache what we receive
             tuple = new CacheTuple();
-            for(INotificationService service : servicesMap.values()) {
-                final NotificationResponse nr = getResponseFromService(req, service);
-                tuple.getResponses().put(service.getName(), nr);
-            }
-            cache.put(new Element(cacheKey, tuple));
+            tuple.getResponses().putAll(
+                    getResponsesFromServices(req, servicesMap.values(), tuple.getIncompleteServices()));
+            cache.put(cachePolicy.createElement(cache, cacheKey, tuple));
         }
 
         // Construct a new NotificationResponse from constituent parts...
-        NotificationResponse rslt = new NotificationResponse();
-        for (Map.Entry<String,NotificationResponse> entry : tuple.getResponses().entrySet()) {
-            rslt = rslt.combine(entry.getValue());
+        return NotificationResponseMerger.merge(tuple.getResponses().values());
+
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Fetches from every service on a background thread and replaces the stale tuple in the cache
+     * when done.  Must be invoked on the thread processing the request, which is free to complete
+     * before the fetch does.
+     */
+    private void revalidate(PortletRequest req, String cacheKey, CacheTuple stale) {
+        final String username = usernameFinder.findUsername(req);
+        final DetachedPortletRequest detached = new DetachedPortletRequest(req, definedRoles);
+        cachePolicy.revalidate(cacheKey, () -> {
+            final CacheTuple tuple = new CacheTuple();
+            try {
+                final PortletRequest taskRequest = detached.getRequest();
+                tuple.getResponses().putAll(executorService != null
+                        ? getResponsesConcurrently(taskRequest, servicesMap.values(), tuple.getIncompleteServices())
+                        : getResponsesSequentially(taskRequest, servicesMap.values()));
+            } finally {
+                // Nowhere to store preferences now;  services that are still running must stop
+                detached.release();
+            }
+            // Fall back to stale responses where we ran out of time
+            for (String serviceName : tuple.getIncompleteServices()) {
+                final NotificationResponse previous = stale.getResponses().get(serviceName);
+                if (previous != null && !stale.getIncompleteServices().contains(serviceName)) {
+                    logger.debug("Using stale response for service '{}' and user='{}'", serviceName, username);
+                    tuple.getResponses().put(serviceName, previous);
+                }
+            }
+            cache.put(cachePolicy.createElement(cache, cacheKey, tuple));
+            logger.debug("Revalidated the cached response for user='{}' and key='{}'", username, cacheKey);
+        });
+    }
+
+    /**
+     * Obtains a response from each of the specified services, concurrently if we have an
+     * <code>executorService</code>.  The names of services that did not respond within their
+     * deadlines are added to <code>incompleteServices</code>.
+     */
+    private Map<String,NotificationResponse> getResponsesFromServices(PortletRequest req,
+            Collection<INotificationService> services, Set<String> incompleteServices) {
+
+        if (executorService == null || services.size() < 2) {
+            return getResponsesSequentially(req, services);
+        }
+
+        // Fan out...  services on other threads may not use the request itself
+        final DetachedPortletRequest detached = new DetachedPortletRequest(req, definedRoles);
+        final Map<String,NotificationResponse> rslt;
+        try {
+            rslt = getResponsesConcurrently(detached.getRequest(), services, incompleteServices);
+        } finally {
+            // Services that missed their deadline must not use the copy any longer
+            detached.release();
+        }
+        try {
+            detached.storePreferences(req);
+        } catch (Exception e) {
+            logger.warn("Failed to store the preferences changed by services for user '{}'",
+                    req.getRemoteUser(), e);
         }
 
         return rslt;
 
     }
 
-    /*
-     * Implementation
+    private Map<String,NotificationResponse> getResponsesSequentially(PortletRequest req,
+            Collection<INotificationService> services) {
+        final Map<String,NotificationResponse> rslt = new HashMap<>();
+        for (INotificationService service : services) {
+            rslt.put(service.getName(), getResponseFromService(req, service));
+        }
+        return rslt;
+    }
+
+    /**
+     * Submits each of the specified services to the <code>executorService</code> and waits for
+     * them (each up to its deadline).  The request must be one that other threads may use.
      */
+    private Map<String,NotificationResponse> getResponsesConcurrently(PortletRequest taskRequest,
+            Collection<INotificationService> services, Set<String> incompleteServices) {
+
+        final Map<String,NotificationResponse> rslt = new HashMap<>();
+        final long start = System.currentTimeMillis();
+        final Map<INotificationService,Future<NotificationResponse>> futures = new LinkedHashMap<>();
+        for (INotificationService service : services) {
+            futures.put(service, executorService.submit(() -> getResponseFromService(taskRequest, service)));
+        }
+
+        // Gather the results;  each service gets its own deadline, measured from the same start
+        for (Map.Entry<INotificationService,Future<NotificationResponse>> y : futures.entrySet()) {
+            final INotificationService service = y.getKey();
+            final Future<NotificationResponse> future = y.getValue();
+            final long timeout = getServiceTimeoutMillis(service);
+            final long remaining = Math.max(start + timeout - System.currentTimeMillis(), 0L);
+            NotificationResponse response;
+            try {
+                response = future.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                final String msg = "The specified service did not respond within " + timeout
+                        + "ms:  " + service.getName();
+                logger.warn(msg);
+                response = prepareErrorResponse(getName(), msg);
+                incompleteServices.add(service.getName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                final String msg = "Interrupted while waiting for the specified service:  " + service.getName();
+                logger.warn(msg);
+                response = prepareErrorResponse(getName(), msg);
+                incompleteServices.add(service.getName());
+            } catch (ExecutionException e) {
+                final String msg = "Failed to invoke the specified service:  " + service.getName();
+                logger.error(msg, e.getCause());
+                response = prepareErrorResponse(getName(), msg);
+            }
+            rslt.put(service.getName(), response);
+        }
+
+        logger.debug("Fetched from {} services concurrently in {}ms", services.size(),
+                System.currentTimeMillis() - start);
+
+        return rslt;
+
+    }
+
+    private long getServiceTimeoutMillis(INotificationService service) {
+        final Long rslt = serviceTimeouts.get(service.getName());
+        return rslt != null ? rslt : serviceTimeoutMillis;
+    }
 
     private NotificationResponse getResponseFromService(PortletRequest req, INotificationService service) {
         NotificationResponse rslt;
@@ -251,11 +467,19 @@ public final class CacheNotificationService extends AbstractNotificationService
 
         // Instance members
         private final Map<String,NotificationResponse> responses = new HashMap<>();
+        private final Set<String> incompleteServices = new HashSet<>();
 
         public Map<String,NotificationResponse> getResponses() {
             return this.responses;
         }
 
+        /**
+         * Names of services that missed their deadline;  these must be fetched again next time.
+         */
+        public Set<String> getIncompleteServices() {
+            return this.incompleteServices;
+        }
+
     }
 
 }
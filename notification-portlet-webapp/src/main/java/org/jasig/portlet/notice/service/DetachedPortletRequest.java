@@ -0,0 +1,298 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+import javax.portlet.ReadOnlyException;
+import javax.portlet.ValidatorException;
+
+/**
+ * A copy of the parts of a {@link PortletRequest} that services read while fetching, for use on
+ * threads other than the one processing the request.  Portlet containers don't support access to
+ * the request from other threads (nor after it completes), so services that are invoked
+ * concurrently receive {@link #getRequest()} instead of the original.  Preferences that services
+ * change and store are written to the original by the caller (see {@link #storePreferences});
+ * attributes set by one service are visible to the others.  Methods beyond these throw
+ * {@link UnsupportedOperationException}, and every method throws {@link IllegalStateException}
+ * once the caller has stopped waiting and invoked {@link #release()}.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class DetachedPortletRequest implements InvocationHandler {
+
+    private final String remoteUser;
+    private final String windowId;
+    private final PreferencesSnapshot preferences;
+    private final boolean renderPhase;
+    private final Map<String,String[]> parameters;
+    private final Map<String,Object> attributes;
+    private final Set<String> definedRoles;
+    private final Set<String> userRoles;
+    private final PortletRequest proxy;
+    private volatile boolean released = false;
+
+    /**
+     * Must be invoked on the thread processing the request.
+     *
+     * @param req The request to copy
+     * @param definedRoles The roles for which {@link PortletRequest#isUserInRole(String)} will be
+     * supported
+     */
+    /* package-private */ DetachedPortletRequest(PortletRequest req, Set<String> definedRoles) {
+        this.remoteUser = req.getRemoteUser();
+        this.windowId = req.getWindowID();
+        this.preferences = new PreferencesSnapshot(req.getPreferences().getMap());
+        this.renderPhase = PortletRequest.RENDER_PHASE.equals(req.getAttribute(PortletRequest.LIFECYCLE_PHASE));
+
+        final Map<String,String[]> params = new HashMap<>();
+        for (Map.Entry<String,String[]> y : req.getParameterMap().entrySet()) {
+            params.put(y.getKey(), y.getValue().clone());
+        }
+        this.parameters = Collections.unmodifiableMap(params);
+
+        this.attributes = new ConcurrentHashMap<>();
+        for (Enumeration<String> names = req.getAttributeNames(); names.hasMoreElements();) {
+            final String name = names.nextElement();
+            final Object value = req.getAttribute(name);
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+
+        this.definedRoles = definedRoles;
+        final Set<String> roles = new HashSet<>();
+        for (String role : definedRoles) {
+            if (req.isUserInRole(role)) {
+                roles.add(role);
+            }
+        }
+        this.userRoles = Collections.unmodifiableSet(roles);
+
+        this.proxy = (PortletRequest) Proxy.newProxyInstance(PortletRequest.class.getClassLoader(),
+                new Class<?>[] { PortletRequest.class }, this);
+    }
+
+    /**
+     * The copy, for use by services on other threads.
+     */
+    public PortletRequest getRequest() {
+        return proxy;
+    }
+
+    /**
+     * Signals that the caller no longer waits for services using this copy;  services that are
+     * still running fail on their next access to the request.
+     */
+    public void release() {
+        released = true;
+    }
+
+    /**
+     * Writes the preferences that services changed and stored (before {@link #release()}) to the
+     * original request.  Must be invoked on the thread processing the request.
+     */
+    public void storePreferences(PortletRequest req) throws ReadOnlyException, ValidatorException, IOException {
+        final Map<String,String[]> changes = preferences.getStoredChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        final PortletPreferences prefs = req.getPreferences();
+        for (Map.Entry<String,String[]> y : changes.entrySet()) {
+            if (y.getValue() != null) {
+                prefs.setValues(y.getKey(), y.getValue());
+            } else {
+                prefs.reset(y.getKey());
+            }
+        }
+        prefs.store();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "DetachedPortletRequest[remoteUser=" + remoteUser + ", windowId=" + windowId + "]";
+            default:
+                // Fall through
+        }
+
+        if (released) {
+            throw new IllegalStateException("The request is complete;  method '"
+                    + method.getName() + "' is not available to services that missed their deadline");
+        }
+
+        switch (method.getName()) {
+            case "getRemoteUser":
+                return remoteUser;
+            case "getWindowID":
+                return windowId;
+            case "getPreferences":
+                return preferences;
+            case "getParameter": {
+                final String[] values = parameters.get((String) args[0]);
+                return values != null && values.length != 0 ? values[0] : null;
+            }
+            case "getParameterValues": {
+                final String[] values = parameters.get((String) args[0]);
+                return values != null ? values.clone() : null;
+            }
+            case "getParameterNames":
+                return Collections.enumeration(parameters.keySet());
+            case "getParameterMap":
+                return parameters;
+            case "getAttribute":
+                return attributes.get((String) args[0]);
+            case "getAttributeNames":
+                return Collections.enumeration(attributes.keySet());
+            case "setAttribute":
+                if (args[1] != null) {
+                    attributes.put((String) args[0], args[1]);
+                } else {
+                    attributes.remove((String) args[0]);
+                }
+                return null;
+            case "removeAttribute":
+                attributes.remove((String) args[0]);
+                return null;
+            case "isUserInRole":
+                if (!definedRoles.contains((String) args[0])) {
+                    throw new UnsupportedOperationException("Role '" + args[0]
+                            + "' is not defined in portlet.xml;  membership was not captured");
+                }
+                return userRoles.contains((String) args[0]);
+            default:
+                throw new UnsupportedOperationException("Method '" + method.getName()
+                        + "' is not available to services that are invoked concurrently");
+        }
+
+    }
+
+    /*
+     * Nested Types
+     */
+
+    /**
+     * Changes are visible through this object at once, but reach the original preferences only if
+     * they are stored (and only through {@link #storePreferences(PortletRequest)}).  Reset values
+     * are absent until then.
+     */
+    private final class PreferencesSnapshot implements PortletPreferences {
+
+        private final Map<String,String[]> values;
+        private final Map<String,String[]> changes = new LinkedHashMap<>();  // null means reset
+        private final Map<String,String[]> storedChanges = new LinkedHashMap<>();
+
+        private PreferencesSnapshot(Map<String,String[]> values) {
+            this.values = new HashMap<>();
+            for (Map.Entry<String,String[]> y : values.entrySet()) {
+                this.values.put(y.getKey(), y.getValue() != null ? y.getValue().clone() : null);
+            }
+        }
+
+        @Override
+        public boolean isReadOnly(String key) {
+            return false;
+        }
+
+        @Override
+        public synchronized String getValue(String key, String def) {
+            final String[] rslt = values.get(key);
+            return rslt != null && rslt.length != 0 ? rslt[0] : def;
+        }
+
+        @Override
+        public synchronized String[] getValues(String key, String[] def) {
+            final String[] rslt = values.get(key);
+            return rslt != null ? rslt.clone() : def;
+        }
+
+        @Override
+        public void setValue(String key, String value) {
+            setValues(key, new String[] { value });
+        }
+
+        @Override
+        public synchronized void setValues(String key, String[] values) {
+            checkReleased();
+            final String[] copy = values != null ? values.clone() : new String[0];
+            this.values.put(key, copy);
+            changes.put(key, copy);
+        }
+
+        @Override
+        public synchronized Enumeration<String> getNames() {
+            return Collections.enumeration(new HashSet<>(values.keySet()));
+        }
+
+        @Override
+        public synchronized Map<String,String[]> getMap() {
+            return Collections.unmodifiableMap(new HashMap<>(values));
+        }
+
+        @Override
+        public synchronized void reset(String key) {
+            checkReleased();
+            values.remove(key);
+            changes.put(key, null);
+        }
+
+        @Override
+        public synchronized void store() {
+            checkReleased();
+            if (renderPhase) {
+                // As the original would
+                throw new IllegalStateException("Preferences may not be stored in the render phase");
+            }
+            storedChanges.putAll(changes);
+            changes.clear();
+        }
+
+        private synchronized Map<String,String[]> getStoredChanges() {
+            return new LinkedHashMap<>(storedChanges);
+        }
+
+        private void checkReleased() {
+            if (released) {
+                throw new IllegalStateException("The request is complete;  preferences may not be changed "
+                        + "by services that missed their deadline");
+            }
+        }
+
+    }
+
+}
@@ -37,7 +37,9 @@ import net.sf.ehcache.Element;
 import org.apache.commons.lang3.StringUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationResponseMerger;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
+import org.jasig.portlet.notice.util.SingleFlightLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -64,6 +66,7 @@ public class ClassLoaderResourceNotificationService extends AbstractNotification
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private Cache cache;
+    private final SingleFlightLoader<List<String>,NotificationResponse> responseLoader = new SingleFlightLoader<>();
 
     @Resource(name="ClassLoaderResourceNotificationService.responseCache")
     public void setCache(Cache cache) {
@@ -121,13 +124,16 @@ public class ClassLoaderResourceNotificationService extends AbstractNotification
             logger.debug("Locations cache HIT for collection {};  size={}", locations, rslt.size());
         } else {
             // ## CACHE MISS ##
-            rslt = new NotificationResponse();
-            for (String loc : locations) {
-                final NotificationResponse response = readFromFile(loc);
-                rslt = rslt.combine(response);
-            }
+            rslt = responseLoader.load(locations, () -> {
+                final NotificationResponseMerger merger = new NotificationResponseMerger();
+                for (String loc : locations) {
+                    merger.add(readFromFile(loc));
+                }
+                final NotificationResponse response = merger.build();
+                cache.put(new Element(locations, response));
+                return response;
+            });
             logger.debug("Locations cache MISS for collection {};  size={}", locations, rslt.size());
-            cache.put(new Element(locations, rslt));
         }
 
         return rslt;
@@ -37,6 +37,7 @@ import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.NotificationConstants;
 import org.jasig.portlet.notice.NotificationQuery;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationResponseMerger;
 import org.jasig.portlet.notice.NotificationResult;
 import org.jasig.portlet.notice.controller.NotificationLifecycleController;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
@@ -142,9 +143,7 @@ public final class PortletEventNotificationService extends AbstractNotificationS
         if (m != null) {
             @SuppressWarnings("unchecked")
             final Map<String,NotificationResponse> map = (Map<String,NotificationResponse>) m.getObjectValue();
-            for (NotificationResponse response : map.values()) {
-                rslt = rslt.combine(response);
-            }
+            rslt = NotificationResponseMerger.merge(map.values());
         }
 
         return rslt;
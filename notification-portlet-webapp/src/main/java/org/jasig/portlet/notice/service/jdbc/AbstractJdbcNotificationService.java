@@ -49,6 +49,8 @@ import org.jasig.portlet.notice.INotificationService;
 import org.jasig.portlet.notice.IRefreshable;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
+import org.jasig.portlet.notice.util.SingleFlightLoader;
+import org.jasig.portlet.notice.util.StaleWhileRevalidatePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
@@ -78,10 +80,12 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
     private DataSource dataSource;
     private String sql;
     private Cache cache;
+    private StaleWhileRevalidatePolicy cachePolicy;
 
     // These items are managed internally
     private NamedParameterJdbcTemplate jdbcTemplate;
     private Set<String> requiredParameters = Collections.emptySet();
+    private final SingleFlightLoader<CacheKey,NotificationResponse> responseLoader = new SingleFlightLoader<>();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Required
@@ -99,6 +103,14 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
         this.cache = cache;
     }
 
+    /**
+     * @since 4.9
+     */
+    @Resource(name="AbstractJdbcNotificationService.responseCachePolicy")
+    public void setCachePolicy(StaleWhileRevalidatePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
     /**
      * Implementors <em>may</em> may call this method to specify parameters that must be present in
      * the {@link SqlParameterSource}.
@@ -136,10 +148,11 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
     public NotificationResponse fetch(PortletRequest req) {
 
         final String username = usernameFinder.findUsername(req);
-        return fetchFromCacheOrSupplier(username, () -> {
+        return fetchFromCacheOrQuery(username, () -> {
+            // Resolved from the request on this thread;  the query itself may run in the background
             final SqlParameterSource sqlParameterSource = getSqlParameterSource(req);
             final ResultSetExtractor<NotificationResponse> resultSetExtractor = getResultSetExtractor(req);
-            return executeQuery(username, sqlParameterSource, resultSetExtractor);
+            return () -> executeQuery(username, sqlParameterSource, resultSetExtractor);
         });
 
     }
@@ -148,10 +161,11 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
     public NotificationResponse fetch(HttpServletRequest request) {
 
         final String username = usernameFinder.findUsername(request);
-        return fetchFromCacheOrSupplier(username, () -> {
+        return fetchFromCacheOrQuery(username, () -> {
+            // Resolved from the request on this thread;  the query itself may run in the background
             final SqlParameterSource sqlParameterSource = getSqlParameterSource(request);
             final ResultSetExtractor<NotificationResponse> resultSetExtractor = getResultSetExtractor(request);
-            return executeQuery(username, sqlParameterSource, resultSetExtractor);
+            return () -> executeQuery(username, sqlParameterSource, resultSetExtractor);
         });
 
     }
@@ -231,29 +245,33 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
      * Implementation
      */
 
+    /**
+     * Serves the cached response for this user, if any.  A stale (but not yet expired) response is
+     * served as-is while the <code>supplier</code> reloads it in the background, so the supplier
+     * must not depend on the current request.  Concurrent misses for the same user share a single
+     * invocation of the <code>supplier</code>.
+     */
     public NotificationResponse fetchFromCacheOrSupplier(String username, Supplier<NotificationResponse> supplier) {
+        return fetchFromCacheOrQuery(username, () -> supplier);
+    }
 
-        NotificationResponse rslt;
-        final CacheKey cacheKey = new CacheKey(getName(), username, sql);
-
-        logger.debug("cache ttl = {}", cache.getCacheConfiguration().getTimeToLiveSeconds());
-        final Element m = cache.get(cacheKey);
-        if (m != null) {
-            // Cache hit
-            logger.debug("cache hit for {}", cacheKey);
-            rslt = (NotificationResponse) m.getObjectValue();
-            logger.debug("Found the following response for user='{}' from cache:  {}", username, rslt);
-        } else {
-            // Cache miss
-            logger.debug("cache miss for {}", cacheKey);
-            rslt = supplier.get();
-            cache.put(new Element(cacheKey, rslt));
-            logger.debug("Notification service '{}' generated the following response" +
-                    "for user='{}':  {}", getName(), username, rslt);
-        }
-
-        return rslt;
+    /**
+     * Number of times this service actually ran its query, as opposed to waiting for a query that
+     * was already underway (see {@link #getCoalescedCount()}).
+     *
+     * @since 4.9
+     */
+    public long getLoadedCount() {
+        return responseLoader.getLoadedCount();
+    }
 
+    /**
+     * Number of cache misses satisfied by a query that was already underway for the same user.
+     *
+     * @since 4.9
+     */
+    public long getCoalescedCount() {
+        return responseLoader.getCoalescedCount();
     }
 
     public NotificationResponse executeQuery(String username, SqlParameterSource sqlParameterSource,
@@ -277,6 +295,51 @@ public abstract class AbstractJdbcNotificationService extends AbstractNotificati
 
     }
 
+    /**
+     * Like {@link #fetchFromCacheOrSupplier(String, Supplier)}, but the (request-independent)
+     * query is only prepared -- on the calling thread -- when the cached response is missing or
+     * stale;  cache hits don't pay for resolving it from the request.
+     */
+    private NotificationResponse fetchFromCacheOrQuery(String username,
+            Supplier<Supplier<NotificationResponse>> queryPreparer) {
+
+        NotificationResponse rslt;
+        final CacheKey cacheKey = new CacheKey(getName(), username, sql);
+
+        logger.debug("cache ttl = {}", cache.getCacheConfiguration().getTimeToLiveSeconds());
+        final Element m = cache.get(cacheKey);
+        if (m != null) {
+            // Cache hit
+            logger.debug("cache hit for {}", cacheKey);
+            rslt = (NotificationResponse) m.getObjectValue();
+            logger.debug("Found the following response for user='{}' from cache:  {}", username, rslt);
+            if (cachePolicy.isStale(m)) {
+                logger.debug("cached response is stale for {};  revalidating", cacheKey);
+                final Supplier<NotificationResponse> query = queryPreparer.get();
+                cachePolicy.revalidate(cacheKey,
+                        () -> responseLoader.load(cacheKey, () -> loadIntoCache(cacheKey, query)));
+            }
+        } else {
+            // Cache miss
+            logger.debug("cache miss for {}", cacheKey);
+            // Only the thread that runs the query prepares it
+            rslt = responseLoader.load(cacheKey, () -> loadIntoCache(cacheKey, queryPreparer.get()));
+            logger.debug("Notification service '{}' generated the following response" +
+                    "for user='{}':  {}", getName(), username, rslt);
+        }
+
+        return rslt;
+
+    }
+
+    private NotificationResponse loadIntoCache(CacheKey cacheKey, Supplier<NotificationResponse> supplier) {
+        final NotificationResponse rslt = supplier.get();
+        cache.put(cachePolicy.createElement(cache, cacheKey, rslt));
+        logger.debug("Loaded response for {};  loaded={}, coalesced={}", cacheKey,
+                responseLoader.getLoadedCount(), responseLoader.getCoalescedCount());
+        return rslt;
+    }
+
     /*
      * Nested Types
      */
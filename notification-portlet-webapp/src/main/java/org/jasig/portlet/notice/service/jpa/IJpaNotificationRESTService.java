@@ -20,11 +20,15 @@ package org.jasig.portlet.notice.service.jpa;
 
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkCreateResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Service for the REST-ful API for JPA Notifications.
@@ -53,6 +57,25 @@ public interface IJpaNotificationRESTService {
      */
     List<EntryDTO> getNotifications(Integer page, Integer pageSize);
 
+    /**
+     * Get a page of notifications using keyset pagination.
+     *
+     * @param afterId the id of the last entry on the previous page (0 for the first page)
+     * @param pageSize page size
+     * @return up to pageSize entries with an id greater than afterId, in order of id
+     * @since 4.9
+     */
+    List<EntryDTO> getNotificationsAfter(long afterId, int pageSize);
+
+    /**
+     * Passes every notification in the data source, in order of id, to the
+     * specified consumer without holding them all in memory.  Intended for
+     * exports.
+     *
+     * @since 4.9
+     */
+    void forEachNotification(Consumer<EntryDTO> consumer);
+
     /**
      * Supports custom integrations and decorators.  Allows another component
      * within the Notification app to find entries that match a source (a string
@@ -60,6 +83,18 @@ public interface IJpaNotificationRESTService {
      */
     List<EntryDTO> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue);
 
+    /**
+     * Set-based counterpart to
+     * {@link #getNotificationsBySourceAndCustomAttribute(String, String, String)}
+     * that provides only the ids of matching entries, indexed by the attribute
+     * value that matched.  Resolves the whole collection in one query (per
+     * chunk of values).
+     *
+     * @since 4.9
+     */
+    Map<String,List<Long>> getNotificationIdsBySourceAndCustomAttribute(String source, String attributeName,
+            Collection<String> attributeValues);
+
     /**
      * Create a notification.
      *
@@ -68,6 +103,16 @@ public interface IJpaNotificationRESTService {
      */
     EntryDTO createNotification(EntryDTO notification);
 
+    /**
+     * Create several notifications (and the ISSUED events for their individual
+     * recipients) in one transaction, using batched inserts.
+     *
+     * @param notifications the notification objects.  Should *NOT* contain populated id fields.
+     * @return the ids of the new entries and throughput figures
+     * @since 4.9
+     */
+    BulkCreateResultDTO createNotifications(List<EntryDTO> notifications);
+
     /**
      * Get the List addressees for a notification.
      *
@@ -93,7 +138,9 @@ public interface IJpaNotificationRESTService {
     AddresseeDTO createAddressee(long notificationId, AddresseeDTO addressee);
 
     /**
-     * Get the list of events by notification.
+     * Get the list of events by notification.  Only stored events are
+     * included;  events that have been compacted (see
+     * {@link JpaEventCompactionJob}) are no longer available individually.
      *
      * @param notificationId the notification id
      * @return the list of events
@@ -101,13 +148,28 @@ public interface IJpaNotificationRESTService {
     List<EventDTO> getEventsByNotification(long notificationId);
 
     /**
-     * Get the list of events by notification.
+     * Get the list of events by notification.  Compacted history is included
+     * as events with an id of zero (0) at the first and last time each state
+     * was applied.
      *
      * @param notificationId the notification id
      * @return the list of events
      */
     List<EventDTO> getEventsByNotificationAndUser(long notificationId, String username);
 
+    /**
+     * Get the events for several notifications and a single user in one query.
+     *
+     * Compacted history is included, as in
+     * {@link #getEventsByNotificationAndUser(long, String)}.
+     *
+     * @param notificationIds the notification ids
+     * @return lists of events (in chronological order) indexed by notification
+     * id;  notifications without events are absent
+     * @since 4.9
+     */
+    Map<Long,List<EventDTO>> getEventsByNotificationsAndUser(Collection<Long> notificationIds, String username);
+
     /**
      * Get a single event.
      *
@@ -18,7 +18,10 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jasig.portlet.notice.NotificationState;
@@ -54,27 +57,150 @@ import org.jasig.portlet.notice.NotificationState;
 
     List<JpaEntry> list(Integer page, Integer pageSize);
 
+    /**
+     * Keyset pagination:  provides up to <code>pageSize</code> entries with an
+     * id greater than <code>afterId</code>, in order of id.  Unlike
+     * {@link #list(Integer, Integer)}, the cost does not grow with the depth of
+     * the page.
+     *
+     * @since 4.9
+     */
+    List<JpaEntry> list(long afterId, int pageSize);
+
+    /**
+     * Detaches all entities from the current persistence context;  allows a
+     * long-running read (e.g. an export) to work through the table in pages
+     * without accumulating every entity in memory.
+     *
+     * @since 4.9
+     */
+    void clear();
+
+    /**
+     * Sends the pending changes in the current persistence context to the
+     * database (in JDBC batches);  bulk writes invoke this method before
+     * {@link #clear()}, so that nothing is lost.
+     *
+     * @since 4.9
+     */
+    void flush();
+
     List<JpaEntry> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue);
 
+    /**
+     * Set-based counterpart to {@link #getNotificationsBySourceAndCustomAttribute(String, String, String)}.
+     * Provides the ids of matching entries indexed by the attribute value that
+     * matched;  values that match nothing are absent from the map.
+     *
+     * @since 4.9
+     */
+    Map<String,List<Long>> getEntryIdsBySourceAndCustomAttribute(String source, String attributeName,
+            Collection<String> attributeValues);
+
     void removeEntry(JpaEntry entry);
 
+    /**
+     * Provides the (non-proxy) entries in the user's materialized inbox
+     * ({@link JpaInboxItem}):  those addressed to the user individually or
+     * through a group, and those on which the user has events.  The inbox is
+     * maintained by the write methods of this interface.
+     */
     Set<JpaEntry> getEntriesByRecipient(String username);
 
+    /**
+     * Provides the complete transaction log of every entry for a single
+     * recipient, indexed by entry id, in one query.  Each list is <strong>in
+     * chronological order</strong>.  Covers the same entries as
+     * {@link #getEntriesByRecipient(String)}, except those on which the user
+     * has no events (e.g. entries addressed to a group).
+     *
+     * @since 4.9
+     */
+    Map<Long,List<JpaEvent>> getEventsByRecipient(String username);
+
     Set<JpaEntry> getEntriesByRecipientByStatus(String username, 
             Set<NotificationState> include, Set<NotificationState> exclude);
 
     JpaAddressee createOrUpdateAddressee(JpaAddressee addressee);
     JpaAddressee getAddressee(long addresseeId);
 
+    /**
+     * Provides the stored events of a notification, for auditing.  Unlike the
+     * other methods that read events, this one does not include compacted
+     * history (see {@link #compactEvents(Timestamp, int)}):  events are
+     * absent once they have been compacted.
+     */
     List<JpaEvent> getEvents(long entryId);
 
     /**
      * Provides a complete transaction log for a notification and single
-     * recipient <strong>in chronological order</strong>.
+     * recipient <strong>in chronological order</strong>, including compacted
+     * history.
      */
     List<JpaEvent> getEvents(long entryId, String username);
 
+    /**
+     * Provides the transaction logs for several notifications and a single
+     * recipient, indexed by entry id.  Each list is <strong>in chronological
+     * order</strong>;  entries without events are absent from the map.
+     *
+     * @since 4.9
+     */
+    Map<Long,List<JpaEvent>> getEvents(Collection<Long> entryIds, String username);
+
     JpaEvent createOrUpdateEvent(JpaEvent event);
 
+    /**
+     * Inserts new events in JDBC batches, flushing and clearing the
+     * persistence context periodically.  Unlike
+     * {@link #createOrUpdateEvent(JpaEvent)}, it does not flush after each
+     * event.  NB:  entities that were loaded earlier in the same transaction
+     * are detached afterwards.
+     *
+     * @return the number of events inserted
+     * @since 4.9
+     */
+    int createEvents(Iterable<JpaEvent> events);
+
     JpaEvent getEvent(long eventId);
+
+    /**
+     * Folds up to <code>maxEvents</code> events that occurred before the
+     * specified moment into {@link JpaStateSnapshot} rows and deletes them, in
+     * one transaction.  The methods that read events for a recipient continue
+     * to provide an equivalent history:  compacted states appear as unsaved
+     * events (with an id of zero) at their first and last timestamps.
+     * {@link #getEvents(long)} provides stored events only.
+     *
+     * @return the number of events compacted
+     * @since 4.9
+     */
+    int compactEvents(Timestamp before, int maxEvents);
+
+    /**
+     * Reconciles the materialized inbox of up to <code>pageSize</code> entries
+     * with an id greater than <code>afterId</code> (in order of id) against
+     * their recipients and events, in one transaction.
+     *
+     * @return the id of the last entry examined, or -1 if there were none
+     * @since 4.9
+     */
+    long rebuildInbox(long afterId, int pageSize);
+
+    /**
+     * Provides the members of the user's named set of notification ids.
+     *
+     * @since 4.9
+     */
+    Set<String> getIdSet(String username, String setName);
+
+    /**
+     * Applies changes to sets of notification ids in one transaction:  each
+     * member is added (<code>true</code>) or removed (<code>false</code>).
+     * Adding a member that exists, or removing one that doesn't, has no
+     * effect.
+     *
+     * @since 4.9
+     */
+    void updateIdSets(Map<JpaIdSetMember.Key,Boolean> changes);
 }
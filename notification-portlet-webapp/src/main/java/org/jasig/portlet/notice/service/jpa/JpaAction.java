@@ -18,15 +18,21 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Represents a behavior invocable on a notification.
  *
@@ -34,11 +40,17 @@ import javax.persistence.Table;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ACTION")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ACTION", indexes={
+        @Index(name="IDX_NOTICE_ACTION_ENTRY", columnList="ENTRY_ID")
+})
 /* package-private */ class JpaAction {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaAction.id")
+    @SequenceGenerator(name="JpaAction.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
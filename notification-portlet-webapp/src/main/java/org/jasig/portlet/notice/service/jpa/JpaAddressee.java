@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -29,11 +30,16 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.jasig.portlet.notice.rest.RecipientType;
 
 /**
@@ -50,11 +56,17 @@ import org.jasig.portlet.notice.rest.RecipientType;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ADDRESSEE")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ADDRESSEE", indexes={
+        @Index(name="IDX_NOTICE_ADDRESSEE_ENTRY", columnList="ENTRY_ID")
+})
 /* package-private */ class JpaAddressee {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaAddressee.id")
+    @SequenceGenerator(name="JpaAddressee.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
@@ -69,7 +81,9 @@ import org.jasig.portlet.notice.rest.RecipientType;
     private RecipientType type;
 
     @OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+    @Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
     @JoinColumn(name="ADDRESSEE_ID")
+    @BatchSize(size=JpaEntry.BATCH_SIZE)
     private Set<JpaRecipient> recipients = new HashSet<JpaRecipient>();
 
     public long getId() {
@@ -128,7 +142,7 @@ import org.jasig.portlet.notice.rest.RecipientType;
 
     @Override
     public String toString() {
-        return "JpaAddressee [id=" + id + ", name=" + name + ", type=" + type + ", recipients=" + recipients + "]";
+        return "JpaAddressee [id=" + id + ", name=" + name + ", type=" + type + ", recipients=" + JpaEntry.describe(recipients) + "]";
     }
 
 }
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CollectionTable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
@@ -30,10 +31,16 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Supports open-ended metadata for notifications.  The attributes collection is
  * an associative array: String (key) to String[] (values).
@@ -41,11 +48,18 @@ import javax.persistence.Table;
  * @since 3.0
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE", indexes={
+        @Index(name="IDX_NOTICE_ATTRIBUTE_NAME", columnList="NAME,ENTRY_ID"),
+        @Index(name="IDX_NOTICE_ATTRIBUTE_ENTRY", columnList="ENTRY_ID")
+})
 /* package-private */ class JpaAttribute {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaAttribute.id")
+    @SequenceGenerator(name="JpaAttribute.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
@@ -56,8 +70,13 @@ import javax.persistence.Table;
     @Column(name="NAME", nullable=false)
     private String name;
 
-    @ElementCollection(fetch=FetchType.EAGER)
-    @CollectionTable(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE_VALUES")
+    @ElementCollection(fetch=FetchType.LAZY)
+    @Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size=JpaEntry.BATCH_SIZE)
+    @CollectionTable(name=JpaNotificationService.TABLENAME_PREFIX + "ATTRIBUTE_VALUES", indexes={
+            @Index(name="IDX_NOTICE_ATTR_VALUES_VAL", columnList="VAL,JpaAttribute_ID"),
+            @Index(name="IDX_NOTICE_ATTR_VALUES_ATTR", columnList="JpaAttribute_ID")
+    })
     @Column(name="VAL")
     private List<String> values = new ArrayList<String>();
 
@@ -119,7 +138,7 @@ import javax.persistence.Table;
 
     @Override
     public String toString() {
-        return "JpaAttribute [id=" + id + ", name=" + name + ", values=" + values + "]";
+        return "JpaAttribute [id=" + id + ", name=" + name + ", values=" + JpaEntry.describe(values) + "]";
     }
 
 }
@@ -19,10 +19,12 @@
 package org.jasig.portlet.notice.service.jpa;
 
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -30,23 +32,55 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Corresponds to a {@code NotificationEntry} in the JPA flavor of notifications.
+ * All collections are lazy;  each query chooses what it needs by way of an
+ * entity graph or a fetch join, and anything else is loaded in batches.
  * 
  * @since 3.0
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ENTRY")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name=JpaEntry.INBOX_GRAPH,
+        attributeNodes={
+                @NamedAttributeNode(value="attributes", subgraph="attributeValues"),
+                @NamedAttributeNode("actions")
+        },
+        subgraphs=@NamedSubgraph(name="attributeValues", attributeNodes=@NamedAttributeNode("values")))
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ENTRY", indexes={
+        @Index(name="IDX_NOTICE_ENTRY_SOURCE", columnList="SOURCE")
+})
 /* package-private */ public class JpaEntry {
 
+    /**
+     * What a user's list of notifications renders:  attributes (with their
+     * values) and actions, but not addressees or recipients.
+     */
+    /* package-private */ static final String INBOX_GRAPH = "JpaEntry.inbox";
+
+    /* package-private */ static final int BATCH_SIZE = 32;
+
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaEntry.id")
+    @SequenceGenerator(name="JpaEntry.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
@@ -78,16 +112,22 @@ import javax.persistence.Table;
     @Column(name="BODY")
     private String body;
 
-    @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
+    @OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+    @Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
     @JoinColumn(name = "ENTRY_ID")
+    @BatchSize(size=BATCH_SIZE)
     private Set<JpaAttribute> attributes = new HashSet<>();
 
-    @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
+    @OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+    @Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
     @JoinColumn(name = "ENTRY_ID")
+    @BatchSize(size=BATCH_SIZE)
     private Set<JpaAction> actions = new HashSet<>();
 
-    @OneToMany(fetch=FetchType.EAGER, cascade=CascadeType.ALL)
+    @OneToMany(fetch=FetchType.LAZY, cascade=CascadeType.ALL)
+    @Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
     @JoinColumn(name = "ENTRY_ID")
+    @BatchSize(size=BATCH_SIZE)
     private Set<JpaAddressee> addressees = new HashSet<>();
 
     public long getId() {
@@ -240,8 +280,15 @@ import javax.persistence.Table;
     public String toString() {
         return "JpaEntry [id=" + id + ", title=" + title + ", source=" + source + ", category=" + category + ", url="
                 + url + ", linkText=" + linkText + ", priority=" + priority + ", dueDate=" + dueDate + ", image="
-                + image + ", body=" + body + ", attributes=" + attributes + ", actions=" + actions + ", addressees="
-                + addressees + "]";
+                + image + ", body=" + body + ", attributes=" + describe(attributes) + ", actions=" + describe(actions)
+                + ", addressees=" + describe(addressees) + "]";
+    }
+
+    /**
+     * Avoids loading (or failing to load) a lazy collection just to log it.
+     */
+    /* package-private */ static String describe(Collection<?> collection) {
+        return Hibernate.isInitialized(collection) ? String.valueOf(collection) : "(not loaded)";
     }
 
 }
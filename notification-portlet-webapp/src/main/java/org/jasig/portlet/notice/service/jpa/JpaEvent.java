@@ -26,8 +26,10 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
 import org.jasig.portlet.notice.NotificationState;
@@ -40,11 +42,17 @@ import org.jasig.portlet.notice.NotificationState;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT")
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "EVENT", indexes={
+        @Index(name="IDX_NOTICE_EVENT_USER_ENTRY", columnList="USERNAME,ENTRY_ID,TIMESTAMP"),
+        @Index(name="IDX_NOTICE_EVENT_ENTRY", columnList="ENTRY_ID"),
+        @Index(name="IDX_NOTICE_EVENT_TIMESTAMP", columnList="TIMESTAMP")
+})
 /* package-private */ class JpaEvent {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaEvent.id")
+    @SequenceGenerator(name="JpaEvent.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
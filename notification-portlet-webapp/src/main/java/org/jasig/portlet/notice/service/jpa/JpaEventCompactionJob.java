@@ -0,0 +1,94 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically folds events older than <code>retainHours</code> into
+ * {@link JpaStateSnapshot} rows, so that the transaction log replayed on each
+ * request stays short no matter how long a notification has been around.
+ * Each batch is a separate transaction;  compacting the same events twice
+ * (e.g. from two nodes) is harmless.  Set
+ * <code>JpaEventCompactionJob.intervalMinutes</code> to 0 to disable it.
+ *
+ * @since 4.9
+ */
+@Component
+/* package-private */ class JpaEventCompactionJob {
+
+    private static final long MILLIS_IN_ONE_HOUR = 60L * 60L * 1000L;
+
+    @Value("${JpaEventCompactionJob.intervalMinutes:60}")
+    private long intervalMinutes;
+
+    @Value("${JpaEventCompactionJob.retainHours:168}")
+    private long retainHours;
+
+    @Value("${JpaEventCompactionJob.batchSize:1000}")
+    private int batchSize;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    @Qualifier("notificationMaintenanceScheduler")
+    private ScheduledExecutorService scheduler;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (intervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::compact, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        } else {
+            logger.info("The event compaction job is disabled");
+        }
+    }
+
+    /* package-private */ void compact() {
+        final long start = System.currentTimeMillis();
+        final Timestamp before = new Timestamp(start - retainHours * MILLIS_IN_ONE_HOUR);
+        long total = 0L;
+        try {
+            int compacted;
+            do {
+                compacted = notificationDao.compactEvents(before, batchSize);
+                total += compacted;
+            } while (compacted == batchSize);
+            logger.info("Compacted {} events older than {} in {}ms",
+                    total, before, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // An exception would suppress subsequent executions
+            logger.error("Failed to compact events after {} were compacted", total, e);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+/**
+ * Membership of one notification id in a named set of ids (e.g. read or
+ * favorite) for one user;  see {@link JpaNotificationIdSetStore}.  There is
+ * one row per id, so adding or removing an id writes one row.
+ *
+ * @since 4.9
+ */
+@Entity
+@IdClass(JpaIdSetMember.Key.class)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "ID_SET")
+/* package-private */ class JpaIdSetMember {
+
+    @Id
+    @Column(name="USERNAME", nullable=false)
+    private String username;
+
+    @Id
+    @Column(name="SET_NAME", nullable=false, length=128)
+    private String setName;
+
+    @Id
+    @Column(name="NOTICE_ID", nullable=false)
+    private String noticeId;
+
+    public JpaIdSetMember() {}
+
+    public JpaIdSetMember(Key key) {
+        this.username = key.username;
+        this.setName = key.setName;
+        this.noticeId = key.noticeId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getSetName() {
+        return setName;
+    }
+
+    public String getNoticeId() {
+        return noticeId;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaIdSetMember [username=" + username + ", setName=" + setName + ", noticeId=" + noticeId + "]";
+    }
+
+    /**
+     * Composite primary key.
+     */
+    public static final class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String username;
+        private String setName;
+        private String noticeId;
+
+        public Key() {}
+
+        public Key(String username, String setName, String noticeId) {
+            this.username = username;
+            this.setName = setName;
+            this.noticeId = noticeId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getSetName() {
+            return setName;
+        }
+
+        public String getNoticeId() {
+            return noticeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(username, key.username) && Objects.equals(setName, key.setName)
+                    && Objects.equals(noticeId, key.noticeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, setName, noticeId);
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * One row of the materialized inbox:  the fact that a user should see a
+ * notification.  The inbox is derived from the recipients of every addressee
+ * (individual or group) and from the users who have events on the entry;  it
+ * is maintained on write by {@link INotificationDao} and reconciled
+ * periodically by {@link JpaInboxRebuildJob}.  The primary key leads with the
+ * username, so a user's entry ids are a single index range scan.
+ *
+ * @since 4.9
+ */
+@Entity
+@IdClass(JpaInboxItem.Key.class)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "INBOX", indexes={
+        @Index(name="IDX_NOTICE_INBOX_ENTRY", columnList="ENTRY_ID")
+})
+/* package-private */ class JpaInboxItem {
+
+    @Id
+    @Column(name="USERNAME", nullable=false)
+    private String username;
+
+    @Id
+    @Column(name="ENTRY_ID", nullable=false)
+    private long entryId;
+
+    public JpaInboxItem() {}
+
+    public JpaInboxItem(String username, long entryId) {
+        this.username = username;
+        this.entryId = entryId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    @Override
+    public String toString() {
+        return "JpaInboxItem [username=" + username + ", entryId=" + entryId + "]";
+    }
+
+    /**
+     * Composite primary key.
+     */
+    public static final class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String username;
+        private long entryId;
+
+        public Key() {}
+
+        public Key(String username, long entryId) {
+            this.username = username;
+            this.entryId = entryId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public long getEntryId() {
+            return entryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return entryId == key.entryId && Objects.equals(username, key.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, entryId);
+        }
+
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically walks NOTICE_ENTRY in pages and reconciles the materialized
+ * inbox ({@link JpaInboxItem}) with the recipients and events of each entry.
+ * The DAO keeps the inbox current on write;  this job repairs anything that
+ * went around it (e.g. rows changed directly in the database).  Each page is
+ * a separate transaction.  Set <code>JpaInboxRebuildJob.intervalMinutes</code>
+ * to 0 to disable it.
+ *
+ * @since 4.9
+ */
+@Component
+/* package-private */ class JpaInboxRebuildJob {
+
+    @Value("${JpaInboxRebuildJob.intervalMinutes:1440}")
+    private long intervalMinutes;
+
+    @Value("${JpaInboxRebuildJob.pageSize:100}")
+    private int pageSize;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    @Qualifier("notificationMaintenanceScheduler")
+    private ScheduledExecutorService scheduler;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @PostConstruct
+    public void init() {
+        if (intervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        } else {
+            logger.info("The inbox rebuild job is disabled");
+        }
+    }
+
+    /* package-private */ void rebuild() {
+        final long start = System.currentTimeMillis();
+        int pages = 0;
+        try {
+            for (long afterId = notificationDao.rebuildInbox(0L, pageSize); afterId != -1L;
+                    afterId = notificationDao.rebuildInbox(afterId, pageSize)) {
+                ++pages;
+            }
+            logger.info("Rebuilt the inbox of {} page(s) of entries in {}ms",
+                    pages, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // An exception would suppress subsequent executions
+            logger.error("Failed to rebuild the inbox after {} page(s) of entries", pages, e);
+        }
+    }
+
+}
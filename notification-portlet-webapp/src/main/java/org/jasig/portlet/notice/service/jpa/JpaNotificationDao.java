@@ -18,8 +18,16 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.EntityManager;
@@ -27,11 +35,14 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 
 import org.apache.commons.lang.Validate;
+import org.hibernate.jpa.QueryHints;
 import org.jasig.portlet.notice.NotificationState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * This DAO class handles raw CRUD operations for the JPA-flavor notifications.
@@ -42,6 +53,37 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 /* package-private */ class JpaNotificationDao implements INotificationDao {
 
+    /**
+     * Upper bound on the number of parameters bound to a single IN clause.  Some
+     * platforms (e.g. Oracle) reject lists longer than 1000;  larger collections
+     * are processed in chunks of this size.
+     */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
+    /**
+     * Number of pending inserts after which bulk operations flush and clear the persistence
+     * context;  a multiple of hibernate.jdbc.batch_size (see persistence.xml).
+     */
+    private static final int FLUSH_INTERVAL = 1000;
+
+    /**
+     * Query cache region for {@link #getEntriesByRecipient(String)};  see ehcache.xml.
+     */
+    /**
+     * Binds (to the current transaction) the inbox rows this DAO has inserted in that
+     * transaction;  see {@link #insertedInboxItems()}.
+     */
+    private final Object insertedInboxItemsKey = new Object();
+
+    private static final String INBOX_QUERY_CACHE_REGION = "JpaNotificationDao.entriesByRecipient";
+
+    /**
+     * Order of a transaction log;  the same as ORDER BY v.timestamp on platforms that sort nulls
+     * first.
+     */
+    private static final Comparator<JpaEvent> CHRONOLOGICAL_ORDER =
+            Comparator.comparing(JpaEvent::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -84,6 +126,28 @@ import org.springframework.transaction.annotation.Transactional;
         return query.getResultList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<JpaEntry> list(long afterId, int pageSize) {
+        Validate.isTrue(pageSize > 0, "Argument 'pageSize' must be greater than zero (0)");
+
+        TypedQuery<JpaEntry> query = entityManager.createNamedQuery("JpaEntry.getAfterId", JpaEntry.class);
+        query.setParameter("afterId", afterId);
+        query.setMaxResults(pageSize);
+
+        return query.getResultList();
+    }
+
+    @Override
+    public void clear() {
+        entityManager.clear();
+    }
+
+    @Override
+    public void flush() {
+        entityManager.flush();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<JpaEntry> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue) {
@@ -101,20 +165,52 @@ import org.springframework.transaction.annotation.Transactional;
         return query.getResultList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String,List<Long>> getEntryIdsBySourceAndCustomAttribute(String source, String attributeName,
+            Collection<String> attributeValues) {
+        Validate.notNull(attributeValues, "Argument 'attributeValues' cannot be null");
+
+        final String jpql = "SELECT v, e.id FROM JpaEntry e "
+                + "JOIN e.attributes a "
+                + "JOIN a.values v "
+                + "WHERE e.source = :source "
+                + "AND a.name = :name "
+                + "AND v IN (:values)";
+
+        final Map<String,List<Long>> rslt = new HashMap<>();
+        for (List<String> chunk : chunk(attributeValues)) {
+            final TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+            query.setParameter("source", source);
+            query.setParameter("name", attributeName);
+            query.setParameter("values", chunk);
+            for (Object[] row : query.getResultList()) {
+                rslt.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add((Long) row[1]);
+            }
+        }
+        return rslt;
+    }
+
     @Override
     @Transactional
     public JpaEntry createOrUpdateEntry(JpaEntry entry) {
         Validate.notNull(entry, "Argument 'entry' cannot be null");
 
         if (entry.getId() == 0) {
-            // need to save and then flush to ensure the auto-generated
-            // key value is populated in the entity.
+            // The (pooled) sequence assigns the id on persist;  the insert
+            // itself waits for the next flush, so it may be batched
             entityManager.persist(entry);
-            entityManager.flush();
+            // A new entry has nothing in the inbox yet
+            final Set<JpaInboxItem.Key> inserted = insertedInboxItems();
+            for (String username : recipientsOf(entry)) {
+                entityManager.persist(new JpaInboxItem(username, entry.getId()));
+                inserted.add(new JpaInboxItem.Key(username, entry.getId()));
+            }
         } else {
             // should always work with the object returned from merge
             // rather than the original.
             entry = entityManager.merge(entry);
+            reconcileInbox(Collections.singleton(entry.getId()));
         }
 
         return entry;
@@ -125,6 +221,14 @@ import org.springframework.transaction.annotation.Transactional;
     public void removeEntry(JpaEntry entry) {
         Validate.notNull(entry, "Argument 'entry' cannot be null");
 
+        entityManager.createQuery("DELETE FROM JpaInboxItem i WHERE i.entryId = :entryId")
+                .setParameter("entryId", entry.getId())
+                .executeUpdate();
+        insertedInboxItems().removeIf(key -> key.getEntryId() == entry.getId());
+        entityManager.createQuery("DELETE FROM JpaStateSnapshot s WHERE s.entryId = :entryId")
+                .setParameter("entryId", entry.getId())
+                .executeUpdate();
+
         JpaEntry y = entityManager.merge(entry);  // Insures that cascades will be handled properly
         entityManager.remove(y);
     }
@@ -134,9 +238,11 @@ import org.springframework.transaction.annotation.Transactional;
     public Set<JpaEntry> getEntriesByRecipient(String username) {
         Validate.notEmpty(username, "Argument 'username' cannot be empty");
 
-        final String jpql = "SELECT v.entry FROM JpaEvent v "
-                                    + "WHERE v.username = :username "
-                                    + "AND v.entry.priority != 0"; // See below...
+        final String jpql = "SELECT DISTINCT e FROM JpaEntry e "
+                                    + "WHERE e.priority != 0 " // See below...
+                                    + "AND e.id IN ("
+                                        + "SELECT i.entryId FROM JpaInboxItem i "
+                                        + "WHERE i.username = :username)";
 
         /*
          * Note on Priority 0 entries: the Notification project sometimes uses 'proxy' entries
@@ -149,10 +255,63 @@ import org.springframework.transaction.annotation.Transactional;
         log.debug("Query getEntriesByRecipient={}", query.toString());
 
         query.setParameter("username", username);
+        /*
+         * Fetch what the list renders in the same round-trip (and nothing else);  DISTINCT
+         * de-duplicates the root entities in memory only, since BODY is a LOB.
+         */
+        query.setHint(QueryHints.HINT_LOADGRAPH, entityManager.getEntityGraph(JpaEntry.INBOX_GRAPH));
+        query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+        query.setHint(QueryHints.HINT_CACHEABLE, true);
+        query.setHint(QueryHints.HINT_CACHE_REGION, INBOX_QUERY_CACHE_REGION);
         List<JpaEntry> rslt = query.getResultList();
+
+        /*
+         * When the ids come from the query cache, the entity graph is not applied;  the
+         * collections the list renders are initialized here (from the second-level cache, or in
+         * batches) since the caller works outside of this transaction.
+         */
+        for (JpaEntry entry : rslt) {
+            // NB:  The getters return read-only views;  size() initializes the underlying collection
+            entry.getActions().size();
+            for (JpaAttribute attribute : entry.getAttributes()) {
+                attribute.getValues().size();
+            }
+        }
+
         return new HashSet<>(rslt);
     }
 
+    @Override
+    @Transactional(readOnly=true)
+    public Map<Long,List<JpaEvent>> getEventsByRecipient(String username) {
+        Validate.notEmpty(username, "Argument 'username' cannot be empty");
+
+        // Same priority criterion as getEntriesByRecipient() (above)
+        final String jpql = "SELECT v.entry.id, v FROM JpaEvent v "
+                                    + "WHERE v.username = :username "
+                                    + "AND v.entry.priority != 0 "
+                                    + "ORDER BY v.timestamp";
+
+        final TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+        query.setParameter("username", username);
+
+        final Map<Long,List<JpaEvent>> rslt = new HashMap<>();
+        for (Object[] row : query.getResultList()) {
+            rslt.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((JpaEvent) row[1]);
+        }
+
+        final String snapshotJpql = "SELECT s FROM JpaStateSnapshot s, JpaEntry e "
+                                    + "WHERE e.id = s.entryId "
+                                    + "AND s.username = :username "
+                                    + "AND e.priority != 0";
+        final TypedQuery<JpaStateSnapshot> snapshotQuery =
+                entityManager.createQuery(snapshotJpql, JpaStateSnapshot.class);
+        snapshotQuery.setParameter("username", username);
+        addSnapshots(rslt, snapshotQuery.getResultList());
+
+        return rslt;
+    }
+
     @Override
     @Transactional(readOnly=true)
     public Set<JpaEntry> getEntriesByRecipientByStatus(String username,
@@ -166,11 +325,11 @@ import org.springframework.transaction.annotation.Transactional;
     public List<JpaEvent> getEvents(long entryId) {
         Validate.isTrue(entryId > 0, "Argument 'entryId' must be greater than zero (0)");
 
+        // Stored events only;  see INotificationDao
         TypedQuery<JpaEvent> query = entityManager.createNamedQuery("JpaEvent.getAllByEntryId", JpaEvent.class);
         query.setParameter("entryId", entryId);
 
-        List<JpaEvent> events = query.getResultList();
-        return events;
+        return query.getResultList();
     }
 
 
@@ -186,7 +345,52 @@ import org.springframework.transaction.annotation.Transactional;
         TypedQuery<JpaEvent> query = entityManager.createQuery(jpql, JpaEvent.class);
         query.setParameter("username", username);
         query.setParameter("entryId", entryId);
-        List<JpaEvent> rslt = query.getResultList();
+
+        final TypedQuery<JpaStateSnapshot> snapshotQuery = entityManager.createQuery(
+                "SELECT s FROM JpaStateSnapshot s WHERE s.username = :username AND s.entryId = :entryId",
+                JpaStateSnapshot.class);
+        snapshotQuery.setParameter("username", username);
+        snapshotQuery.setParameter("entryId", entryId);
+
+        final Map<Long,List<JpaEvent>> events = new HashMap<>();
+        events.put(entryId, new ArrayList<>(query.getResultList()));
+        addSnapshots(events, snapshotQuery.getResultList());
+        List<JpaEvent> rslt = events.get(entryId);
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional(readOnly=true)
+    public Map<Long,List<JpaEvent>> getEvents(Collection<Long> entryIds, String username) {
+        Validate.notNull(entryIds, "Argument 'entryIds' cannot be null");
+        Validate.notEmpty(username, "Argument 'username' cannot be empty");
+
+        final String jpql = "SELECT v.entry.id, v FROM JpaEvent v WHERE v.username = :username "
+                + "AND v.entry.id IN (:entryIds) "
+                + "ORDER BY v.timestamp";
+
+        /*
+         * Each entry falls in exactly one chunk, so the per-entry lists remain
+         * in chronological order.
+         */
+        final String snapshotJpql = "SELECT s FROM JpaStateSnapshot s WHERE s.username = :username "
+                + "AND s.entryId IN (:entryIds)";
+
+        final Map<Long,List<JpaEvent>> rslt = new HashMap<>();
+        for (List<Long> chunk : chunk(entryIds)) {
+            final TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+            query.setParameter("username", username);
+            query.setParameter("entryIds", chunk);
+            for (Object[] row : query.getResultList()) {
+                rslt.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((JpaEvent) row[1]);
+            }
+            final TypedQuery<JpaStateSnapshot> snapshotQuery =
+                    entityManager.createQuery(snapshotJpql, JpaStateSnapshot.class);
+            snapshotQuery.setParameter("username", username);
+            snapshotQuery.setParameter("entryIds", chunk);
+            addSnapshots(rslt, snapshotQuery.getResultList());
+        }
         return rslt;
     }
 
@@ -203,6 +407,12 @@ import org.springframework.transaction.annotation.Transactional;
             addressee = entityManager.merge(addressee);
         }
 
+        if (addressee.getEntry() != null) {
+            final Set<String> usernames = new HashSet<>();
+            addressee.getRecipients().forEach(recipient -> usernames.add(recipient.getUsername()));
+            addToInbox(Collections.singletonMap(addressee.getEntry().getId(), usernames));
+        }
+
         return addressee;
     }
 
@@ -225,6 +435,9 @@ import org.springframework.transaction.annotation.Transactional;
         if (event.getId() == 0) {
             entityManager.persist(event);
             entityManager.flush();
+            // Events have always made a notification visible to the user (e.g. ISSUED)
+            addToInbox(Collections.singletonMap(event.getEntry().getId(),
+                    Collections.singleton(event.getUsername())));
         } else {
             event = entityManager.merge(event);
         }
@@ -232,10 +445,290 @@ import org.springframework.transaction.annotation.Transactional;
     }
 
 
+    @Override
+    @Transactional
+    public int createEvents(Iterable<JpaEvent> events) {
+        Validate.notNull(events, "Argument 'events' cannot be null");
+
+        int rslt = 0;
+        final Map<Long,Set<String>> recipients = new HashMap<>();
+        for (JpaEvent event : events) {
+            Validate.isTrue(event.getId() == 0, "Events must be new");
+            entityManager.persist(event);
+            recipients.computeIfAbsent(event.getEntry().getId(), k -> new HashSet<>()).add(event.getUsername());
+            if (++rslt % FLUSH_INTERVAL == 0) {
+                // Sends the pending inserts (in JDBC batches) and frees the memory they used
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        addToInbox(recipients);
+        entityManager.flush();
+        entityManager.clear();
+        return rslt;
+    }
+
+
+    @Override
+    @Transactional
+    public int compactEvents(Timestamp before, int maxEvents) {
+        Validate.notNull(before, "Argument 'before' cannot be null");
+        Validate.isTrue(maxEvents > 0, "Argument 'maxEvents' must be greater than zero (0)");
+
+        // Scalars:  there is no need to load the events (or their entries)
+        final TypedQuery<Object[]> query = entityManager.createQuery(
+                "SELECT v.id, v.entry.id, v.username, v.state, v.timestamp FROM JpaEvent v "
+                        + "WHERE v.timestamp < :before", Object[].class);
+        query.setParameter("before", before);
+        query.setMaxResults(maxEvents);
+        final List<Object[]> rows = query.getResultList();
+
+        final Map<JpaStateSnapshot.Key,JpaStateSnapshot> snapshots = new HashMap<>();
+        final List<Long> eventIds = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            final long entryId = (Long) row[1];
+            final String username = (String) row[2];
+            final NotificationState state = (NotificationState) row[3];
+            final Timestamp timestamp = (Timestamp) row[4];
+
+            final JpaStateSnapshot.Key key = new JpaStateSnapshot.Key(username, entryId, state);
+            JpaStateSnapshot snapshot = snapshots.get(key);
+            if (snapshot == null) {
+                snapshot = entityManager.find(JpaStateSnapshot.class, key);
+                if (snapshot == null) {
+                    snapshot = new JpaStateSnapshot(username, entryId, state, timestamp);
+                    entityManager.persist(snapshot);
+                }
+                snapshots.put(key, snapshot);
+            }
+            snapshot.fold(timestamp);
+            eventIds.add((Long) row[0]);
+        }
+
+        for (List<Long> chunk : chunk(eventIds)) {
+            entityManager.createQuery("DELETE FROM JpaEvent v WHERE v.id IN (:eventIds)")
+                    .setParameter("eventIds", chunk)
+                    .executeUpdate();
+        }
+
+        log.debug("Compacted {} events into {} snapshots", eventIds.size(), snapshots.size());
+        return eventIds.size();
+    }
+
+    @Override
+    @Transactional
+    public long rebuildInbox(long afterId, int pageSize) {
+        Validate.isTrue(pageSize > 0, "Argument 'pageSize' must be greater than zero (0)");
+
+        final TypedQuery<Long> query = entityManager.createQuery(
+                "SELECT e.id FROM JpaEntry e WHERE e.id > :afterId ORDER BY e.id", Long.class);
+        query.setParameter("afterId", afterId);
+        query.setMaxResults(pageSize);
+        final List<Long> entryIds = query.getResultList();
+        if (entryIds.isEmpty()) {
+            return -1L;
+        }
+
+        final int corrections = reconcileInbox(entryIds);
+        if (corrections != 0) {
+            log.info("Corrected {} inbox rows for entries {} through {}",
+                    corrections, entryIds.get(0), entryIds.get(entryIds.size() - 1));
+        }
+
+        return entryIds.get(entryIds.size() - 1);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public JpaEvent getEvent(long eventId) {
         JpaEvent event = entityManager.find(JpaEvent.class, eventId);
         return event;
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<String> getIdSet(String username, String setName) {
+        Validate.notEmpty(username, "Argument 'username' cannot be empty");
+        Validate.notEmpty(setName, "Argument 'setName' cannot be empty");
+
+        final TypedQuery<String> query = entityManager.createQuery(
+                "SELECT m.noticeId FROM JpaIdSetMember m WHERE m.username = :username AND m.setName = :setName",
+                String.class);
+        query.setParameter("username", username);
+        query.setParameter("setName", setName);
+        return new HashSet<>(query.getResultList());
+    }
+
+    @Override
+    @Transactional
+    public void updateIdSets(Map<JpaIdSetMember.Key,Boolean> changes) {
+        Validate.notNull(changes, "Argument 'changes' cannot be null");
+
+        changes.forEach((key, member) -> {
+            final JpaIdSetMember existing = entityManager.find(JpaIdSetMember.class, key);
+            if (member && existing == null) {
+                entityManager.persist(new JpaIdSetMember(key));
+            } else if (!member && existing != null) {
+                entityManager.remove(existing);
+            }
+        });
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * The users an entry is addressed to:  the recipients of all its
+     * addressees, individual and group alike.
+     */
+    private Set<String> recipientsOf(JpaEntry entry) {
+        final Set<String> rslt = new HashSet<>();
+        for (JpaAddressee addressee : entry.getAddressees()) {
+            for (JpaRecipient recipient : addressee.getRecipients()) {
+                rslt.add(recipient.getUsername());
+            }
+        }
+        return rslt;
+    }
+
+    /**
+     * Inserts the inbox rows (usernames by entry id) that do not exist yet.
+     * Rows inserted earlier in the same transaction (e.g. for the recipients
+     * of a new entry) are known to exist without querying for them.
+     */
+    private void addToInbox(Map<Long,Set<String>> usernamesByEntryId) {
+        final String jpql = "SELECT i.username FROM JpaInboxItem i "
+                + "WHERE i.entryId = :entryId "
+                + "AND i.username IN (:usernames)";
+        final Set<JpaInboxItem.Key> inserted = insertedInboxItems();
+        usernamesByEntryId.forEach((entryId, usernames) -> {
+            final Set<String> missing = new HashSet<>(usernames);
+            missing.removeIf(username -> inserted.contains(new JpaInboxItem.Key(username, entryId)));
+            if (missing.isEmpty()) {
+                return;
+            }
+            for (List<String> chunk : chunk(missing)) {
+                final TypedQuery<String> query = entityManager.createQuery(jpql, String.class);
+                query.setParameter("entryId", entryId);
+                query.setParameter("usernames", chunk);
+                missing.removeAll(query.getResultList());
+            }
+            for (String username : missing) {
+                entityManager.persist(new JpaInboxItem(username, entryId));
+                inserted.add(new JpaInboxItem.Key(username, entryId));
+            }
+        });
+    }
+
+    /**
+     * The inbox rows this DAO has inserted in the current transaction (and not
+     * deleted since);  these need not be looked for again before the
+     * transaction completes.
+     */
+    private Set<JpaInboxItem.Key> insertedInboxItems() {
+        @SuppressWarnings("unchecked")
+        Set<JpaInboxItem.Key> rslt =
+                (Set<JpaInboxItem.Key>) TransactionSynchronizationManager.getResource(insertedInboxItemsKey);
+        if (rslt == null) {
+            rslt = new HashSet<>();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.bindResource(insertedInboxItemsKey, rslt);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(insertedInboxItemsKey);
+                    }
+                });
+            }
+        }
+        return rslt;
+    }
+
+    /**
+     * Brings the inbox rows of the specified entries in line with their
+     * recipients and events (including compacted events).
+     *
+     * @return the number of rows inserted or deleted
+     */
+    private int reconcileInbox(Collection<Long> entryIds) {
+        final String recipientsJpql = "SELECT a.entry.id, r.username FROM JpaRecipient r "
+                + "JOIN r.addressee a "
+                + "WHERE a.entry.id IN (:entryIds)";
+        final String eventsJpql = "SELECT DISTINCT v.entry.id, v.username FROM JpaEvent v "
+                + "WHERE v.entry.id IN (:entryIds)";
+        final String snapshotsJpql = "SELECT DISTINCT s.entryId, s.username FROM JpaStateSnapshot s "
+                + "WHERE s.entryId IN (:entryIds)";
+        final String inboxJpql = "SELECT i FROM JpaInboxItem i "
+                + "WHERE i.entryId IN (:entryIds)";
+
+        int rslt = 0;
+        for (List<Long> chunk : chunk(entryIds)) {
+            final Set<JpaInboxItem.Key> expected = new HashSet<>();
+            for (String jpql : new String[] { recipientsJpql, eventsJpql, snapshotsJpql }) {
+                final TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+                query.setParameter("entryIds", chunk);
+                for (Object[] row : query.getResultList()) {
+                    expected.add(new JpaInboxItem.Key((String) row[1], (Long) row[0]));
+                }
+            }
+
+            final TypedQuery<JpaInboxItem> query = entityManager.createQuery(inboxJpql, JpaInboxItem.class);
+            query.setParameter("entryIds", chunk);
+            for (JpaInboxItem item : query.getResultList()) {
+                final JpaInboxItem.Key key = new JpaInboxItem.Key(item.getUsername(), item.getEntryId());
+                if (!expected.remove(key)) {
+                    entityManager.remove(item);  // Stale
+                    insertedInboxItems().remove(key);
+                    ++rslt;
+                }
+            }
+
+            for (JpaInboxItem.Key key : expected) {
+                entityManager.persist(new JpaInboxItem(key.getUsername(), key.getEntryId()));
+                ++rslt;
+            }
+        }
+        return rslt;
+    }
+
+
+    /**
+     * Adds compacted history to the transaction logs (by entry id) as
+     * transient events:  one for the first and one for the last time each
+     * state was applied.  Affected logs are restored to chronological order.
+     */
+    private void addSnapshots(Map<Long,List<JpaEvent>> eventsByEntryId, List<JpaStateSnapshot> snapshots) {
+        final Set<Long> affected = new HashSet<>();
+        for (JpaStateSnapshot snapshot : snapshots) {
+            final List<JpaEvent> events = eventsByEntryId.computeIfAbsent(snapshot.getEntryId(), k -> new ArrayList<>());
+            events.add(toEvent(snapshot, snapshot.getFirstTimestamp()));
+            if (!snapshot.getLastTimestamp().equals(snapshot.getFirstTimestamp())) {
+                events.add(toEvent(snapshot, snapshot.getLastTimestamp()));
+            }
+            affected.add(snapshot.getEntryId());
+        }
+        for (Long entryId : affected) {
+            eventsByEntryId.get(entryId).sort(CHRONOLOGICAL_ORDER);
+        }
+    }
+
+    private JpaEvent toEvent(JpaStateSnapshot snapshot, Timestamp timestamp) {
+        final JpaEvent rslt = new JpaEvent();
+        rslt.setEntry(entityManager.getReference(JpaEntry.class, snapshot.getEntryId()));
+        rslt.setUsername(snapshot.getUsername());
+        rslt.setState(snapshot.getState());
+        rslt.setTimestamp(timestamp);
+        return rslt;
+    }
+
+
+    private <T> List<List<T>> chunk(Collection<T> items) {
+        final List<T> distinct = new ArrayList<>(new LinkedHashSet<>(items));
+        final List<List<T>> rslt = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += IN_CLAUSE_CHUNK_SIZE) {
+            rslt.add(distinct.subList(i, Math.min(i + IN_CLAUSE_CHUNK_SIZE, distinct.size())));
+        }
+        return rslt;
+    }
 }
@@ -0,0 +1,322 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.jasig.portlet.notice.util.INotificationIdSetStore;
+import org.jasig.portlet.notice.util.PortletPreferencesNotificationIdSetStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Default {@link INotificationIdSetStore}, backed by the NOTICE_ID_SET table.
+ * Each user's set is loaded once into the cache, where it is kept as an
+ * immutable snapshot that changes replace (copy-on-write);  the changes
+ * themselves are queued and written behind, every
+ * <code>flushIntervalMillis</code>, in one transaction.  Repeated toggles of
+ * the same id between flushes coalesce into one write.  Changes to (and
+ * loads of) a set are serialized by a lock for that set (one of
+ * <code>LOCK_STRIPES</code>), so users don't wait on each other.
+ *
+ * <p>The cache is local to each node.  In a cluster, a change made on one
+ * node reaches the others once their cached copy of the set expires (see
+ * <code>JpaNotificationIdSetStore.cache</code> in ehcache.xml) and the change
+ * has been written;  until then they may serve (and toggle) the previous
+ * set.  Portals that don't keep each user on one node should keep the TTL of
+ * the cache short.
+ *
+ * <p>Ids that are still in the portlet preference of the same name (from
+ * before 4.9) are included in the set.  They move to the table (and the
+ * preference is cleared) the first time the user changes the set in a phase
+ * that allows storing preferences;  ids are only moved once the preference is
+ * cleared, so ids removed afterwards can't return from it.
+ *
+ * @since 4.9
+ */
+@Service("notificationIdSetStore")
+public class JpaNotificationIdSetStore implements INotificationIdSetStore {
+
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${JpaNotificationIdSetStore.flushIntervalMillis:5000}")
+    private long flushIntervalMillis;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Autowired
+    @Qualifier("notificationMaintenanceScheduler")
+    private ScheduledExecutorService scheduler;
+
+    private Cache cache;
+
+    /**
+     * Changes that have not been written yet:  <code>true</code> to add the
+     * member, <code>false</code> to remove it.
+     */
+    private final ConcurrentMap<JpaIdSetMember.Key,Boolean> pendingChanges = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    /**
+     * Each set is guarded by one of these, by the hash of its cache key;  see
+     * {@link #lockFor(String, String)}.
+     */
+    private final Object[] locks = Stream.generate(Object::new).limit(LOCK_STRIPES).toArray();
+
+    /**
+     * Unauthenticated users have no username to key a set on;  they keep
+     * using preferences.
+     */
+    private final INotificationIdSetStore guestStore = new PortletPreferencesNotificationIdSetStore();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Resource(name="JpaNotificationIdSetStore.cache")
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();  // Whatever is left
+    }
+
+    @Override
+    public Set<String> getIds(PortletRequest req, String setName) {
+        final String username = req.getRemoteUser();
+        if (username == null) {
+            return guestStore.getIds(req, setName);
+        }
+
+        final Set<String> rslt = load(username, setName);
+
+        final String[] unmigrated = req.getPreferences().getValues(setName, EMPTY_STRING_ARRAY);
+        if (unmigrated.length == 0) {
+            return rslt;
+        }
+        final Set<String> union = new HashSet<>(rslt);
+        union.addAll(Arrays.asList(unmigrated));
+        return Collections.unmodifiableSet(union);
+    }
+
+    @Override
+    public boolean toggle(PortletRequest req, String setName, String id) {
+        final String username = req.getRemoteUser();
+        if (username == null) {
+            return guestStore.toggle(req, setName, id);
+        }
+
+        migrate(req, username, setName);
+
+        synchronized (lockFor(username, setName)) {
+            final boolean rslt = !load(username, setName).contains(id);
+            change(username, setName, Collections.singleton(id), rslt);
+            return rslt;
+        }
+    }
+
+    @Override
+    public void removeAll(PortletRequest req, String setName, Collection<String> ids) {
+        final String username = req.getRemoteUser();
+        if (username == null) {
+            guestStore.removeAll(req, setName, ids);
+            return;
+        }
+
+        // Ids that remain in the preference (if it can't be cleared now) can't be removed
+        migrate(req, username, setName);
+
+        synchronized (lockFor(username, setName)) {
+            final Set<String> present = new HashSet<>(ids);
+            present.retainAll(load(username, setName));
+            if (!present.isEmpty()) {
+                change(username, setName, present, false);
+            }
+        }
+    }
+
+    /**
+     * Writes pending changes to the database;  invoked periodically, and on
+     * shutdown.  Changes that fail remain pending and are retried.
+     */
+    /* package-private */ void flush() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+
+        synchronized (flushLock) {  // Migration flushes on the request thread
+            final Map<JpaIdSetMember.Key,Boolean> batch = new HashMap<>(pendingChanges);
+            try {
+                notificationDao.updateIdSets(batch);
+                // Leaves anything that changed again in the meantime for the next flush
+                batch.forEach(pendingChanges::remove);
+                logger.debug("Wrote {} changes to notification id sets", batch.size());
+            } catch (RuntimeException e) {
+                // An exception would suppress subsequent executions
+                logger.error("Failed to write {} changes to notification id sets;  will retry", batch.size(), e);
+            }
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    private Object lockFor(String username, String setName) {
+        return locks[Math.floorMod(Objects.hash(username, setName), LOCK_STRIPES)];
+    }
+
+    private Set<String> load(String username, String setName) {
+        final List<String> cacheKey = Arrays.asList(username, setName);
+        Set<String> rslt = getCached(cacheKey);
+        if (rslt != null) {
+            return rslt;
+        }
+
+        synchronized (lockFor(username, setName)) {
+            rslt = getCached(cacheKey);  // Loaded while we waited?
+            if (rslt != null) {
+                return rslt;
+            }
+
+            /*
+             * Changes that have not been written yet.  Nothing adds changes to
+             * this set while we hold its lock, but a flush may remove them;
+             * whatever is gone by the time we query has been written.
+             */
+            final Map<String,Boolean> pending = new HashMap<>();
+            pendingChanges.forEach((key, member) -> {
+                if (key.getUsername().equals(username) && key.getSetName().equals(setName)) {
+                    pending.put(key.getNoticeId(), member);
+                }
+            });
+
+            final Set<String> ids = notificationDao.getIdSet(username, setName);
+            pending.forEach((id, member) -> {
+                if (member) {
+                    ids.add(id);
+                } else {
+                    ids.remove(id);
+                }
+            });
+
+            rslt = Collections.unmodifiableSet(ids);
+            cache.put(new Element(cacheKey, rslt));
+            return rslt;
+        }
+    }
+
+    private Set<String> getCached(List<String> cacheKey) {
+        final Element element = cache.get(cacheKey);
+        if (element == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final Set<String> rslt = (Set<String>) element.getObjectValue();
+        return rslt;
+    }
+
+    /**
+     * Callers must hold the lock for the set (see {@link #lockFor(String, String)}).
+     */
+    private void change(String username, String setName, Set<String> ids, boolean member) {
+        final Set<String> updated = new HashSet<>(load(username, setName));
+        for (String id : ids) {
+            if (member) {
+                updated.add(id);
+            } else {
+                updated.remove(id);
+            }
+            pendingChanges.put(new JpaIdSetMember.Key(username, setName, id), member);
+        }
+        cache.put(new Element(Arrays.asList(username, setName), Collections.unmodifiableSet(updated)));
+    }
+
+    /**
+     * Moves ids from the portlet preference of the same name into the store,
+     * provided the preference can be cleared in the current phase.
+     */
+    private void migrate(PortletRequest req, String username, String setName) {
+        final PortletPreferences prefs = req.getPreferences();
+        final String[] ids = prefs.getValues(setName, EMPTY_STRING_ARRAY);
+        if (ids.length == 0) {
+            return;
+        }
+
+        // Clear the preference first;  ids must not move unless it is cleared
+        try {
+            prefs.reset(setName);
+            prefs.store();
+        } catch (Exception e) {
+            logger.debug("Unable to clear preference '{}' for user '{}' (e.g. in the render phase);  "
+                    + "its ids will move later", setName, username, e);
+            try {
+                prefs.setValues(setName, ids);  // Keeps them visible for this request
+            } catch (Exception e2) {
+                logger.warn("Failed to restore preference '{}' for user '{}'", setName, username, e2);
+            }
+            return;
+        }
+
+        synchronized (lockFor(username, setName)) {
+            final Set<String> missing = new HashSet<>(Arrays.asList(ids));
+            missing.removeAll(load(username, setName));
+            if (!missing.isEmpty()) {
+                change(username, setName, missing, true);
+            }
+        }
+        flush();  // The preference no longer has them
+        logger.info("Migrated {} ids in set '{}' for user '{}' from portlet preferences",
+                ids.length, setName, username);
+    }
+
+}
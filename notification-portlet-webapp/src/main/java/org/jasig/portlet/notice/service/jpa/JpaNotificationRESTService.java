@@ -22,6 +22,7 @@ import org.apache.commons.lang3.Validate;
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationState;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.BulkCreateResultDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.rest.RecipientDTO;
@@ -33,8 +34,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Allows you to interact with the same data as {@link JpaNotificationService} but provides write
@@ -45,6 +53,15 @@ import java.util.Set;
 @Service("jpaNotificationRestService")
 public class JpaNotificationRESTService implements IJpaNotificationRESTService {
 
+    private static final int STREAMING_PAGE_SIZE = 500;
+
+    /**
+     * Number of entries after which {@link #createNotifications(List)} flushes and clears the
+     * persistence context;  each entry (with its addressees, recipients, attributes and inbox
+     * items) accounts for several inserts, batched per hibernate.jdbc.batch_size.
+     */
+    private static final int BATCH_SIZE = 100;
+
     @Autowired
     private INotificationDao notificationDao;
 
@@ -64,6 +81,7 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
             return null;
         }
 
+        initializeCollections(entry);
         return notificationMapper.toEntry(entry);
     }
 
@@ -83,10 +101,41 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
     @Transactional(readOnly = true)
     public List<EntryDTO> getNotifications(Integer page, Integer pageSize) {
         final List<JpaEntry> entries = notificationDao.list(page, pageSize);
+        entries.forEach(JpaNotificationRESTService::initializeCollections);
 
         return notificationMapper.toEntryList(entries);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<EntryDTO> getNotificationsAfter(long afterId, int pageSize) {
+        final List<JpaEntry> entries = notificationDao.list(afterId, pageSize);
+        entries.forEach(JpaNotificationRESTService::initializeCollections);
+
+        return notificationMapper.toEntryList(entries);
+    }
+
+    /**
+     * Works through the table one keyset page at a time, so the collections of
+     * each page are loaded in batches and the persistence context never holds
+     * more than one page.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachNotification(Consumer<EntryDTO> consumer) {
+        long afterId = 0L;
+        List<JpaEntry> page;
+        do {
+            page = notificationDao.list(afterId, STREAMING_PAGE_SIZE);
+            page.forEach(JpaNotificationRESTService::initializeCollections);
+            for (JpaEntry entry : page) {
+                consumer.accept(notificationMapper.toEntry(entry));
+                afterId = entry.getId();
+            }
+            notificationDao.clear();
+        } while (page.size() == STREAMING_PAGE_SIZE);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<EntryDTO> getNotificationsBySourceAndCustomAttribute(String source, String attributeName, String attributeValue) {
@@ -101,34 +150,68 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
         final List<JpaEntry> entries = notificationDao.getNotificationsBySourceAndCustomAttribute(source, attributeName, attributeValue);
         logger.debug("Found the following {} entries:  {}", entries.size(), entries);
 
+        entries.forEach(JpaNotificationRESTService::initializeCollections);
         return notificationMapper.toEntryList(entries);
     }
 
     @Override
-    @Transactional
-    public EntryDTO createNotification(EntryDTO entry) {
-        Validate.isTrue(entry.getId() == 0, "Do not include an 'id' attribute when creating entries");
+    @Transactional(readOnly = true)
+    public Map<String,List<Long>> getNotificationIdsBySourceAndCustomAttribute(String source,
+            String attributeName, Collection<String> attributeValues) {
+        Validate.notBlank(source, "Argument 'source' cannot be blank");
+        Validate.notBlank(attributeName, "Argument 'attributeName' cannot be blank");
+        Validate.notNull(attributeValues, "Argument 'attributeValues' cannot be null");
 
-        final JpaEntry jpaEntry = notificationMapper.toJpaEntry(entry);
-        logger.debug("notificationMapper produced the following JpaEntry:  {}", jpaEntry);
+        if (attributeValues.isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-        final JpaEntry inserted = notificationDao.createOrUpdateEntry(jpaEntry);
+        final Map<String,List<Long>> rslt =
+                notificationDao.getEntryIdsBySourceAndCustomAttribute(source, attributeName, attributeValues);
+        logger.debug("Found entries for {} of {} values of attributeName='{}' with source='{}'",
+                rslt.size(), attributeValues.size(), attributeName, source);
 
-        /*
-         * Business rule:  new notifications must be ISSUED to recipients listed in the original payload.
-         */
-        inserted.getAddressees().forEach(addressee -> {
-            if (RecipientType.INDIVIDUAL.equals(addressee.getType())) {
-                addressee.getRecipients().forEach(recipient -> {
-                    final EventDTO event = new EventDTO();
-                    event.setUsername(recipient.getUsername());
-                    event.setState(NotificationState.ISSUED);
-                    createEvent(inserted.getId(), event);
-                });
+        return rslt;
+    }
+
+    @Override
+    @Transactional
+    public EntryDTO createNotification(EntryDTO entry) {
+        final JpaEntry inserted = insertEntry(entry);
+        final EntryDTO rslt = notificationMapper.toEntry(inserted);
+        notificationDao.createEvents(issueEvents(inserted));
+        return rslt;
+    }
+
+    @Override
+    @Transactional
+    public BulkCreateResultDTO createNotifications(List<EntryDTO> entries) {
+        Validate.notNull(entries, "Argument 'entries' cannot be null");
+
+        final long start = System.currentTimeMillis();
+
+        final List<Long> ids = new ArrayList<>(entries.size());
+        final List<JpaEvent> events = new ArrayList<>();
+        for (EntryDTO entry : entries) {
+            final JpaEntry inserted = insertEntry(entry);
+            ids.add(inserted.getId());
+            events.addAll(issueEvents(inserted));
+            if (ids.size() % BATCH_SIZE == 0) {
+                // Keeps dirty checking from revisiting every entry inserted so far
+                notificationDao.flush();
+                notificationDao.clear();
             }
-        });
+        }
+        final int eventCount = notificationDao.createEvents(events);
+
+        final BulkCreateResultDTO rslt = new BulkCreateResultDTO();
+        rslt.setNotificationIds(ids);
+        rslt.setEventCount(eventCount);
+        rslt.setElapsedMillis(System.currentTimeMillis() - start);
+        logger.info("Created {} notifications and {} events in {}ms ({} rows/second)",
+                ids.size(), eventCount, rslt.getElapsedMillis(), rslt.getRowsPerSecond());
 
-        return notificationMapper.toEntry(inserted);
+        return rslt;
     }
 
     @Override
@@ -193,6 +276,26 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
         return notificationMapper.toEventList(events);
     }
 
+    /**
+     * Provides complete transaction logs for several notifications and a
+     * single recipient, each <strong>in chronological order</strong>.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long,List<EventDTO>> getEventsByNotificationsAndUser(Collection<Long> notificationIds, String username) {
+        Validate.notNull(notificationIds, "Argument 'notificationIds' cannot be null");
+
+        if (notificationIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<Long,List<EventDTO>> rslt = new HashMap<>();
+        notificationDao.getEvents(notificationIds, username).forEach((notificationId, events) ->
+                rslt.put(notificationId, notificationMapper.toEventList(events)));
+
+        return rslt;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public EventDTO getEvent(long eventId) {
@@ -217,4 +320,54 @@ public class JpaNotificationRESTService implements IJpaNotificationRESTService {
         return notificationMapper.toEvent(jpaResult);
     }
 
+    /*
+     * Implementation
+     */
+
+    /**
+     * The REST API renders the whole entry, but its collections are LAZY;  they're initialized
+     * here, within the transaction.  For a list of entries, @BatchSize on the collections means
+     * they are loaded a batch at a time, rather than one entry at a time.
+     */
+    private static void initializeCollections(JpaEntry entry) {
+        // NB:  The getters return read-only views;  size() initializes the underlying collection
+        for (JpaAttribute attribute : entry.getAttributes()) {
+            attribute.getValues().size();
+        }
+        entry.getActions().size();
+        for (JpaAddressee addressee : entry.getAddressees()) {
+            addressee.getRecipients().size();
+        }
+    }
+
+    private JpaEntry insertEntry(EntryDTO entry) {
+        Validate.isTrue(entry.getId() == 0, "Do not include an 'id' attribute when creating entries");
+
+        final JpaEntry jpaEntry = notificationMapper.toJpaEntry(entry);
+        logger.debug("notificationMapper produced the following JpaEntry:  {}", jpaEntry);
+
+        return notificationDao.createOrUpdateEntry(jpaEntry);
+    }
+
+    /**
+     * Business rule:  new notifications must be ISSUED to recipients listed in the original payload.
+     */
+    private List<JpaEvent> issueEvents(JpaEntry inserted) {
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        final List<JpaEvent> rslt = new ArrayList<>();
+        inserted.getAddressees().forEach(addressee -> {
+            if (RecipientType.INDIVIDUAL.equals(addressee.getType())) {
+                addressee.getRecipients().forEach(recipient -> {
+                    final JpaEvent event = new JpaEvent();
+                    event.setEntry(inserted);
+                    event.setUsername(recipient.getUsername());
+                    event.setState(NotificationState.ISSUED);
+                    event.setTimestamp(now);
+                    rslt.add(event);
+                });
+            }
+        });
+        return rslt;
+    }
+
 }
@@ -61,6 +61,15 @@ public class JpaNotificationService extends AbstractNotificationService {
      */
     /* package-private */ static final String TABLENAME_PREFIX = "NOTICE_";
 
+    /**
+     * All the JPA entities draw ids from one sequence (or table, on platforms without
+     * sequences), in blocks of {@link #ID_ALLOCATION_SIZE} so that inserts can be batched
+     * without a round-trip per row.  The increment of the database sequence must match (see
+     * db/changelog).
+     */
+    /* package-private */ static final String ID_SEQUENCE_NAME = "hibernate_sequence";
+    /* package-private */ static final int ID_ALLOCATION_SIZE = 50;
+
     public static final String ID_PREFIX = "jpa_";
 
     private static final String UNCATEGORIZED_MESSAGE_CODE = "uncategorized";
@@ -162,6 +171,9 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     private NotificationResponse prepareResponse(Set<JpaEntry> entries, String username) {
 
+        // The transaction logs for all the entries, in one query
+        final Map<Long,List<JpaEvent>> events = notificationDao.getEventsByRecipient(username);
+
         Map<String,NotificationCategory> categories = new HashMap<>();
         for (JpaEntry entry : entries) {
 
@@ -180,7 +192,8 @@ public class JpaNotificationService extends AbstractNotificationService {
             }
 
             // Prepare a NotificationEntry
-            NotificationEntry y = prepareEntry(entry, username);
+            NotificationEntry y = prepareEntry(entry, username,
+                    events.getOrDefault(entry.getId(), Collections.emptyList()));
             if (y != null) {
                 category.addEntries(Collections.singletonList(y));
             }
@@ -201,7 +214,7 @@ public class JpaNotificationService extends AbstractNotificationService {
      * 
      * @return A fully-constituted {@link NotificationEntry} or null
      */
-    private NotificationEntry prepareEntry(JpaEntry entry, String username) {
+    private NotificationEntry prepareEntry(JpaEntry entry, String username, List<JpaEvent> events) {
 
         /*
          * Implementation Note:  Most notification fields are optional.  This
@@ -247,7 +260,7 @@ public class JpaNotificationService extends AbstractNotificationService {
         }
 
         // States (transaction log)
-        Map<NotificationState,Date> states = prepareStates(entry, username);
+        Map<NotificationState,Date> states = prepareStates(events);
         rslt.setStates(states);
 
         // Collections of items...
@@ -265,11 +278,14 @@ public class JpaNotificationService extends AbstractNotificationService {
 
     }
 
-    private Map<NotificationState, Date> prepareStates(JpaEntry entry, String username) {
+    /**
+     * @param events The transaction log for one entry and one user <strong>in
+     * chronological order</strong>
+     */
+    /* package-private */ static Map<NotificationState, Date> prepareStates(List<JpaEvent> events) {
         Map<NotificationState, Date> rslt = new HashMap<>();
-        List<JpaEvent> events = notificationDao.getEvents(entry.getId(), username);
-        Collections.reverse(events);  // Process in reverse-chronological order
-        for (JpaEvent e : events) {
+        for (int i = events.size() - 1; i >= 0; i--) {  // Process in reverse-chronological order
+            final JpaEvent e = events.get(i);
             // NOTE:  We're obligated to filter out states
             // that are "canceled out" by subsequent events
             Set<NotificationState> subsequentHistory = rslt.keySet();
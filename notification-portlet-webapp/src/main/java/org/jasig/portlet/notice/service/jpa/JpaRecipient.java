@@ -18,15 +18,21 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Represents an individual who receives a notification.
  *
@@ -34,11 +40,18 @@ import javax.persistence.Table;
  * @author drewwills
  */
 @Entity
-@Table(name=JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT")
+@Cacheable
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "RECIPIENT", indexes={
+        @Index(name="IDX_NOTICE_RECIPIENT_ADDR", columnList="ADDRESSEE_ID"),
+        @Index(name="IDX_NOTICE_RECIPIENT_USER", columnList="USERNAME")
+})
 /* package-private */ class JpaRecipient {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="JpaRecipient.id")
+    @SequenceGenerator(name="JpaRecipient.id", sequenceName=JpaNotificationService.ID_SEQUENCE_NAME,
+            allocationSize=JpaNotificationService.ID_ALLOCATION_SIZE)
     @Column(name="ID", nullable = false)
     private long id;
 
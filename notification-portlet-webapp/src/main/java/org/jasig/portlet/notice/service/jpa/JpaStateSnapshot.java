@@ -0,0 +1,155 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.jasig.portlet.notice.NotificationState;
+
+/**
+ * The compacted history of one state of one notification for one user:  when
+ * the state was first applied, and when it was last applied.  Every reading of
+ * the transaction log (<code>NotificationState.isActive</code>, snooze, read)
+ * depends only on those two moments for each state, so any number of
+ * {@link JpaEvent} rows can be folded into this row without changing the
+ * outcome.  The fold (min/max) is idempotent and order-independent.
+ *
+ * @since 4.9
+ */
+@Entity
+@IdClass(JpaStateSnapshot.Key.class)
+@Table(name=JpaNotificationService.TABLENAME_PREFIX + "STATE_SNAPSHOT", indexes={
+        @Index(name="IDX_NOTICE_STATE_SNAPSHOT_ENTRY", columnList="ENTRY_ID")
+})
+/* package-private */ class JpaStateSnapshot {
+
+    @Id
+    @Column(name="USERNAME", nullable=false)
+    private String username;
+
+    @Id
+    @Column(name="ENTRY_ID", nullable=false)
+    private long entryId;
+
+    @Id
+    @Column(name="STATE", nullable=false)
+    private NotificationState state;
+
+    @Column(name="FIRST_TIMESTAMP", nullable=false)
+    private Timestamp firstTimestamp;
+
+    @Column(name="LAST_TIMESTAMP", nullable=false)
+    private Timestamp lastTimestamp;
+
+    public JpaStateSnapshot() {}
+
+    public JpaStateSnapshot(String username, long entryId, NotificationState state, Timestamp timestamp) {
+        this.username = username;
+        this.entryId = entryId;
+        this.state = state;
+        this.firstTimestamp = timestamp;
+        this.lastTimestamp = timestamp;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public NotificationState getState() {
+        return state;
+    }
+
+    public Timestamp getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public Timestamp getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Folds another occurrence of this state into the snapshot.
+     */
+    public void fold(Timestamp timestamp) {
+        if (timestamp.before(firstTimestamp)) {
+            firstTimestamp = timestamp;
+        }
+        if (timestamp.after(lastTimestamp)) {
+            lastTimestamp = timestamp;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JpaStateSnapshot [username=" + username + ", entryId=" + entryId + ", state=" + state
+                + ", firstTimestamp=" + firstTimestamp + ", lastTimestamp=" + lastTimestamp + "]";
+    }
+
+    /**
+     * Composite primary key.
+     */
+    public static final class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private String username;
+        private long entryId;
+        private NotificationState state;
+
+        public Key() {}
+
+        public Key(String username, long entryId, NotificationState state) {
+            this.username = username;
+            this.entryId = entryId;
+            this.state = state;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return entryId == key.entryId && Objects.equals(username, key.username) && state == key.state;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, entryId, state);
+        }
+
+    }
+
+}
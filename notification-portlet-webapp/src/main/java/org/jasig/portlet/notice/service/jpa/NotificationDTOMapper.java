@@ -18,135 +18,285 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Lists;
-import org.dozer.Mapper;
+import org.hibernate.Hibernate;
+import org.jasig.portlet.notice.rest.ActionDTO;
 import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.AttributeDTO;
 import org.jasig.portlet.notice.rest.EntryDTO;
 import org.jasig.portlet.notice.rest.EventDTO;
 import org.jasig.portlet.notice.rest.RecipientDTO;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
+ * Hand-written conversions between the JPA entities and their DTOs.  Lists are
+ * converted eagerly, so each element is mapped exactly once.  Collections that
+ * Hibernate has not initialized are skipped (never loaded), and back-references
+ * (e.g. <code>JpaAttribute.entry</code>) are set on the JPA side as part of the
+ * conversion.
+ *
  * @author Josh Helmer, jhelmer.unicon.net
  * @since 3.0
  */
 @Service
 public class NotificationDTOMapper implements INotificationDTOMapper {
-    @Autowired
-    private Mapper dozerBeanMapper;
-
 
     @Override
     public List<EntryDTO> toEntryList(List<JpaEntry> entries) {
-        return Lists.transform(entries, new Function<JpaEntry, EntryDTO>() {
-            @Override
-            public EntryDTO apply(JpaEntry jpaEntry) {
-                return toEntry(jpaEntry);
-            }
-        });
+        return mapList(entries, this::toEntry);
     }
 
 
     @Override
     public List<JpaEntry> toJpaEntryList(List<EntryDTO> entries) {
-        return Lists.transform(entries, new Function<EntryDTO, JpaEntry>() {
-            @Override
-            public JpaEntry apply(EntryDTO entry) {
-                return toJpaEntry(entry);
-            }
-        });
+        return mapList(entries, this::toJpaEntry);
     }
 
 
     @Override
     public EntryDTO toEntry(JpaEntry entry) {
-        return dozerBeanMapper.map(entry, EntryDTO.class);
+        if (entry == null) {
+            return null;
+        }
+
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setId(entry.getId());
+        rslt.setTitle(entry.getTitle());
+        rslt.setSource(entry.getSource());
+        rslt.setUrl(entry.getUrl());
+        rslt.setLinkText(entry.getLinkText());
+        rslt.setPriority(entry.getPriority());
+        rslt.setDueDate(entry.getDueDate());
+        rslt.setImage(entry.getImage());
+        rslt.setBody(entry.getBody());
+        if (Hibernate.isInitialized(entry.getAttributes())) {
+            rslt.setAttributes(mapSet(entry.getAttributes(), this::toAttribute));
+        }
+        if (Hibernate.isInitialized(entry.getActions())) {
+            rslt.setActions(mapSet(entry.getActions(), this::toAction));
+        }
+        if (Hibernate.isInitialized(entry.getAddressees())) {
+            rslt.setAddressees(toAddresseeSet(entry.getAddressees()));
+        }
+        return rslt;
     }
 
 
     @Override
     public JpaEntry toJpaEntry(EntryDTO entry) {
-        return dozerBeanMapper.map(entry, JpaEntry.class);
+        if (entry == null) {
+            return null;
+        }
+
+        final JpaEntry rslt = new JpaEntry();
+        rslt.setId(entry.getId());
+        rslt.setTitle(entry.getTitle());
+        rslt.setSource(entry.getSource());
+        rslt.setUrl(entry.getUrl());
+        rslt.setLinkText(entry.getLinkText());
+        rslt.setPriority(entry.getPriority());
+        rslt.setDueDate(entry.getDueDate());
+        rslt.setImage(entry.getImage());
+        rslt.setBody(entry.getBody());
+        if (entry.getAttributes() != null && Hibernate.isInitialized(entry.getAttributes())) {
+            for (AttributeDTO attribute : entry.getAttributes()) {
+                final JpaAttribute jpa = toJpaAttribute(attribute);
+                jpa.setEntry(rslt);
+                rslt.addAttribute(jpa);
+            }
+        }
+        if (entry.getActions() != null && Hibernate.isInitialized(entry.getActions())) {
+            for (ActionDTO action : entry.getActions()) {
+                final JpaAction jpa = toJpaAction(action);
+                jpa.setEntry(rslt);
+                rslt.addAction(jpa);
+            }
+        }
+        if (entry.getAddressees() != null && Hibernate.isInitialized(entry.getAddressees())) {
+            for (AddresseeDTO addressee : entry.getAddressees()) {
+                final JpaAddressee jpa = toJpaAddressee(addressee);
+                jpa.setEntry(rslt);
+                rslt.addAddressee(jpa);
+            }
+        }
+        return rslt;
     }
 
 
     @Override
     public Set<AddresseeDTO> toAddresseeSet(Set<JpaAddressee> addressees) {
-        Set<AddresseeDTO> set = new HashSet<>();
-        for (JpaAddressee addr : addressees) {
-            AddresseeDTO dto = toAddressee(addr);
-            set.add(dto);
-        }
-
-        return set;
+        return mapSet(addressees, this::toAddressee);
     }
 
 
     @Override
     public AddresseeDTO toAddressee(JpaAddressee addressee) {
-        return dozerBeanMapper.map(addressee, AddresseeDTO.class);
+        if (addressee == null) {
+            return null;
+        }
+
+        final AddresseeDTO rslt = new AddresseeDTO();
+        rslt.setId(addressee.getId());
+        rslt.setName(addressee.getName());
+        rslt.setType(addressee.getType());
+        if (Hibernate.isInitialized(addressee.getRecipients())) {
+            rslt.setRecipients(mapSet(addressee.getRecipients(), this::toRecipient));
+        }
+        return rslt;
     }
 
 
     @Override
     public JpaAddressee toJpaAddressee(AddresseeDTO addressee) {
-        return dozerBeanMapper.map(addressee, JpaAddressee.class);
+        if (addressee == null) {
+            return null;
+        }
+
+        final JpaAddressee rslt = new JpaAddressee();
+        rslt.setId(addressee.getId());
+        rslt.setName(addressee.getName());
+        rslt.setType(addressee.getType());
+        if (addressee.getRecipients() != null && Hibernate.isInitialized(addressee.getRecipients())) {
+            for (RecipientDTO recipient : addressee.getRecipients()) {
+                final JpaRecipient jpa = toJpaRecipient(recipient);
+                jpa.setAddressee(rslt);
+                rslt.addRecipient(jpa);
+            }
+        }
+        return rslt;
     }
 
 
     @Override
     public List<RecipientDTO> toRecipientList(List<JpaRecipient> recipients) {
-        return Lists.transform(recipients, new Function<JpaRecipient, RecipientDTO>() {
-            @Override
-            public RecipientDTO apply(JpaRecipient jpaRecipient) {
-                return toRecipient(jpaRecipient);
-            }
-        });
+        return mapList(recipients, this::toRecipient);
     }
 
 
     @Override
     public RecipientDTO toRecipient(JpaRecipient recipient) {
-        return dozerBeanMapper.map(recipient, RecipientDTO.class);
+        if (recipient == null) {
+            return null;
+        }
+
+        final RecipientDTO rslt = new RecipientDTO();
+        rslt.setId(recipient.getId());
+        rslt.setUsername(recipient.getUsername());
+        return rslt;
     }
 
 
     @Override
     public List<EventDTO> toEventList(List<JpaEvent> events) {
-        return Lists.transform(events, new Function<JpaEvent, EventDTO>() {
-            @Override
-            public EventDTO apply(JpaEvent jpaEvent) {
-                return toEvent(jpaEvent);
-            }
-        });
+        return mapList(events, this::toEvent);
     }
 
 
     @Override
     public List<JpaEvent> toJpaEventList(List<EventDTO> events) {
-        return Lists.transform(events, new Function<EventDTO, JpaEvent>() {
-            @Override
-            public JpaEvent apply(EventDTO eventDTO) {
-                return toJpaEvent(eventDTO);
-            }
-        });
+        return mapList(events, this::toJpaEvent);
     }
 
 
     @Override
     public EventDTO toEvent(JpaEvent event) {
-        return dozerBeanMapper.map(event, EventDTO.class);
+        if (event == null) {
+            return null;
+        }
+
+        final EventDTO rslt = new EventDTO();
+        rslt.setId(event.getId());
+        rslt.setTimestamp(event.getTimestamp());
+        rslt.setUsername(event.getUsername());
+        rslt.setState(event.getState());
+        return rslt;
     }
 
 
     @Override
     public JpaEvent toJpaEvent(EventDTO event) {
-        return dozerBeanMapper.map(event, JpaEvent.class);
+        if (event == null) {
+            return null;
+        }
+
+        final JpaEvent rslt = new JpaEvent();
+        rslt.setId(event.getId());
+        rslt.setTimestamp(event.getTimestamp());
+        rslt.setUsername(event.getUsername());
+        rslt.setState(event.getState());
+        return rslt;
+    }
+
+    /*
+     * Implementation
+     */
+
+    private AttributeDTO toAttribute(JpaAttribute attribute) {
+        final AttributeDTO rslt = new AttributeDTO();
+        rslt.setId(attribute.getId());
+        rslt.setName(attribute.getName());
+        rslt.setValues(new ArrayList<>(attribute.getValues()));
+        return rslt;
+    }
+
+    private JpaAttribute toJpaAttribute(AttributeDTO attribute) {
+        final JpaAttribute rslt = new JpaAttribute();
+        rslt.setId(attribute.getId());
+        rslt.setName(attribute.getName());
+        if (attribute.getValues() != null) {
+            rslt.setValues(attribute.getValues());
+        }
+        return rslt;
+    }
+
+    private ActionDTO toAction(JpaAction action) {
+        final ActionDTO rslt = new ActionDTO();
+        rslt.setId(action.getId());
+        rslt.setLabel(action.getLabel());
+        rslt.setClazz(action.getClazz());
+        return rslt;
+    }
+
+    private JpaAction toJpaAction(ActionDTO action) {
+        final JpaAction rslt = new JpaAction();
+        rslt.setId(action.getId());
+        rslt.setLabel(action.getLabel());
+        rslt.setClazz(action.getClazz());
+        return rslt;
+    }
+
+    private JpaRecipient toJpaRecipient(RecipientDTO recipient) {
+        final JpaRecipient rslt = new JpaRecipient();
+        rslt.setId(recipient.getId());
+        rslt.setUsername(recipient.getUsername());
+        return rslt;
+    }
+
+    private static <S,T> List<T> mapList(List<S> source, Function<S,T> mapper) {
+        if (source == null) {
+            return null;
+        }
+        final List<T> rslt = new ArrayList<>(source.size());
+        for (S item : source) {
+            rslt.add(mapper.apply(item));
+        }
+        return rslt;
     }
+
+    private static <S,T> Set<T> mapSet(Collection<S> source, Function<S,T> mapper) {
+        final Set<T> rslt = new HashSet<>();
+        if (source != null) {
+            for (S item : source) {
+                rslt.add(mapper.apply(item));
+            }
+        }
+        return rslt;
+    }
+
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rest;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+import org.jasig.portlet.notice.NotificationResponse;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A response from a remote service, along with what its <code>Cache-Control</code>,
+ * <code>Expires</code> and <code>ETag</code> headers say about re-using it.  Responses marked
+ * <code>private</code> may only be re-used for the same portal user;  others are shared by every
+ * user whose request resolves to the same URL and credentials.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class CachedServiceResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final NotificationResponse response;
+    private final String etag;
+    private final long expires;
+    private final boolean privateResponse;
+    private final boolean noStore;
+
+    /**
+     * @param defaultMaxAgeMillis Freshness lifetime of a response that has neither
+     * <code>Cache-Control: max-age</code> nor <code>Expires</code>
+     */
+    /* package-private */ static CachedServiceResponse create(NotificationResponse response,
+            HttpHeaders headers, long now, long defaultMaxAgeMillis) {
+        return create(response, headers.getETag(), headers, now, defaultMaxAgeMillis);
+    }
+
+    public NotificationResponse getResponse() {
+        return response;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean isPrivate() {
+        return privateResponse;
+    }
+
+    public boolean isFresh(long now) {
+        return now < expires;
+    }
+
+    /**
+     * Milliseconds this response remains fresh (zero or less if it is stale).
+     */
+    public long getFreshnessMillis(long now) {
+        return expires - now;
+    }
+
+    /**
+     * Responses with errors are not stored, nor are responses that can be neither re-used as they
+     * are nor revalidated.
+     */
+    public boolean isStorable(long now) {
+        return !noStore && response.getErrors().isEmpty() && (isFresh(now) || etag != null);
+    }
+
+    /**
+     * Applies the headers of a <code>304 Not Modified</code> response to this (stale) one.
+     */
+    public CachedServiceResponse revalidate(HttpHeaders headers, long now, long defaultMaxAgeMillis) {
+        final String newEtag = headers.getETag() != null ? headers.getETag() : etag;
+        return create(response, newEtag, headers, now, defaultMaxAgeMillis);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static CachedServiceResponse create(NotificationResponse response, String etag,
+            HttpHeaders headers, long now, long defaultMaxAgeMillis) {
+
+        long maxAgeMillis = -1L;
+        boolean privateResponse = false;
+        boolean noStore = false;
+
+        final String cacheControl = headers.getCacheControl();
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store")) {
+                    noStore = true;
+                } else if (directive.equals("no-cache")) {
+                    maxAgeMillis = 0L;  // Always revalidate
+                } else if (directive.equals("private")) {
+                    privateResponse = true;
+                } else if (directive.startsWith("max-age=") && maxAgeMillis != 0L) {
+                    try {
+                        maxAgeMillis = Long.parseLong(directive.substring(8).trim()) * 1000L;
+                    } catch (NumberFormatException e) {
+                        maxAgeMillis = 0L;  // Treat as stale
+                    }
+                }
+            }
+        }
+
+        long expires = now + defaultMaxAgeMillis;
+        if (maxAgeMillis >= 0L) {
+            expires = now + maxAgeMillis;
+        } else if (headers.containsKey(HttpHeaders.EXPIRES)) {
+            try {
+                expires = headers.getExpires();
+            } catch (IllegalArgumentException e) {
+                expires = now;  // E.g. 'Expires: 0', which means already expired
+            }
+        }
+
+        return new CachedServiceResponse(response, etag, expires, privateResponse, noStore);
+
+    }
+
+    private CachedServiceResponse(NotificationResponse response, String etag, long expires,
+            boolean privateResponse, boolean noStore) {
+        this.response = response;
+        this.etag = etag;
+        this.expires = expires;
+        this.privateResponse = privateResponse;
+        this.noStore = noStore;
+    }
+
+}
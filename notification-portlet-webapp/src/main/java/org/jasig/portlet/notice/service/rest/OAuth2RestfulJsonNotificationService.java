@@ -1,7 +1,12 @@
 package org.jasig.portlet.notice.service.rest;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.HttpClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsAccessTokenProvider;
 import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
@@ -17,7 +22,9 @@ import java.util.List;
 /**
  * Obtains notifications as JSON from a remote URL using a Spring <code>OAuth2RestTemplate</code>.
  * Most of the work is done by the superclass ({@link RestfulJsonNotificationService});  this class
- * merely leverages a different template and a different property/preference.
+ * merely leverages a different template and a different property/preference.  The template
+ * (including its token requests) uses the same pooled <code>httpClient</code> as the
+ * <code>restTemplate</code> bean.
  *
  * @since 4.6
  */
@@ -48,6 +55,10 @@ public class OAuth2RestfulJsonNotificationService extends RestfulJsonNotificatio
     @Value("${OAuth2RestfulJsonNotificationService.accessTokenUri:}")
     private String accessTokenUri;
 
+    @Autowired
+    @Qualifier("httpClient")
+    private HttpClient httpClient;
+
     private OAuth2RestTemplate oAuth2RestTemplate;
 
     @PostConstruct
@@ -61,7 +72,14 @@ public class OAuth2RestfulJsonNotificationService extends RestfulJsonNotificatio
         resourceDetails.setClientId(clientId);
         resourceDetails.setClientSecret(clientSecret);
         resourceDetails.setAccessTokenUri(accessTokenUri);
+        final HttpComponentsClientHttpRequestFactory requestFactory =
+                new HttpComponentsClientHttpRequestFactory(httpClient);
+        final ClientCredentialsAccessTokenProvider accessTokenProvider =
+                new ClientCredentialsAccessTokenProvider();
+        accessTokenProvider.setRequestFactory(requestFactory);
         oAuth2RestTemplate = new OAuth2RestTemplate(resourceDetails);
+        oAuth2RestTemplate.setRequestFactory(requestFactory);
+        oAuth2RestTemplate.setAccessTokenProvider(accessTokenProvider);
     }
 
     @Override
@@ -20,26 +20,43 @@ package org.jasig.portlet.notice.service.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.portlet.ActionRequest;
+import javax.portlet.ActionResponse;
 import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
+import org.jasig.portlet.notice.IRefreshable;
 import org.jasig.portlet.notice.NotificationError;
 import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationResponseMerger;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.RequestCallback;
@@ -47,9 +64,19 @@ import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 /**
- * Obtains notifications as JSON from a remote URL using a Spring <code>RestTemplate</code>.
+ * Obtains notifications as JSON from a remote URL using a Spring <code>RestTemplate</code>.  When
+ * several URLs are configured, they are invoked concurrently (on the
+ * <code>notificationServiceExecutor</code> pool) and their responses are merged;  a URL that
+ * fails contributes an error, without affecting the others.
+ *
+ * <p>Responses are cached (<code>RestfulJsonNotificationService.responseCache</code>) under the
+ * URL (after parameters are substituted) and the credentials used to invoke it, so users for
+ * whom a URL resolves the same share an entry.  The service's <code>Cache-Control</code>,
+ * <code>Expires</code> and <code>ETag</code> headers are honored;  responses without them are
+ * fresh for <code>RestfulJsonNotificationService.defaultMaxAgeSeconds</code> (by default, not at
+ * all).  A refresh evicts the responses the user would see.
  */
-public class RestfulJsonNotificationService extends AbstractNotificationService {
+public class RestfulJsonNotificationService extends AbstractNotificationService implements IRefreshable {
 
     private static final String SERVICE_URLS_PREFERENCE = "RestfulJsonNotificationService.serviceUrls";
 
@@ -71,11 +98,20 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
 
     private List<String> serviceUrlsList = Collections.emptyList();
 
+    @Value("${RestfulJsonNotificationService.defaultMaxAgeSeconds:0}")
+    private long defaultMaxAgeSeconds;
+
+    private Cache responseCache;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Autowired
     private UsernameFinder usernameFinder;
 
+    @Autowired
+    @Qualifier("notificationServiceExecutor")
+    private ExecutorService executorService;
+
     public void setUsernameEvaluator(IParameterEvaluator usernameEvaluator) {
         this.usernameEvaluator = usernameEvaluator;
     }
@@ -102,6 +138,14 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
         this.restTemplate = restTemplate;
     }
 
+    /**
+     * @since 4.9
+     */
+    @Resource(name="RestfulJsonNotificationService.responseCache")
+    public void setResponseCache(Cache responseCache) {
+        this.responseCache = responseCache;
+    }
+
     @PostConstruct
     public void init() {
         if (!StringUtils.isEmpty(serviceUrlsProperty)) {
@@ -110,6 +154,24 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
         }
     }
 
+    @Override
+    public void invoke(ActionRequest req, ActionResponse res, boolean refresh) {
+
+        if (refresh) {
+            final String username = usernameFinder.findUsername(req);
+            logger.debug("Clearing cached responses of service '{}' for user '{}'", getName(), username);
+            evictFromCache(getServiceUrls(req), new RequestCallbackImpl(req), username, createParameters(req));
+        }
+
+    }
+
+    @Override
+    public void refresh(HttpServletRequest request, HttpServletResponse response) {
+        final String username = usernameFinder.findUsername(request);
+        logger.debug("Clearing cached responses of service '{}' for user '{}'", getName(), username);
+        evictFromCache(getServiceUrls(), new RequestCallbackImpl(request), username, createParameters(request));
+    }
+
     @Override
     public NotificationResponse fetch(PortletRequest req) {
 
@@ -165,29 +227,142 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
     }
 
     private NotificationResponse fetchFromServiceUrls(List<String> serviceUrls,
-            RequestCallback requestCallback, String username, Map<String,String> params) {
+            RequestCallbackImpl requestCallback, String username, Map<String,String> params) {
 
-        NotificationResponse rslt = NotificationResponse.EMPTY_RESPONSE;  // default is empty
+        final NotificationResponseMerger merger = new NotificationResponseMerger();
 
         final RestTemplate template = getRestTemplate(); // May be overridden by subclasses
 
+        final List<RunnableFuture<NotificationResponse>> tasks = new ArrayList<>(serviceUrls.size());
         for (final String url : serviceUrls) {
-            logger.debug("Invoking uri '{}' with the following parameters:  {}", url, params);
+            tasks.add(new FutureTask<>(() ->
+                    invokeServiceUrl(template, url, requestCallback, username, params)));
+        }
+
+        /*
+         * The pool takes all URLs but the first;  then this thread works through the list,
+         * running any task the pool has not yet started.  (This service may itself be running
+         * on the pool, so we never just wait on tasks that are still in the queue.)
+         */
+        for (int i = 1; i < tasks.size(); i++) {
+            executorService.execute(tasks.get(i));
+        }
+        for (RunnableFuture<NotificationResponse> task : tasks) {
+            task.run();  // No-op if the task has already started
+        }
+
+        // Merge in the order of serviceUrls
+        for (RunnableFuture<NotificationResponse> task : tasks) {
             try {
-                final NotificationResponse response = template.execute(
-                        url, HttpMethod.GET,
-                        requestCallback, responseExtractor, params);
-                rslt = rslt.combine(response);
-            } catch (Exception e) {
-                final String msg = "Failed to invoke the following service at '"
-                        + url + "' for user " + username;
-                logger.error(msg, e);
-                rslt = prepareErrorResponse(getName(), "Service Unavailable");
+                merger.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for a service for user {}", username, e);
+                merger.add(prepareErrorResponse(getName(), "Service Unavailable"));
+            } catch (ExecutionException e) {
+                logger.error("Failed to invoke a service for user {}", username, e.getCause());
+                merger.add(prepareErrorResponse(getName(), "Service Unavailable"));
             }
         }
 
-        return rslt;
+        return merger.build();
+
+    }
+
+    private NotificationResponse invokeServiceUrl(RestTemplate template, String url,
+            RequestCallbackImpl requestCallback, String username, Map<String,String> params) {
+        logger.debug("Invoking uri '{}' with the following parameters:  {}", url, params);
+        try {
+            final URI uri = template.getUriTemplateHandler().expand(url, params);
+            return invokeWithCache(template, uri, requestCallback, username);
+        } catch (Exception e) {
+            final String msg = "Failed to invoke the following service at '"
+                    + url + "' for user " + username;
+            logger.error(msg, e);
+            return prepareErrorResponse(getName(), "Service Unavailable");
+        }
+    }
+
+    /**
+     * A <code>private</code> response is stored for the portal user alone;  any other response
+     * is shared (by users who have the same URL and credentials).
+     */
+    private NotificationResponse invokeWithCache(RestTemplate template, URI uri,
+            RequestCallbackImpl requestCallback, String username) {
+
+        final String sharedKey = createSharedCacheKey(requestCallback, uri);
+        final String userKey = createUserCacheKey(sharedKey, username);
+
+        Element m = responseCache.get(userKey);
+        if (m == null) {
+            m = responseCache.get(sharedKey);
+        }
+        final CachedServiceResponse cached = m != null ? (CachedServiceResponse) m.getObjectValue() : null;
 
+        final long now = System.currentTimeMillis();
+        if (cached != null && cached.isFresh(now)) {
+            logger.debug("Response cache HIT for uri '{}'", uri);
+            return cached.getResponse();
+        }
+
+        final long defaultMaxAgeMillis = defaultMaxAgeSeconds * 1000L;
+        final RequestCallback callback = httpReq -> {
+            requestCallback.doWithRequest(httpReq);
+            if (cached != null && cached.getEtag() != null) {
+                httpReq.getHeaders().setIfNoneMatch(cached.getEtag());
+            }
+        };
+        final ResponseExtractor<CachedServiceResponse> extractor = res -> {
+            if (cached != null && res.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                logger.debug("Response not modified for uri '{}'", uri);
+                return cached.revalidate(res.getHeaders(), now, defaultMaxAgeMillis);
+            }
+            final NotificationResponse response = responseExtractor.extractData(res);
+            return CachedServiceResponse.create(response, res.getHeaders(), now, defaultMaxAgeMillis);
+        };
+        final CachedServiceResponse rslt = template.execute(uri, HttpMethod.GET, callback, extractor);
+
+        final boolean storable = rslt.isStorable(now);
+        if (storable) {
+            final Element element = new Element(rslt.isPrivate() ? userKey : sharedKey, rslt);
+            if (rslt.getEtag() == null) {
+                // Nothing to revalidate with, so keep it only while it's fresh
+                element.setTimeToLive((int) Math.max(rslt.getFreshnessMillis(now) / 1000L, 1L));
+            }
+            responseCache.put(element);
+        }
+        // Copies the new response supersedes (e.g. a shared response that is now no-store or private)
+        if (!storable || rslt.isPrivate()) {
+            responseCache.remove(sharedKey);
+        }
+        if (!storable || !rslt.isPrivate()) {
+            responseCache.remove(userKey);
+        }
+        return rslt.getResponse();
+
+    }
+
+    /**
+     * Removes the responses (shared or private) that the specified user would receive from each of
+     * the specified URLs.
+     */
+    private void evictFromCache(List<String> serviceUrls, RequestCallbackImpl requestCallback,
+            String username, Map<String,String> params) {
+        final RestTemplate template = getRestTemplate(); // May be overridden by subclasses
+        for (String url : serviceUrls) {
+            final URI uri = template.getUriTemplateHandler().expand(url, params);
+            final String sharedKey = createSharedCacheKey(requestCallback, uri);
+            responseCache.remove(sharedKey);
+            responseCache.remove(createUserCacheKey(sharedKey, username));
+        }
+    }
+
+    private String createSharedCacheKey(RequestCallbackImpl requestCallback, URI uri) {
+        return getName() + "|" + requestCallback.getCredentialIdentity() + "|" + uri;
+    }
+
+    private String createUserCacheKey(String sharedKey, String username) {
+        return sharedKey + "|" + username;
     }
 
     /**
@@ -218,19 +393,17 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
      * Nested Types
      */
     
+    /**
+     * Credentials are evaluated up front, on the thread that serves the request, because the
+     * callback may run on a pool thread.  They also identify the cached responses this request may
+     * use.
+     */
     private /* non-static */ final class RequestCallbackImpl implements RequestCallback {
-        
-        private final Object request;
 
-        public RequestCallbackImpl(Object request) {
-            this.request = request;
-        }
-
-        @Override
-        public void doWithRequest(ClientHttpRequest httpReq) {
+        private final String username;
+        private final String password;
 
-            String username;
-            String password;
+        public RequestCallbackImpl(Object request) {
             if (PortletRequest.class.isInstance(request)) {
                 final PortletRequest portletReq = (PortletRequest) request;
                 username = usernameEvaluator != null ? usernameEvaluator.evaluate(portletReq) : null;
@@ -242,9 +415,21 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
             } else {
                 throw new IllegalStateException("The request is neither a PortletRequest nor an HttpServletRequest");
             }
+        }
+
+        /**
+         * The username and a digest of the password, or an empty string if the request is not
+         * authenticated.
+         */
+        public String getCredentialIdentity() {
+            return hasCredentials() ? username + ":" + DigestUtils.sha256Hex(password) : "";
+        }
+
+        @Override
+        public void doWithRequest(ClientHttpRequest httpReq) {
 
             // Perform BASIC AuthN if credentials are provided
-            if (!StringUtils.isBlank(username) && !StringUtils.isBlank(password)) {
+            if (hasCredentials()) {
 
                 logger.debug("Preparing ClientHttpRequest for user '{}' (password provided = true)", username);
 
@@ -254,6 +439,10 @@ public class RestfulJsonNotificationService extends AbstractNotificationService
             }
 
         }
+
+        private boolean hasCredentials() {
+            return !StringUtils.isBlank(username) && !StringUtils.isBlank(password);
+        }
         
     }
 
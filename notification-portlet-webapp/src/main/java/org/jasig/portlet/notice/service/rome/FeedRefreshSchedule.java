@@ -0,0 +1,140 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks the feeds {@link RomeNotificationService} knows about -- configured feeds, plus feeds
+ * that users have requested recently -- and when each of them may be refreshed in the
+ * background.  A feed that fails to load is retried after <code>retryMillis</code>, doubling with
+ * each consecutive failure up to <code>maxBackoffMillis</code>.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class FeedRefreshSchedule {
+
+    private final long retryMillis;
+    private final long maxBackoffMillis;
+    private final long idleMillis;
+
+    private final ConcurrentMap<String,FeedState> feeds = new ConcurrentHashMap<>();
+
+    /**
+     * @param retryMillis Delay before the first retry of a failing feed
+     * @param maxBackoffMillis Longest delay between retries of a failing feed
+     * @param idleMillis Feeds that are not configured are forgotten when no user has requested
+     * them for this long
+     */
+    /* package-private */ FeedRefreshSchedule(long retryMillis, long maxBackoffMillis, long idleMillis) {
+        this.retryMillis = retryMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Adds a feed that is refreshed for as long as the application runs.
+     */
+    /* package-private */ void addConfigured(String url) {
+        feeds.computeIfAbsent(url, k -> new FeedState(true, 0L));
+    }
+
+    /**
+     * Notes that a user has requested the feed.
+     */
+    /* package-private */ void requested(String url, long now) {
+        final FeedState state = feeds.computeIfAbsent(url, k -> new FeedState(false, now));
+        state.lastRequested = now;
+    }
+
+    /**
+     * Feeds that are neither backing off nor being refreshed at the moment.
+     */
+    /* package-private */ List<String> eligible(long now) {
+        final List<String> rslt = new ArrayList<>();
+        for (Map.Entry<String,FeedState> y : feeds.entrySet()) {
+            final FeedState state = y.getValue();
+            if (!state.configured && now - state.lastRequested > idleMillis) {
+                feeds.remove(y.getKey(), state);
+                continue;
+            }
+            if (now >= state.notBefore && !state.refreshing.get()) {
+                rslt.add(y.getKey());
+            }
+        }
+        return rslt;
+    }
+
+    /**
+     * Claims the feed for a refresh;  <code>false</code> means a refresh is already underway
+     * (or the feed has been forgotten).
+     */
+    /* package-private */ boolean start(String url) {
+        final FeedState state = feeds.get(url);
+        return state != null && state.refreshing.compareAndSet(false, true);
+    }
+
+    /**
+     * Releases the claim taken in {@link #start(String)} and records the outcome.
+     */
+    /* package-private */ void finish(String url, boolean success, long now) {
+        final FeedState state = feeds.get(url);
+        if (state == null) {
+            return;
+        }
+        if (success) {
+            state.failures = 0;
+            state.notBefore = 0L;
+        } else {
+            final int failures = ++state.failures;
+            final long backoff = retryMillis << Math.min(failures - 1, 30);
+            state.notBefore = now + Math.min(backoff, maxBackoffMillis);
+        }
+        state.refreshing.set(false);
+    }
+
+    /* package-private */ int size() {
+        return feeds.size();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static final class FeedState {
+
+        private final boolean configured;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+        private volatile long lastRequested;
+        private volatile int failures;  // Only written by the thread that holds 'refreshing'
+        private volatile long notBefore;
+
+        private FeedState(boolean configured, long lastRequested) {
+            this.configured = configured;
+            this.lastRequested = lastRequested;
+        }
+
+    }
+
+}
@@ -19,10 +19,21 @@
 package org.jasig.portlet.notice.service.rome;
 
 import java.io.IOException;
+import java.io.Serializable;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -31,6 +42,7 @@ import javax.portlet.ActionResponse;
 import javax.portlet.PortletPreferences;
 import javax.portlet.PortletRequest;
 import javax.servlet.http.HttpServletRequest;
+import javax.xml.stream.XMLStreamException;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
@@ -38,28 +50,52 @@ import net.sf.ehcache.Element;
 import org.apache.commons.lang3.StringUtils;
 import org.jasig.portlet.notice.NotificationAttribute;
 import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationError;
 import org.jasig.portlet.notice.NotificationResponse;
 import org.jasig.portlet.notice.service.AbstractNotificationService;
+import org.jasig.portlet.notice.util.SingleFlightLoader;
 import org.jasig.portlet.notice.util.UsernameFinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 
 import com.rometools.rome.feed.synd.SyndContent;
 import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.FeedException;
 import com.rometools.rome.io.SyndFeedInput;
 import com.rometools.rome.io.XmlReader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 
+/**
+ * Reads RSS/Atom feeds.  Feeds that are not in cache are fetched concurrently, with connect and
+ * read timeouts.  The ETag and Last-Modified validators of each feed are remembered (in
+ * <code>RomeNotificationService.validatorCache</code>, which outlives the feed cache) and sent
+ * back as a conditional request;  a <code>304 Not Modified</code> response re-uses the feed
+ * parsed previously.
+ *
+ * <p>Feeds are also refreshed in the background (scheduled on
+ * <code>notificationFeedRefreshScheduler</code>) shortly before they expire from the feed cache,
+ * so that user requests do not have to wait for them.  Configured feeds are always refreshed;
+ * feeds from portlet preferences are refreshed until no user has requested them for a day.  A
+ * failing feed is retried with exponential backoff.
+ *
+ * <p>With <code>RomeNotificationService.streamingParser=true</code>, feeds are read by
+ * {@link StaxFeedParser} instead of the ROME object model;  only the newest
+ * <code>maxEntries</code> items are kept, with bodies cut to <code>maxBodyLength</code>.
+ */
 public final class RomeNotificationService extends AbstractNotificationService {
 
     private static final String URLS_PREFERENCE = "RomeNotificationService.urls";
 
+    private static final long IDLE_FEED_MILLIS = TimeUnit.DAYS.toMillis(1L);
+
     private static final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
     private static DateFormat DATE_FORMAT = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+    private static final Object DATE_FORMAT_LOCK = new Object();
 
     @Autowired
     private MessageSource messages;
@@ -73,8 +109,48 @@ public final class RomeNotificationService extends AbstractNotificationService {
 
     private List<String> feedUrlsList = Collections.emptyList();
 
+    @Value("${RomeNotificationService.connectTimeoutMillis:5000}")
+    private int connectTimeoutMillis;
+
+    @Value("${RomeNotificationService.readTimeoutMillis:10000}")
+    private int readTimeoutMillis;
+
+    @Value("${RomeNotificationService.streamingParser:false}")
+    private boolean streamingParserEnabled;
+
+    @Value("${RomeNotificationService.maxEntries:100}")
+    private int maxEntries;
+
+    @Value("${RomeNotificationService.maxBodyLength:8192}")
+    private int maxBodyLength;
+
+    private StaxFeedParser streamingParser;  // Null means use the ROME object model
+
+    @Value("${RomeNotificationService.prewarmIntervalSeconds:60}")
+    private long prewarmIntervalSeconds;
+
+    @Value("${RomeNotificationService.prewarmLeadSeconds:120}")
+    private long prewarmLeadSeconds;
+
+    @Value("${RomeNotificationService.prewarmMaxBackoffMinutes:60}")
+    private long prewarmMaxBackoffMinutes;
+
+    @Autowired
+    @Qualifier("notificationServiceExecutor")
+    private ExecutorService executorService;
+
+    @Autowired
+    @Qualifier("notificationFeedRefreshScheduler")
+    private ScheduledExecutorService scheduler;
+
+    private FeedRefreshSchedule refreshSchedule;
+
     private Cache cache;
 
+    private Cache validatorCache;
+
+    private final SingleFlightLoader<String,NotificationCategory> feedLoader = new SingleFlightLoader<>();
+
     @Autowired
     private UsernameFinder usernameFinder;
 
@@ -85,16 +161,37 @@ public final class RomeNotificationService extends AbstractNotificationService {
         this.cache = cache;
     }
 
+    /**
+     * @since 4.9
+     */
+    @Resource(name="RomeNotificationService.validatorCache")
+    public void setValidatorCache(Cache validatorCache) {
+        this.validatorCache = validatorCache;
+    }
+
     @PostConstruct
     public void init() {
         final String dateFormatString = messages.getMessage("notice.date.format", null, locale);
         logger.info("locale: {}", locale);
         logger.info("date format: {}", dateFormatString);
         DATE_FORMAT = new SimpleDateFormat(dateFormatString);
+        if (streamingParserEnabled) {
+            streamingParser = new StaxFeedParser(maxEntries, maxBodyLength);
+        }
         if (!StringUtils.isEmpty(feedUrlsProperty)) {
             feedUrlsList =
                     Collections.unmodifiableList(Arrays.asList(feedUrlsProperty.split(",")));
         }
+        if (prewarmIntervalSeconds > 0) {
+            refreshSchedule = new FeedRefreshSchedule(
+                    TimeUnit.SECONDS.toMillis(prewarmIntervalSeconds),
+                    TimeUnit.MINUTES.toMillis(prewarmMaxBackoffMinutes),
+                    IDLE_FEED_MILLIS);
+            feedUrlsList.forEach(refreshSchedule::addConfigured);
+            scheduler.scheduleWithFixedDelay(this::prewarm, 0L, prewarmIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            logger.info("Background refresh of RSS/Atom feeds is disabled");
+        }
     }
 
     @Override
@@ -143,8 +240,17 @@ public final class RomeNotificationService extends AbstractNotificationService {
         final List<NotificationCategory> categories = new ArrayList<>();
         final List<NotificationError> errors = new ArrayList<>();
 
+        // One result per feed, in the order of feedUrls
+        final List<Future<NotificationCategory>> results = new ArrayList<>(feedUrls.size());
+        final List<RunnableFuture<NotificationCategory>> misses = new ArrayList<>();
+
+        final long now = System.currentTimeMillis();
         for (String item : feedUrls) {
 
+            if (refreshSchedule != null) {
+                refreshSchedule.requested(item, now);
+            }
+
             // It's okay to pull a response from cache, if we have one, since refresh happens in invoke()
             final Element m = cache.get(item);
             if (m != null) {
@@ -153,7 +259,7 @@ public final class RomeNotificationService extends AbstractNotificationService {
                     logger.debug("Feed cache HIT for url:  " + item);
                 }
                 final NotificationCategory category = (NotificationCategory) m.getObjectValue();
-                categories.add(category);
+                results.add(CompletableFuture.completedFuture(category));
             } else {
                 // ## CACHE MISS ##
                 if (logger.isDebugEnabled()) {
@@ -161,20 +267,37 @@ public final class RomeNotificationService extends AbstractNotificationService {
                     logger.debug("Checking the following feed URL for notifications for user '"
                             + username + "' -- " + item);
                 }
-                final NotificationCategory category = fetchFromSourceUrl(item);
-                if (category != null) {
-                    cache.put(new Element(item, category));
-                    categories.add(category);
-                } else {
-                    final NotificationError error = new NotificationError();
-                    error.setError("Service Unavailable");
-                    error.setSource(getName());
-                    errors.add(error);
-                }
+                final RunnableFuture<NotificationCategory> task = new FutureTask<>(() -> loadFeed(item));
+                results.add(task);
+                misses.add(task);
             }
 
         }
 
+        /*
+         * The pool takes all misses but the first;  then this thread works through the list,
+         * running any task the pool has not yet started.  (This service may itself be running
+         * on the pool, so we never just wait on tasks that are still in the queue.)
+         */
+        for (int i = 1; i < misses.size(); i++) {
+            executorService.execute(misses.get(i));
+        }
+        for (RunnableFuture<NotificationCategory> task : misses) {
+            task.run();  // No-op if the task has already started
+        }
+
+        for (Future<NotificationCategory> result : results) {
+            final NotificationCategory category = awaitCategory(result);
+            if (category != null) {
+                categories.add(category);
+            } else {
+                final NotificationError error = new NotificationError();
+                error.setError("Service Unavailable");
+                error.setSource(getName());
+                errors.add(error);
+            }
+        }
+
         final NotificationResponse rslt = new NotificationResponse();
         rslt.setCategories(categories);
         rslt.setErrors(errors);
@@ -182,93 +305,112 @@ public final class RomeNotificationService extends AbstractNotificationService {
 
     }
 
-    private NotificationCategory fetchFromSourceUrl(final String url) {
+    /**
+     * Fetches the feed and caches it.  Concurrent loads of the same feed (user requests and
+     * background refreshes alike) share a single request.
+     */
+    private NotificationCategory loadFeed(String url) {
+        return feedLoader.load(url, () -> {
+            final NotificationCategory rslt = fetchFromSourceUrl(url);
+            if (rslt != null) {
+                cache.put(new Element(url, rslt));
+            }
+            return rslt;
+        });
+    }
 
-        NotificationCategory rslt = null;  // default
+    /**
+     * Runs on the feed refresh scheduler;  hands each feed that is missing from the cache, or will
+     * expire within <code>prewarmLeadSeconds</code>, to the executor.
+     */
+    private void prewarm() {
+        try {
+            final long now = System.currentTimeMillis();
+            final long leadMillis = TimeUnit.SECONDS.toMillis(prewarmLeadSeconds);
+            int submitted = 0;
+            for (String url : refreshSchedule.eligible(now)) {
+                final Element m = cache.getQuiet(url);
+                if (m != null && m.getExpirationTime() - now > leadMillis) {
+                    continue;  // Not due yet
+                }
+                if (refreshSchedule.start(url)) {
+                    executorService.execute(() -> refreshFeed(url));
+                    ++submitted;
+                }
+            }
+            logger.debug("Submitted {} of {} known feed(s) for refresh", submitted, refreshSchedule.size());
+        } catch (RuntimeException e) {
+            // An exception would suppress subsequent executions
+            logger.error("Failed to schedule the refresh of RSS/Atom feeds", e);
+        }
+    }
 
-        XmlReader reader = null;
+    private void refreshFeed(String url) {
+        boolean success = false;
         try {
+            success = loadFeed(url) != null;
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh the feed:  {}", url, e);
+        } finally {
+            refreshSchedule.finish(url, success, System.currentTimeMillis());
+        }
+    }
 
-            final URL u = new URL(url);
+    private NotificationCategory awaitCategory(Future<NotificationCategory> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for a feed", e);
+        } catch (ExecutionException e) {
+            logger.error("Failed to fetch a feed", e.getCause());
+        }
+        return null;
+    }
 
-            reader = new XmlReader(u);
-            final SyndFeedInput input = new SyndFeedInput();
-            final SyndFeed feed = input.build(reader);
+    private NotificationCategory fetchFromSourceUrl(final String url) {
 
-            rslt = new NotificationCategory();
-            rslt.setTitle(feed.getTitle());
+        NotificationCategory rslt = null;  // default
 
-            final List<TimestampNotificationEntry> entries = new ArrayList<>();
+        XmlReader reader = null;
+        try {
 
-            @SuppressWarnings("unchecked")
-            final List<SyndEntry> list = feed.getEntries();
-            for (SyndEntry y : list) {
+            final Element v = validatorCache.get(url);
+            final FeedSnapshot previous = v != null ? (FeedSnapshot) v.getObjectValue() : null;
 
-                if (logger.isTraceEnabled()) {
-                    logger.trace("Processing SyndEntry:  \n" + y.toString());
-                }
+            final URLConnection conn = new URL(url).openConnection();
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
 
-                final long timestamp = y.getPublishedDate().getTime();
-                final TimestampNotificationEntry entry = new TimestampNotificationEntry(timestamp);
-
-                // Strongly-typed members
-                entry.setSource(feed.getAuthor());
-                entry.setTitle(y.getTitle());
-                entry.setUrl(y.getLink());
-                // No priority
-                // No due date
-                // No image
-
-                // Body
-                final StringBuilder body = new StringBuilder();
-                final SyndContent desc = y.getDescription();
-                if (desc != null) {
-                    // Prefer description
-                    body.append(desc.getValue());
-                }
-                if (body.length() == 0) {
-                    // Fall back to contents
-                    @SuppressWarnings("unchecked")
-                    final List<SyndContent> contents = y.getContents();
-                    for (SyndContent c : contents) {
-                        body.append(c.getValue());
+            String etag = null;
+            long lastModified = 0L;
+            if (conn instanceof HttpURLConnection) {
+                final HttpURLConnection http = (HttpURLConnection) conn;
+                if (previous != null) {
+                    if (previous.etag != null) {
+                        http.setRequestProperty("If-None-Match", previous.etag);
+                    }
+                    if (previous.lastModified > 0L) {
+                        http.setIfModifiedSince(previous.lastModified);
                     }
                 }
-                if (body.length() == 0) {
-                    // Last resort...
-                    final String noInfo = messages.getMessage("notice.noinfo", null, locale);
-                    body.append(noInfo);
-                }
-                entry.setBody(body.toString());
-
-                // Attributes -- TODO:  These labels should be internationalized in messages.properties
-                final List<NotificationAttribute> attributes = new ArrayList<>();
-                final String author = y.getAuthor();
-                if (StringUtils.isNotBlank(author)) {
-                    final String authorLabel = messages.getMessage("notice.author", null, locale);
-                    attributes.add(new NotificationAttribute(authorLabel, author));
-                }
-                final Date publishedDate = y.getPublishedDate();
-                if (publishedDate != null) {
-                    final String dateLabel = messages.getMessage("notice.date.published", null, locale);
-                    attributes.add(new NotificationAttribute(dateLabel, DATE_FORMAT.format(publishedDate)));
-                }
-                final Date updatededDate = y.getUpdatedDate();
-                if (updatededDate != null) {
-                    final String dateLabel = messages.getMessage("notice.date.updated", null, locale);
-                    attributes.add(new NotificationAttribute(dateLabel, DATE_FORMAT.format(updatededDate)));
+                if (previous != null && http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    logger.debug("Feed not modified since it was last read:  {}", url);
+                    http.disconnect();
+                    return previous.category;
                 }
-                entry.setAttributes(attributes);
-
-                entries.add(entry);
-
+                etag = http.getHeaderField("ETag");
+                lastModified = http.getLastModified();
+                reader = new XmlReader(http.getInputStream(), http.getContentType());
+            } else {
+                reader = new XmlReader(conn.getInputStream());
             }
 
-            // Items should be in reverse chronological order
-            Collections.sort(entries);
-            Collections.reverse(entries);
+            rslt = streamingParser != null ? parseStreaming(reader) : parseWithRome(reader);
 
-            rslt.setEntries(new ArrayList<>(entries));
+            if (etag != null || lastModified > 0L) {
+                validatorCache.put(new Element(url, new FeedSnapshot(etag, lastModified, rslt)));
+            }
 
         } catch (Exception e) {
             final String msg = "Unable to read the specified feed:  " + url;
@@ -288,4 +430,139 @@ public final class RomeNotificationService extends AbstractNotificationService {
 
     }
 
+    private NotificationCategory parseWithRome(XmlReader reader) throws FeedException {
+
+        final SyndFeedInput input = new SyndFeedInput();
+        final SyndFeed feed = input.build(reader);
+
+        final NotificationCategory rslt = new NotificationCategory();
+        rslt.setTitle(feed.getTitle());
+
+        final List<TimestampNotificationEntry> entries = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        final List<SyndEntry> list = feed.getEntries();
+        for (SyndEntry y : list) {
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Processing SyndEntry:  \n" + y.toString());
+            }
+
+            // Body
+            final StringBuilder body = new StringBuilder();
+            final SyndContent desc = y.getDescription();
+            if (desc != null) {
+                // Prefer description
+                body.append(desc.getValue());
+            }
+            if (body.length() == 0) {
+                // Fall back to contents
+                @SuppressWarnings("unchecked")
+                final List<SyndContent> contents = y.getContents();
+                for (SyndContent c : contents) {
+                    body.append(c.getValue());
+                }
+            }
+
+            final long timestamp = y.getPublishedDate().getTime();
+            entries.add(createEntry(timestamp, feed.getAuthor(), y.getTitle(), y.getLink(),
+                    body.toString(), y.getAuthor(), y.getPublishedDate(), y.getUpdatedDate()));
+
+        }
+
+        // Items should be in reverse chronological order
+        Collections.sort(entries);
+        Collections.reverse(entries);
+
+        rslt.setEntries(new ArrayList<>(entries));
+        return rslt;
+
+    }
+
+    private NotificationCategory parseStreaming(XmlReader reader) throws XMLStreamException {
+
+        final StaxFeedParser.Feed feed = streamingParser.parse(reader);
+
+        final NotificationCategory rslt = new NotificationCategory();
+        rslt.setTitle(feed.getTitle());
+
+        // Items are already newest first
+        final List<NotificationEntry> entries = new ArrayList<>(feed.getItems().size());
+        for (StaxFeedParser.Item y : feed.getItems()) {
+            entries.add(createEntry(y.getTimestamp(), feed.getAuthor(), y.getTitle(), y.getLink(),
+                    y.getBody(), y.getAuthor(), y.getPublishedDate(), y.getUpdatedDate()));
+        }
+
+        rslt.setEntries(entries);
+        return rslt;
+
+    }
+
+    private TimestampNotificationEntry createEntry(long timestamp, String source, String title,
+            String url, String body, String author, Date publishedDate, Date updatedDate) {
+
+        final TimestampNotificationEntry rslt = new TimestampNotificationEntry(timestamp);
+
+        // Strongly-typed members
+        rslt.setSource(source);
+        rslt.setTitle(title);
+        rslt.setUrl(url);
+        // No priority
+        // No due date
+        // No image
+
+        if (StringUtils.isEmpty(body)) {
+            // Last resort...
+            body = messages.getMessage("notice.noinfo", null, locale);
+        }
+        rslt.setBody(body);
+
+        // Attributes -- TODO:  These labels should be internationalized in messages.properties
+        final List<NotificationAttribute> attributes = new ArrayList<>();
+        if (StringUtils.isNotBlank(author)) {
+            final String authorLabel = messages.getMessage("notice.author", null, locale);
+            attributes.add(new NotificationAttribute(authorLabel, author));
+        }
+        if (publishedDate != null) {
+            final String dateLabel = messages.getMessage("notice.date.published", null, locale);
+            attributes.add(new NotificationAttribute(dateLabel, formatDate(publishedDate)));
+        }
+        if (updatedDate != null) {
+            final String dateLabel = messages.getMessage("notice.date.updated", null, locale);
+            attributes.add(new NotificationAttribute(dateLabel, formatDate(updatedDate)));
+        }
+        rslt.setAttributes(attributes);
+
+        return rslt;
+
+    }
+
+    /**
+     * DateFormat is not thread-safe, and feeds are parsed concurrently.
+     */
+    private static String formatDate(Date date) {
+        synchronized (DATE_FORMAT_LOCK) {
+            return DATE_FORMAT.format(date);
+        }
+    }
+
+    /**
+     * The validators a feed was served with, along with the category parsed from it.
+     */
+    private static final class FeedSnapshot implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String etag;
+        private final long lastModified;
+        private final NotificationCategory category;
+
+        private FeedSnapshot(String etag, long lastModified, NotificationCategory category) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.category = category;
+        }
+
+    }
+
 }
@@ -0,0 +1,451 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rome;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.rometools.rome.io.impl.DateParser;
+
+/**
+ * Reads RSS (0.9x, 1.0 and 2.0) and Atom feeds from StAX events, without building an object
+ * model of the whole feed.  Only the newest <code>maxEntries</code> items are retained, and each
+ * body is cut to <code>maxBodyLength</code> characters, so the memory needed for a feed is bounded
+ * however large the document.  Elements are matched by local name;  anything this class does not
+ * use is skipped.  As with ROME, Atom <code>xhtml</code> content keeps its markup.  DTDs are not
+ * processed, so documents that declare or reference entities are rejected.
+ *
+ * @since 4.9
+ */
+/* package-private */ final class StaxFeedParser {
+
+    private static final String ELLIPSIS = "\u2026";
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private static final Comparator<Item> OLDEST_FIRST = Comparator.comparingLong(Item::getTimestamp);
+
+    private final int maxEntries;
+    private final int maxBodyLength;
+
+    /* package-private */ StaxFeedParser(int maxEntries, int maxBodyLength) {
+        if (maxEntries < 1 || maxBodyLength < 1) {
+            throw new IllegalArgumentException("maxEntries and maxBodyLength must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    /* package-private */ Feed parse(Reader reader) throws XMLStreamException {
+
+        final XMLStreamReader xml = FACTORY.createXMLStreamReader(reader);
+        try {
+
+            String title = null;
+            String author = null;
+
+            // Min-heap on timestamp;  the oldest retained item goes first when a newer one arrives
+            final PriorityQueue<Item> newest = new PriorityQueue<>(maxEntries + 1, OLDEST_FIRST);
+
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (xml.getLocalName()) {
+                    case "item":
+                    case "entry":
+                        final Item item = readItem(xml);
+                        if (item != null) {
+                            newest.offer(item);
+                            if (newest.size() > maxEntries) {
+                                newest.poll();
+                            }
+                        }
+                        break;
+                    case "title":
+                        if (title == null) {
+                            title = readText(xml, Integer.MAX_VALUE);
+                        }
+                        break;
+                    case "author":
+                        if (author == null) {
+                            author = readAuthor(xml);
+                        }
+                        break;
+                    case "managingEditor":
+                    case "creator":
+                        if (author == null) {
+                            author = readText(xml, Integer.MAX_VALUE);
+                        }
+                        break;
+                    case "image":
+                    case "textinput":
+                    case "textInput":
+                        skipElement(xml);  // These have titles of their own
+                        break;
+                    default:
+                        // Descend into channel, feed, etc.
+                        break;
+                }
+            }
+
+            final List<Item> items = new ArrayList<>(newest);
+            items.sort(Collections.reverseOrder(OLDEST_FIRST));
+            return new Feed(title, author, items);
+
+        } finally {
+            xml.close();
+        }
+
+    }
+
+    /* package-private */ static final class Feed {
+
+        private final String title;
+        private final String author;
+        private final List<Item> items;
+
+        private Feed(String title, String author, List<Item> items) {
+            this.title = title;
+            this.author = author;
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        /**
+         * Newest first.
+         */
+        public List<Item> getItems() {
+            return items;
+        }
+
+    }
+
+    /* package-private */ static final class Item {
+
+        private final String title;
+        private final String link;
+        private final String author;
+        private final String body;
+        private final Date publishedDate;
+        private final Date updatedDate;
+
+        private Item(String title, String link, String author, String body,
+                Date publishedDate, Date updatedDate) {
+            this.title = title;
+            this.link = link;
+            this.author = author;
+            this.body = body;
+            this.publishedDate = publishedDate;
+            this.updatedDate = updatedDate;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getLink() {
+            return link;
+        }
+
+        public String getAuthor() {
+            return author;
+        }
+
+        /**
+         * The description (RSS) or summary (Atom), or else the content;  may be
+         * <code>null</code>.
+         */
+        public String getBody() {
+            return body;
+        }
+
+        public Date getPublishedDate() {
+            return publishedDate;
+        }
+
+        public Date getUpdatedDate() {
+            return updatedDate;
+        }
+
+        /**
+         * The published date, or else the updated date.
+         */
+        public long getTimestamp() {
+            return publishedDate != null ? publishedDate.getTime() : updatedDate.getTime();
+        }
+
+    }
+
+    /*
+     * Implementation
+     */
+
+    /**
+     * Reads an <code>item</code> or <code>entry</code> element;  returns <code>null</code> for
+     * an item that has neither a published nor an updated date.
+     */
+    private Item readItem(XMLStreamReader xml) throws XMLStreamException {
+
+        String title = null;
+        String link = null;
+        String author = null;
+        String description = null;
+        String content = null;
+        Date published = null;
+        Date updated = null;
+
+        while (xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            switch (xml.getLocalName()) {
+                case "title":
+                    title = readText(xml, Integer.MAX_VALUE);
+                    break;
+                case "link":
+                    final String href = xml.getAttributeValue(null, "href");
+                    if (href != null) {
+                        // Atom
+                        final String rel = xml.getAttributeValue(null, "rel");
+                        if (rel == null || "alternate".equals(rel)) {
+                            link = href;
+                        }
+                        skipElement(xml);
+                    } else {
+                        link = readText(xml, Integer.MAX_VALUE);
+                    }
+                    break;
+                case "author":
+                    author = readAuthor(xml);
+                    break;
+                case "creator":
+                    if (author == null) {
+                        author = readText(xml, Integer.MAX_VALUE);
+                    } else {
+                        skipElement(xml);
+                    }
+                    break;
+                case "pubDate":
+                case "published":
+                case "issued":
+                case "date":
+                    published = parseDate(readText(xml, Integer.MAX_VALUE));
+                    break;
+                case "updated":
+                case "modified":
+                    updated = parseDate(readText(xml, Integer.MAX_VALUE));
+                    break;
+                case "description":
+                case "summary":
+                    description = readBody(xml);
+                    break;
+                case "encoded":
+                case "content":
+                    content = readBody(xml);
+                    break;
+                default:
+                    skipElement(xml);
+                    break;
+            }
+        }
+
+        if (published == null && updated == null) {
+            return null;
+        }
+        final String body = description != null && !description.isEmpty() ? description : content;
+        return new Item(title, link, author, body, published, updated);
+
+    }
+
+    /**
+     * RSS has the author as text;  Atom has a person construct, of which we want the name.
+     */
+    private String readAuthor(XMLStreamReader xml) throws XMLStreamException {
+        String rslt = null;
+        final StringBuilder text = new StringBuilder();
+        while (xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("name".equals(xml.getLocalName())) {
+                    rslt = readText(xml, Integer.MAX_VALUE);
+                } else {
+                    skipElement(xml);
+                }
+            } else if (xml.hasText()) {
+                text.append(xml.getText());
+            }
+        }
+        return rslt != null ? rslt : text.toString().trim();
+    }
+
+    private String readBody(XMLStreamReader xml) throws XMLStreamException {
+        final String rslt = "xhtml".equals(xml.getAttributeValue(null, "type"))
+                ? readXhtml(xml, maxBodyLength)
+                : readText(xml, maxBodyLength);
+        if (rslt.length() <= maxBodyLength) {
+            return rslt;
+        }
+        // Don't leave half a tag at the end
+        String cut = rslt.substring(0, maxBodyLength);
+        final int lt = cut.lastIndexOf('<');
+        if (lt > cut.lastIndexOf('>')) {
+            cut = cut.substring(0, lt);
+        }
+        return cut + ELLIPSIS;
+    }
+
+    /**
+     * Reads the text within the current element, including that of any child elements, and
+     * leaves the reader on its end tag.  At most <code>limit + 1</code> characters are kept, so
+     * the caller can tell whether the text was longer than the limit.
+     */
+    private String readText(XMLStreamReader xml, int limit) throws XMLStreamException {
+        final StringBuilder rslt = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            } else if (xml.hasText() && rslt.length() <= limit) {
+                final long room = (long) limit + 1L - rslt.length();
+                final int length = (int) Math.min(xml.getTextLength(), room);
+                rslt.append(xml.getTextCharacters(), xml.getTextStart(), length);
+            }
+        }
+        return rslt.toString().trim();
+    }
+
+    /**
+     * Reads Atom <code>xhtml</code> content as markup -- without the <code>div</code> that
+     * contains it -- and leaves the reader on the end tag of the current element.  Like
+     * {@link #readText(XMLStreamReader, int)}, keeps at most <code>limit + 1</code> characters.
+     */
+    private String readXhtml(XMLStreamReader xml, int limit) throws XMLStreamException {
+        final StringBuilder rslt = new StringBuilder();
+        int depth = 1;
+        boolean startTagOpen = false;  // Closed with '>', or with ' />' if the element is empty
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            boolean emptyElement = false;
+            if (startTagOpen) {
+                emptyElement = event == XMLStreamConstants.END_ELEMENT;
+                append(rslt, emptyElement ? " />" : ">", limit);
+                startTagOpen = false;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final boolean wrapper = depth == 1 && "div".equals(xml.getLocalName());
+                ++depth;
+                if (!wrapper) {
+                    append(rslt, "<" + xml.getLocalName(), limit);
+                    for (int i = 0; i < xml.getAttributeCount(); i++) {
+                        append(rslt, " " + xml.getAttributeLocalName(i) + "=\""
+                                + escape(xml.getAttributeValue(i)) + "\"", limit);
+                    }
+                    startTagOpen = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                final boolean wrapper = depth == 2 && "div".equals(xml.getLocalName());
+                --depth;
+                if (depth > 0 && !wrapper && !emptyElement) {
+                    append(rslt, "</" + xml.getLocalName() + ">", limit);
+                }
+            } else if (xml.hasText()) {
+                append(rslt, escape(xml.getText()), limit);
+            }
+        }
+        return rslt.toString().trim();
+    }
+
+    private void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            final int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+    }
+
+    private static void append(StringBuilder sb, String text, int limit) {
+        if (sb.length() <= limit) {
+            sb.append(text, 0, (int) Math.min(text.length(), (long) limit + 1L - sb.length()));
+        }
+    }
+
+    private static String escape(String text) {
+        final StringBuilder rslt = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '&':
+                    rslt.append("&amp;");
+                    break;
+                case '<':
+                    rslt.append("&lt;");
+                    break;
+                case '>':
+                    rslt.append("&gt;");
+                    break;
+                case '"':
+                    rslt.append("&quot;");
+                    break;
+                default:
+                    rslt.append(c);
+                    break;
+            }
+        }
+        return rslt.toString();
+    }
+
+    private Date parseDate(String text) {
+        return text.isEmpty() ? null : DateParser.parseDate(text, Locale.US);
+    }
+
+}
@@ -18,7 +18,9 @@
  */
 package org.jasig.portlet.notice.util;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.jasig.portlet.notice.NotificationEntry;
 import org.jasig.portlet.notice.NotificationState;
@@ -28,6 +30,17 @@ public interface IJpaServices {
 
     List<EventDTO> getHistory(NotificationEntry entry, String username);
 
+    /**
+     * Set-based counterpart to {@link #getHistory(NotificationEntry, String)}.
+     * Provides the history of each entry, indexed by entry id, using a fixed
+     * number of queries regardless of how many entries there are.  Entries
+     * without an id are ignored;  entries without history map to an empty
+     * list.
+     *
+     * @since 4.9
+     */
+    Map<String,List<EventDTO>> getHistories(Collection<NotificationEntry> entries, String username);
+
     void applyState(NotificationEntry entry, String username, NotificationState state);
 
 }
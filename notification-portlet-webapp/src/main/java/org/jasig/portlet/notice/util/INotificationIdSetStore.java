@@ -0,0 +1,56 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.Collection;
+import java.util.Set;
+
+import javax.portlet.PortletRequest;
+
+/**
+ * Keeps named sets of notification ids for each user, such as the ids of the
+ * notifications the user has read or marked as favorite.  The set name is the
+ * name of the portlet preference where these ids were kept before 4.9, which
+ * allows implementations to migrate them.  Implementations are looked up as
+ * the <code>notificationIdSetStore</code> bean;  override that bean to plug in
+ * a different one.
+ *
+ * @since 4.9
+ */
+public interface INotificationIdSetStore {
+
+    /**
+     * The ids in the named set for the user who made the request.  The
+     * returned set is read-only and offers constant-time membership checks.
+     */
+    Set<String> getIds(PortletRequest req, String setName);
+
+    /**
+     * Adds the id to the named set if it is absent;  otherwise removes it.
+     *
+     * @return <code>true</code> if the set contains the id afterwards
+     */
+    boolean toggle(PortletRequest req, String setName, String id);
+
+    /**
+     * Removes the specified ids from the named set, where present.
+     */
+    void removeAll(PortletRequest req, String setName, Collection<String> ids);
+
+}
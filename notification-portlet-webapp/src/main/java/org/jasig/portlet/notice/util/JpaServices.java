@@ -20,9 +20,12 @@ package org.jasig.portlet.notice.util;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -109,6 +112,61 @@ public class JpaServices implements IJpaServices {
 
     }
 
+    /**
+     * Provides the known history of status changes for the specified user and
+     * each of the specified notifications <strong>in chronological
+     * order</strong>.  JPA-backed entries are resolved from their ids
+     * directly;  proxies for all the external entries are resolved together,
+     * and then the events for all of them are fetched together.
+     */
+    @Override
+    public Map<String,List<EventDTO>> getHistories(Collection<NotificationEntry> entries, String username) {
+
+        final Map<String,List<EventDTO>> rslt = new HashMap<>();
+
+        // JPA entry id -> NotificationEntry id
+        final Map<Long,String> jpaIds = new HashMap<>();
+        final Set<String> externalIds = new HashSet<>();
+        for (NotificationEntry entry : entries) {
+            if (StringUtils.isBlank(entry.getId())) {
+                continue;
+            }
+            rslt.put(entry.getId(), Collections.emptyList());  // default
+            if (contains(entry)) {
+                final String idString = entry.getId().substring(JpaNotificationService.ID_PREFIX.length());
+                try {
+                    jpaIds.put(Long.parseLong(idString), entry.getId());
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring JPA-backed entry with malformed id='{}'", entry.getId());
+                }
+            } else {
+                externalIds.add(entry.getId());
+            }
+        }
+
+        // Proxies for external entries (there can't be history if there isn't one yet)
+        if (!externalIds.isEmpty()) {
+            final Map<String,List<Long>> proxies = jpaNotificationRestService
+                    .getNotificationIdsBySourceAndCustomAttribute(PROXY_SOURCE_NAME, PROXY_ID_ATTRIBUTE, externalIds);
+            logger.debug("Search for JPA-backed proxies of {} external entries found {}",
+                    externalIds.size(), proxies.size());
+            proxies.forEach((externalId, proxyIds) -> {
+                if (proxyIds.size() > 1) {
+                    throw new IllegalStateException("More than one JPA-back entry exists for id=" + externalId);
+                }
+                jpaIds.put(proxyIds.get(0), externalId);
+            });
+        }
+
+        if (!jpaIds.isEmpty()) {
+            jpaNotificationRestService.getEventsByNotificationsAndUser(jpaIds.keySet(), username)
+                    .forEach((jpaId, events) -> rslt.put(jpaIds.get(jpaId), events));
+        }
+
+        return rslt;
+
+    }
+
     @Override
     public void applyState(NotificationEntry entry, String username, NotificationState state) {
 
@@ -37,16 +37,12 @@ public class NotificationResponseFlattener {
 
     public List<NotificationEntry> flatten(NotificationResponse response) {
 
-        // We will be modifying the entries to add the category since it will not be represented in the uncategorized list, so create a
-        // copy of the data if it is not already cloned.
-        final NotificationResponse clone = response.cloneIfNotCloned();
-
         // Combine all categories into one list and create a category list.  The category list will include categories that have no elements so
         // it can be used for a consistent filtering interface if the data source provides a full list.  (This is helpful for an interface such as
         // student jobs where you always want the user to see a consistent list of all the categories for a category filter).
         List<NotificationEntry> rslt = new ArrayList<>();
         final Set<String> categoryList = new HashSet<>();
-        for (final NotificationCategory notificationCategory : clone.getCategories()) {
+        for (final NotificationCategory notificationCategory : response.getCategories()) {
             categoryList.add(notificationCategory.getTitle());
             addAndCategorizeEntries(rslt, notificationCategory);
         }
@@ -61,18 +57,20 @@ public class NotificationResponseFlattener {
 
     /**
      * Add all entries from the notification category to the <code>allEntries</code> list after adding an attribute 'category' that contains
-     * the category.  That allows UIs that want the convenience of an uncategorized list, such as dataTables, to obtain the data in a simple
+     * the category.  Entries are copied (on write) since the response they come from may be shared.  That allows UIs that want the convenience of an uncategorized list, such as dataTables, to obtain the data in a simple
      * format that requires no additional processing but maintains the knowledge of the category of the entries.
      *
      * @param allEntries List of all entries
      * @param notificationCategory <code>NotificationCategory</code> to add its entries to the <code>allEntries</code> list
      */
     private void addAndCategorizeEntries(List<NotificationEntry> allEntries, NotificationCategory notificationCategory) {
+        final NotificationAttribute categoryAttribute = new NotificationAttribute("category", notificationCategory.getTitle());
         for (NotificationEntry entry : notificationCategory.getEntries()) {
+            final NotificationEntry copy = entry.shallowCopy();
             List<NotificationAttribute> attrs = new ArrayList<>(entry.getAttributes());
-            attrs.add(new NotificationAttribute("category", notificationCategory.getTitle()));
-            entry.setAttributes(attrs);
-            allEntries.add(entry);
+            attrs.add(categoryAttribute);
+            copy.setAttributes(attrs);
+            allEntries.add(copy);
         }
     }
 
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+
+/**
+ * The original {@link INotificationIdSetStore}:  each set is a multi-valued
+ * portlet preference that is read in full on every request and rewritten (and
+ * stored synchronously) on every change.  Suitable for users with few ids, or
+ * for portals where the database store is not wanted.
+ *
+ * @since 4.9
+ */
+public class PortletPreferencesNotificationIdSetStore implements INotificationIdSetStore {
+
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
+    @Override
+    public Set<String> getIds(PortletRequest req, String setName) {
+        final String[] ids = req.getPreferences().getValues(setName, EMPTY_STRING_ARRAY);
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(ids)));
+    }
+
+    @Override
+    public boolean toggle(PortletRequest req, String setName, String id) {
+        final Set<String> ids = new HashSet<>(getIds(req, setName));
+        final boolean rslt = ids.add(id) || !ids.remove(id);
+        store(req, setName, ids);
+        return rslt;
+    }
+
+    @Override
+    public void removeAll(PortletRequest req, String setName, Collection<String> ids) {
+        final Set<String> currentIds = new HashSet<>(getIds(req, setName));
+        if (currentIds.removeAll(ids)) {
+            store(req, setName, currentIds);
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    private void store(PortletRequest req, String setName, Set<String> ids) {
+        final PortletPreferences prefs = req.getPreferences();
+        try {
+            prefs.setValues(setName, ids.toArray(new String[ids.size()]));
+            prefs.store();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ensures that, for any given key, only one thread at a time performs an (expensive) load.  Threads
+ * that request the same key while a load is underway wait for that load and share its result
+ * (or its exception).  Typically used on a cache miss, with a loader that also populates the
+ * cache.
+ *
+ * @since 4.9
+ */
+public final class SingleFlightLoader<K,V> {
+
+    private final ConcurrentMap<K,CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loadedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    public V load(K key, Supplier<V> loader) {
+
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            // Somebody else is already on it
+            coalescedCount.increment();
+            return await(existing);
+        }
+
+        loadedCount.increment();
+        try {
+            final V rslt = loader.get();
+            future.complete(rslt);
+            return rslt;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+
+    }
+
+    /**
+     * Number of times a loader actually ran.
+     */
+    public long getLoadedCount() {
+        return loadedCount.sum();
+    }
+
+    /**
+     * Number of requests that were satisfied by another thread's load.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a load in progress", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Failed to load", cause);
+        }
+    }
+
+}
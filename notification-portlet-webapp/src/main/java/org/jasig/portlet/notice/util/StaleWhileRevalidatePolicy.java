@@ -0,0 +1,131 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds a <em>stale</em> phase to the lifecycle of Ehcache elements.  Elements created by this
+ * policy remain fresh for (a randomly shortened portion of) the <code>timeToLiveSeconds</code> of
+ * their cache, then stale for a further <code>staleSeconds</code>, after which Ehcache expires them
+ * normally.  Callers may serve a stale element immediately and {@link #revalidate(Object, Runnable)}
+ * it in the background.
+ *
+ * <p>Shortening each element's fresh lifetime by a random amount (up to
+ * <code>jitterPercent</code>) keeps elements that were cached together (e.g. after a mass login)
+ * from needing to be reloaded together.
+ *
+ * @since 4.9
+ */
+public class StaleWhileRevalidatePolicy {
+
+    private final Executor executor;
+    private final int staleSeconds;
+    private final int jitterPercent;
+
+    // Managed internally
+    private final Set<Object> revalidating = ConcurrentHashMap.newKeySet();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param executor Runs background revalidation;  it should reject tasks when it's saturated
+     * (rather than run them on the calling thread)
+     * @param staleSeconds How long an element may be served after it stops being fresh;  0 disables
+     * stale-while-revalidate
+     * @param jitterPercent Maximum percentage by which the fresh lifetime of an element is
+     * (randomly) shortened
+     */
+    public StaleWhileRevalidatePolicy(Executor executor, int staleSeconds, int jitterPercent) {
+        if (staleSeconds < 0) {
+            throw new IllegalArgumentException("staleSeconds may not be negative:  " + staleSeconds);
+        }
+        if (jitterPercent < 0 || jitterPercent > 100) {
+            throw new IllegalArgumentException("jitterPercent must be between 0 and 100:  " + jitterPercent);
+        }
+        this.executor = executor;
+        this.staleSeconds = staleSeconds;
+        this.jitterPercent = jitterPercent;
+    }
+
+    /**
+     * Creates an {@link Element} for the specified cache with a lifespan of (jittered)
+     * <code>timeToLiveSeconds</code> plus <code>staleSeconds</code>.  Elements for eternal caches
+     * are left alone.
+     */
+    public Element createElement(Cache cache, Object key, Object value) {
+        final Element rslt = new Element(key, value);
+        final long ttl = cache.getCacheConfiguration().getTimeToLiveSeconds();
+        if (ttl > 0L && !cache.getCacheConfiguration().isEternal()) {
+            final long maxJitter = ttl * jitterPercent / 100L;
+            final long jitter = maxJitter > 0L ? ThreadLocalRandom.current().nextLong(maxJitter + 1L) : 0L;
+            final long fresh = Math.max(ttl - jitter, 1L);
+            rslt.setTimeToLive((int) Math.min(fresh + staleSeconds, Integer.MAX_VALUE));
+        }
+        return rslt;
+    }
+
+    /**
+     * Indicates whether the specified element (created by this policy) is past its fresh lifetime.
+     * Elements that were not created by this policy are never stale.
+     */
+    public boolean isStale(Element element) {
+        if (!element.isLifespanSet() || element.isEternal()) {
+            return false;
+        }
+        final long freshMillis = (element.getTimeToLive() - staleSeconds) * 1000L;
+        return System.currentTimeMillis() - element.getCreationTime() > freshMillis;
+    }
+
+    /**
+     * Runs the specified reload in the background, unless a reload for the same key is already
+     * underway.  The reload <em>must not</em> depend on the current request, which may have ended by
+     * the time it runs.  If the executor rejects the reload, it's skipped;  a later request for the
+     * (still stale) element will try again.
+     */
+    public void revalidate(Object key, Runnable reload) {
+        if (!revalidating.add(key)) {
+            logger.debug("Revalidation already underway for {}", key);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    reload.run();
+                } catch (Exception e) {
+                    logger.warn("Failed to revalidate {};  the stale element remains in use", key, e);
+                } finally {
+                    revalidating.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(key);
+            logger.warn("Unable to schedule revalidation for {};  the executor is saturated", key);
+        }
+    }
+
+}
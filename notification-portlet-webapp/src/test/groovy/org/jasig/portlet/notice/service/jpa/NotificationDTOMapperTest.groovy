@@ -18,9 +18,6 @@
  */
 package org.jasig.portlet.notice.service.jpa;
 
-import org.dozer.DozerBeanMapper
-import org.dozer.config.BeanContainer
-import org.dozer.util.HibernateProxyResolver
 import org.hibernate.proxy.HibernateProxy
 import org.hibernate.proxy.LazyInitializer
 import org.jasig.portlet.notice.NotificationState
@@ -44,27 +41,14 @@ import java.sql.Timestamp
  */
 @RunWith(BlockJUnit4ClassRunner)
 public class NotificationDTOMapperTest extends GroovyTestCase {
-    private DozerBeanMapper mapper;
+    private NotificationDTOMapper mapper;
     private defaultCompareFn;
     private Timestamp now = new Timestamp(System.currentTimeMillis());
 
 
     @Before
     public void setUp() {
-        // technically, this is more of an integration test, but the test
-        // isn't as useful if I mock all this stuff, so bend the rules a bit
-        BeanContainer.getInstance().setProxyResolver(new HibernateProxyResolver());
-
-        def listener = new NotificationDTOMapperEventListener();
-        listener.setPostProcessorMap([
-            (JpaEntry.class): new JpaEntryPostProcessor()
-        ]);
-
-        mapper = new DozerBeanMapper(
-            mappingFiles: ['mapping/jpa-mappings.xml'],
-            eventListeners: [listener],
-            customFieldMapper: new LazyInitializationMapper()
-        );
+        mapper = new NotificationDTOMapper();
 
         defaultCompareFn = { obj1, obj2 -> return obj1.name == obj2.name; }
     }
@@ -96,7 +80,7 @@ public class NotificationDTOMapperTest extends GroovyTestCase {
             ]
         );
 
-        JpaEntry jpa = mapper.map(dto, JpaEntry.class);
+        JpaEntry jpa = mapper.toJpaEntry(dto);
         assertMatches(jpa, dto);
     }
 
@@ -113,7 +97,7 @@ public class NotificationDTOMapperTest extends GroovyTestCase {
             actions: createHibernateProxyCollection()
         );
 
-        JpaEntry jpa = mapper.map(dto, JpaEntry.class);
+        JpaEntry jpa = mapper.toJpaEntry(dto);
         assertMatches(jpa, dto);
     }
 
@@ -158,7 +142,7 @@ public class NotificationDTOMapperTest extends GroovyTestCase {
         jpa.setAddressees(new HashSet<JpaAddressee>(addressees));
         jpa.setActions(new HashSet<JpaAction>(actions));
 
-        EntryDTO dto = mapper.map(jpa, EntryDTO);
+        EntryDTO dto = mapper.toEntry(jpa);
         assertMatches(jpa, dto);
     }
 
@@ -0,0 +1,98 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.Collections;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DetachedHttpServletRequestTest {
+
+    @Test
+    public void testCopiesWhatServicesRead() {
+        final MockHttpServletRequest original = original();
+        final HttpServletRequest req = new DetachedHttpServletRequest(original).getRequest();
+
+        // Changes to the original after the copy is made are not seen
+        original.setParameter("read", "false");
+        original.removeHeader("Authorization");
+        original.removeAttribute("attr");
+        original.setCookies(new Cookie("flavor", "plain"));
+
+        assertEquals("alice", req.getRemoteUser());
+        assertEquals("alice", req.getUserPrincipal().getName());
+        assertEquals("Bearer token", req.getHeader("authorization"));
+        assertEquals(Collections.singletonList("Bearer token"), Collections.list(req.getHeaders("Authorization")));
+        assertNull(req.getHeader("X-Missing"));
+        assertEquals("true", req.getParameter("read"));
+        assertArrayEquals(new String[] { "a", "b" }, req.getParameterValues("letters"));
+        assertNull(req.getParameter("missing"));
+        assertEquals("value", req.getAttribute("attr"));
+        assertEquals("oatmeal", req.getCookies()[0].getValue());
+        assertEquals("/api/v2/notifications", req.getRequestURI());
+        assertEquals("GET", req.getMethod());
+        assertSame(original.getSession(false), req.getSession(false));
+
+        // Attributes set through the copy are shared by the services using it
+        req.setAttribute("shared", 1);
+        assertEquals(1, req.getAttribute("shared"));
+        assertNull(original.getAttribute("shared"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoSession() {
+        final MockHttpServletRequest original = original();
+        original.setSession(null);
+        new DetachedHttpServletRequest(original).getRequest().getSession();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupportedMethod() throws Exception {
+        new DetachedHttpServletRequest(original()).getRequest().getInputStream();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private MockHttpServletRequest original() {
+        final MockHttpServletRequest rslt = new MockHttpServletRequest("GET", "/api/v2/notifications");
+        rslt.setUserPrincipal(new TestingAuthenticationToken("alice", null));
+        rslt.setRemoteUser("alice");
+        rslt.addHeader("Authorization", "Bearer token");
+        rslt.setParameter("read", "true");
+        rslt.setParameter("letters", new String[] { "a", "b" });
+        rslt.setAttribute("attr", "value");
+        rslt.setCookies(new Cookie("flavor", "oatmeal"));
+        rslt.setSession(new MockHttpSession());
+        return rslt;
+    }
+
+}
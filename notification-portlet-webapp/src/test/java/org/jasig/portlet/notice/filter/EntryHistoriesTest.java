@@ -0,0 +1,126 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jasig.portlet.notice.INotificationEntryFilter;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.util.IJpaServices;
+import org.jasig.portlet.notice.util.UsernameFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The filters that need entry histories share one load per link of the chain.
+ */
+public class EntryHistoriesTest {
+
+    private static final String USERNAME = "student";
+
+    private IJpaServices jpaServices;
+    private List<INotificationEntryFilter> filters;
+
+    @Before
+    public void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(USERNAME, null));
+
+        final EventDTO read = new EventDTO();
+        read.setState(NotificationState.READ);
+        jpaServices = Mockito.mock(IJpaServices.class);
+        when(jpaServices.getHistories(any(Collection.class), eq(USERNAME)))
+                .thenReturn(Collections.singletonMap("read", Collections.singletonList(read)));
+
+        final ReadStateSupportFilter readStateSupportFilter = new ReadStateSupportFilter();
+        final ReadActionFilter readActionFilter = new ReadActionFilter();
+        for (Object filter : Arrays.asList(readStateSupportFilter, readActionFilter)) {
+            ReflectionTestUtils.setField(filter, "usernameFinder", new UsernameFinder());
+            ReflectionTestUtils.setField(filter, "jpaServices", jpaServices);
+        }
+        filters = Arrays.asList(readStateSupportFilter, readActionFilter);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testLoadedOncePerLink() {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        final NotificationResponse response = response();
+
+        final NotificationResponse rslt = new NotificationServiceFilterConfiguration.FusedEntryFilterChainImpl(
+                filters, request, () -> response).doFilter();
+
+        verify(jpaServices, times(1)).getHistories(any(Collection.class), eq(USERNAME));
+        final List<NotificationEntry> entries = rslt.getCategories().get(0).getEntries();
+        assertTrue(entries.get(0).getAttributes().contains(ReadStateSupportFilter.READ_ATTRIBUTE));
+        assertTrue(entries.get(1).getAttributes().contains(ReadStateSupportFilter.UNREAD_ATTRIBUTE));
+    }
+
+    @Test
+    public void testLoadedAgainForAnotherResponse() {
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+
+        new NotificationServiceFilterConfiguration.FusedEntryFilterChainImpl(
+                filters, request, EntryHistoriesTest::response).doFilter();
+        new NotificationServiceFilterConfiguration.FusedEntryFilterChainImpl(
+                filters, request, EntryHistoriesTest::response).doFilter();
+
+        verify(jpaServices, times(2)).getHistories(any(Collection.class), eq(USERNAME));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static NotificationResponse response() {
+        final NotificationEntry read = new NotificationEntry();
+        read.setId("read");
+        read.setTitle("Read");
+        final NotificationEntry unread = new NotificationEntry();
+        unread.setId("unread");
+        unread.setTitle("Unread");
+        return new NotificationResponse(
+                Collections.singletonList(new NotificationCategory("Category", Arrays.asList(read, unread))),
+                Collections.emptyList());
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import javax.portlet.ActionRequest;
+import javax.portlet.ActionResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jasig.portlet.notice.INotificationEntryFilter;
+import org.jasig.portlet.notice.INotificationServiceFilterChain;
+import org.jasig.portlet.notice.NotificationAction;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationError;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.action.acknowledge.AcknowledgeAction;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A fused link must produce the same response as the same filters applied one after another.
+ */
+public class FusedEntryFilterChainImplTest {
+
+    /**
+     * In the order they take effect.
+     */
+    private final List<INotificationEntryFilter> filters = Arrays.asList(
+            new AcknowledgePerSessionFilter(),
+            new UpperCaseTitleFilter(),
+            new NothingToDoFilter(),
+            new PriorityNotificationServiceFilter(),
+            new AddActionFilter(),
+            new ApiUrlSupportFilter());
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        final String[][] parameterSets = {
+                {},
+                { "ack", "false" },
+                { "ack", "true" },
+                { "minPriority", "2" },
+                { "ack", "false", "minPriority", "2" },
+                { "minPriority", "1", "maxPriority", "2" }  // Invalid;  removes everything
+        };
+        for (String[] parameters : parameterSets) {
+            final NotificationResponse response = response();
+            final MockHttpServletRequest request = request(response, parameters);
+            final String original = describe(response);
+
+            final String sequential = describe(sequential(request, response).doFilter());
+
+            final AtomicInteger calls = new AtomicInteger();
+            final String fused = describe(new NotificationServiceFilterConfiguration.FusedEntryFilterChainImpl(
+                    filters, request, () -> {
+                        calls.incrementAndGet();
+                        return response;
+                    }).doFilter());
+
+            final String label = Arrays.toString(parameters);
+            assertEquals(label, sequential, fused);
+            assertEquals(label, 1, calls.get());
+            // Copy-on-write:  the response from the next link is unchanged
+            assertEquals(label, original, describe(response));
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    private INotificationServiceFilterChain sequential(HttpServletRequest request, NotificationResponse response) {
+        INotificationServiceFilterChain rslt = () -> response;
+        for (INotificationEntryFilter filter : filters) {
+            final INotificationServiceFilterChain nextLink = rslt;
+            rslt = () -> filter.doFilter(request, nextLink);
+        }
+        return rslt;
+    }
+
+    private static NotificationResponse response() {
+        final List<NotificationEntry> first = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            first.add(entry("first" + i, i % 4, i % 2 == 0));
+        }
+        final List<NotificationEntry> second = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            second.add(entry("second" + i, i, i == 1));
+        }
+        return new NotificationResponse(
+                Arrays.asList(new NotificationCategory("First", first), new NotificationCategory("Second", second)),
+                Collections.singletonList(new NotificationError("Service Unavailable", "other")));
+    }
+
+    private static NotificationEntry entry(String id, int priority, boolean acknowledgeable) {
+        final NotificationEntry rslt = new NotificationEntry();
+        rslt.setId(id);
+        rslt.setSource("test");
+        rslt.setTitle("Title of " + id);
+        rslt.setPriority(priority);
+        if (acknowledgeable) {
+            rslt.setAvailableActions(Collections.singletonList(new AcknowledgeAction()));
+        }
+        return rslt;
+    }
+
+    /**
+     * Acknowledges the first acknowledgeable entry of each category in the session.
+     */
+    private static MockHttpServletRequest request(NotificationResponse response, String... parameters)
+            throws Exception {
+        final MockHttpServletRequest rslt = new MockHttpServletRequest("GET", "/NotificationPortlet/api/v2/notifications");
+        rslt.setContextPath("/NotificationPortlet");
+        rslt.setSession(new MockHttpSession());
+        for (int i = 0; i < parameters.length; i += 2) {
+            rslt.setParameter(parameters[i], parameters[i + 1]);
+        }
+        for (NotificationCategory category : response.getCategories()) {
+            for (NotificationEntry entry : category.getEntries()) {
+                if (!entry.getAvailableActions().isEmpty()) {
+                    entry.getAvailableActions().get(0).invoke(rslt, new MockHttpServletResponse());
+                    break;
+                }
+            }
+        }
+        return rslt;
+    }
+
+    private static String describe(NotificationResponse response) {
+        final StringBuilder rslt = new StringBuilder();
+        for (NotificationCategory category : response.getCategories()) {
+            rslt.append(category.getTitle()).append(":\n");
+            for (NotificationEntry entry : category.getEntries()) {
+                rslt.append("  ").append(entry.getId())
+                        .append(" '").append(entry.getTitle()).append("'")
+                        .append(" priority=").append(entry.getPriority());
+                for (NotificationAction action : entry.getAvailableActions()) {
+                    rslt.append(" [").append(action.getId())
+                            .append(" target=").append(action.getTarget().getId())
+                            .append(" apiUrl=").append(action.getApiUrl()).append("]");
+                }
+                rslt.append("\n");
+            }
+        }
+        response.getErrors().forEach(error -> rslt.append("error:  ").append(error.getError()).append("\n"));
+        return rslt.toString();
+    }
+
+    /**
+     * Looks up what it needs in bulk, from the response it is given.
+     */
+    private static final class UpperCaseTitleFilter extends AbstractNotificationEntryFilter {
+
+        private UpperCaseTitleFilter() {
+            super(ORDER_NORMAL);
+        }
+
+        @Override
+        public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request,
+                NotificationResponse response) {
+            final Map<String,String> titles = new HashMap<>();
+            response.getCategories().forEach(category -> category.getEntries()
+                    .forEach(entry -> titles.put(entry.getId(), entry.getTitle().toUpperCase())));
+            return entry -> {
+                final NotificationEntry rslt = entry.shallowCopy();
+                rslt.setTitle(titles.get(entry.getId()));
+                return rslt;
+            };
+        }
+
+    }
+
+    private static final class NothingToDoFilter extends AbstractNotificationEntryFilter {
+
+        private NothingToDoFilter() {
+            super(ORDER_NORMAL);
+        }
+
+        @Override
+        public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request,
+                NotificationResponse response) {
+            return null;
+        }
+
+    }
+
+    /**
+     * Adds an action, as filters before {@link ApiUrlSupportFilter} commonly do.
+     */
+    private static final class AddActionFilter extends AbstractNotificationEntryFilter {
+
+        private AddActionFilter() {
+            super(ORDER_LATE);
+        }
+
+        @Override
+        public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request,
+                NotificationResponse response) {
+            return entry -> {
+                final NotificationEntry rslt = entry.shallowCopy();
+                final List<NotificationAction> actions = new ArrayList<>(rslt.getAvailableActions());
+                actions.add(new TestAction());
+                rslt.setAvailableActions(actions);
+                return rslt;
+            };
+        }
+
+    }
+
+    private static final class TestAction extends NotificationAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void invoke(ActionRequest req, ActionResponse res) {
+            // Not used
+        }
+
+        @Override
+        public void invoke(HttpServletRequest request, HttpServletResponse response) {
+            // Not used
+        }
+
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import javax.portlet.PortletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.service.AbstractNotificationService;
+import org.jasig.portlet.notice.util.UsernameFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the response cache of the notification repository and its concurrent invocation of services.
+ */
+public class NotificationRepositoryImplTest {
+
+    private final CountingService service = new CountingService(request -> {});
+    private final SessionTitleFilter sessionFilter = new SessionTitleFilter();
+
+    private CacheManager cacheManager;
+    private Cache responseCache;
+    private ExecutorService executorService;
+    private NotificationServiceFilterConfiguration.NotificationRepositoryImpl repository;
+
+    @Before
+    public void setUp() {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        responseCache = new Cache("NotificationRepository.responseCache", 100, false, false, 300, 0);
+        cacheManager.addCache(responseCache);
+        executorService = Executors.newFixedThreadPool(2);
+        repository = repository(service, 10000L);
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+        executorService.shutdownNow();
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testHit() {
+        final NotificationResponse first = repository.fetch(request("alice", "s1", "true"));
+        final NotificationResponse second = repository.fetch(request("alice", "s2", "true"));
+        assertEquals(1, service.fetches.get());
+
+        // Request-specific filters are applied to each request, not cached
+        assertEquals("s1", title(first));
+        assertEquals("s2", title(second));
+    }
+
+    @Test
+    public void testMiss() {
+        repository.fetch(request("alice", "s1", "true"));
+        repository.fetch(request("alice", "s1", "false"));
+        assertEquals(2, service.fetches.get());
+
+        repository.fetch(request("bob", "s3", "true"));
+        assertEquals(3, service.fetches.get());
+
+        repository.fetch(request("alice", "s1", "true"));
+        repository.fetch(request("bob", "s3", "true"));
+        assertEquals(3, service.fetches.get());
+    }
+
+    @Test
+    public void testRefresh() {
+        repository.fetch(request("alice", "s1", null));
+        repository.fetch(request("bob", "s2", null));
+        assertEquals(2, service.fetches.get());
+
+        repository.refresh(request("alice", "s1", null), new MockHttpServletResponse());
+        repository.fetch(request("alice", "s1", null));
+        assertEquals(3, service.fetches.get());
+
+        // Only the responses of the user who refreshed are cleared
+        repository.fetch(request("bob", "s2", null));
+        assertEquals(3, service.fetches.get());
+    }
+
+    @Test
+    public void testRequestContext() {
+        final AtomicReference<String> read = new AtomicReference<>();
+        final NotificationServiceFilterConfiguration.NotificationRepositoryImpl repo = repository(
+                new CountingService(request -> read.set(((ServletRequestAttributes) RequestContextHolder
+                        .getRequestAttributes()).getRequest().getParameter("read"))), 10000L);
+
+        final MockHttpServletRequest request = request("alice", "s1", "true");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        repo.fetch(request);
+        assertEquals("true", read.get());
+
+        // The attributes of this thread are intact
+        assertSame(request, ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest());
+    }
+
+    @Test
+    public void testAbandonedService() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<String> read = new AtomicReference<>();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final NotificationServiceFilterConfiguration.NotificationRepositoryImpl repo = repository(
+                new CountingService(request -> {
+                    try {
+                        Thread.sleep(500L);
+                    } catch (InterruptedException e) {
+                        // Ignored, like a service blocked in I/O would
+                    }
+                    try {
+                        read.set(request.getParameter(ReadStateSupportFilter.READ_PARAMETER_NAME));
+                    } catch (RuntimeException e) {
+                        failure.set(e);
+                    }
+                    done.countDown();
+                }), 50L);
+
+        final MockHttpServletRequest request = request("alice", "s1", "true");
+        final NotificationResponse response = repo.fetch(request);
+        assertEquals(1, response.getErrors().size());
+
+        // The container reuses the request;  the service still sees its own copy
+        request.setParameter(ReadStateSupportFilter.READ_PARAMETER_NAME, "false");
+        assertTrue(done.await(5L, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals("true", read.get());
+    }
+
+    @Test
+    public void testSaturatedExecutor() throws Exception {
+        final ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        final CountDownLatch unblock = new CountDownLatch(1);
+        try {
+            saturated.execute(() -> {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            final NotificationServiceFilterConfiguration.NotificationRepositoryImpl repo =
+                    repository(service, saturated, 10000L);
+
+            // The service is reported as unavailable, not run by the calling thread
+            final long start = System.currentTimeMillis();
+            final NotificationResponse response = repo.fetch(request("alice", "s1", "true"));
+            assertTrue(System.currentTimeMillis() - start < 5000L);
+            assertEquals(1, response.getErrors().size());
+            assertEquals(0, service.fetches.get());
+        } finally {
+            unblock.countDown();
+            saturated.shutdownNow();
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    private NotificationServiceFilterConfiguration.NotificationRepositoryImpl repository(
+            CountingService service, long serviceTimeoutMillis) {
+        return repository(service, executorService, serviceTimeoutMillis);
+    }
+
+    private NotificationServiceFilterConfiguration.NotificationRepositoryImpl repository(
+            CountingService service, ExecutorService executorService, long serviceTimeoutMillis) {
+        return new NotificationServiceFilterConfiguration.NotificationRepositoryImpl(
+                Collections.singletonList(sessionFilter), Collections.singleton(service),
+                new UsernameFinder(), executorService, serviceTimeoutMillis, responseCache);
+    }
+
+    private MockHttpServletRequest request(String username, String sessionId, String read) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(username, null));
+        final MockHttpServletRequest rslt = new MockHttpServletRequest();
+        rslt.setSession(new MockHttpSession(null, sessionId));
+        if (read != null) {
+            rslt.setParameter(ReadStateSupportFilter.READ_PARAMETER_NAME, read);
+        }
+        return rslt;
+    }
+
+    private static String title(NotificationResponse response) {
+        return response.getCategories().get(0).getEntries().get(0).getTitle();
+    }
+
+    private static final class CountingService extends AbstractNotificationService {
+
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final Consumer<HttpServletRequest> onFetch;
+
+        private CountingService(Consumer<HttpServletRequest> onFetch) {
+            this.onFetch = onFetch;
+        }
+
+        @Override
+        public NotificationResponse fetch(PortletRequest req) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NotificationResponse fetch(HttpServletRequest request) {
+            fetches.incrementAndGet();
+            onFetch.accept(request);
+            final NotificationEntry entry = new NotificationEntry();
+            entry.setId("1");
+            entry.setTitle("Untitled");
+            final List<NotificationEntry> entries = new ArrayList<>();
+            entries.add(entry);
+            final NotificationCategory category = new NotificationCategory("Category", entries);
+            return new NotificationResponse(Collections.singletonList(category), Collections.emptyList());
+        }
+
+    }
+
+    /**
+     * Titles entries after the session, like filters that bake session details into the entries.
+     */
+    private static final class SessionTitleFilter extends AbstractNotificationEntryFilter {
+
+        private SessionTitleFilter() {
+            super(AbstractNotificationServiceFilter.ORDER_NORMAL);
+        }
+
+        @Override
+        public UnaryOperator<NotificationEntry> prepareEntryFilter(HttpServletRequest request, NotificationResponse response) {
+            final String sessionId = request.getSession(true).getId();
+            return entry -> {
+                final NotificationEntry rslt = entry.shallowCopy();
+                rslt.setTitle(sessionId);
+                return rslt;
+            };
+        }
+
+        @Override
+        public boolean isRequestSpecific() {
+            return true;
+        }
+
+    }
+
+}
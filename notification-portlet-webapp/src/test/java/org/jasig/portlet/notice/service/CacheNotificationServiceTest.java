@@ -0,0 +1,165 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.portlet.PortletRequest;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import org.jasig.portlet.notice.NotificationCategory;
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.util.StaleWhileRevalidatePolicy;
+import org.jasig.portlet.notice.util.UsernameFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.portlet.MockResourceRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the stale-while-revalidate behavior of the response cache.
+ */
+public class CacheNotificationServiceTest {
+
+    private static final int STALE_SECONDS = 60;
+
+    private final CountingService service = new CountingService();
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private CacheManager cacheManager;
+    private CacheNotificationService cacheNotificationService;
+
+    @Before
+    public void setUp() {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        final Cache cache = new Cache("notificationResponseCache", 100, false, false, 1, 0);
+        cacheManager.addCache(cache);
+
+        cacheNotificationService = new CacheNotificationService();
+        cacheNotificationService.setName("cacheNotificationService");
+        cacheNotificationService.setApplicationContext(new StaticApplicationContext());
+        cacheNotificationService.setUseDiscoverable("false");
+        cacheNotificationService.setEmbeddedServices(Collections.singletonList(service));
+        cacheNotificationService.setCache(cache);
+        cacheNotificationService.setCachePolicy(new StaleWhileRevalidatePolicy(tasks::add, STALE_SECONDS, 0));
+        ReflectionTestUtils.setField(cacheNotificationService, "usernameFinder", new UsernameFinder());
+        cacheNotificationService.init();
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testStaleHitIsServedAtOnce() throws Exception {
+        final MockResourceRequest req = request();
+        assertEquals("1", title(cacheNotificationService.fetch(req)));
+        assertEquals("1", title(cacheNotificationService.fetch(req)));
+        assertEquals(1, service.fetches.get());
+
+        // Stale responses are returned without waiting for the service
+        Thread.sleep(1100L);
+        assertEquals("1", title(cacheNotificationService.fetch(req)));
+        assertEquals(1, service.fetches.get());
+        assertEquals(1, tasks.size());
+
+        // Only one revalidation at a time
+        cacheNotificationService.fetch(req);
+        assertEquals(1, tasks.size());
+
+        // The revalidated response replaces the stale one
+        tasks.remove(0).run();
+        assertEquals(2, service.fetches.get());
+        assertEquals("2", title(cacheNotificationService.fetch(req)));
+        assertEquals(2, service.fetches.get());
+    }
+
+    @Test
+    public void testRevalidationDiscardsPreferences() throws Exception {
+        final MockResourceRequest req = request();
+        cacheNotificationService.fetch(req);
+        assertEquals("1", req.getPreferences().getValue("lastFetch", null));
+
+        Thread.sleep(1100L);
+        cacheNotificationService.fetch(req);
+        tasks.remove(0).run();
+        assertEquals(2, service.fetches.get());
+
+        // The request was over before the background fetch stored anything
+        assertEquals("1", req.getPreferences().getValue("lastFetch", null));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private MockResourceRequest request() {
+        final MockResourceRequest rslt = new MockResourceRequest();
+        rslt.setRemoteUser("alice");
+        return rslt;
+    }
+
+    private static String title(NotificationResponse response) {
+        return response.getCategories().get(0).getEntries().get(0).getTitle();
+    }
+
+    /**
+     * Titles its entry after the number of times it has been fetched, which it also stores in the
+     * preferences.
+     */
+    private static final class CountingService extends AbstractNotificationService {
+
+        private final AtomicInteger fetches = new AtomicInteger();
+
+        private CountingService() {
+            setName("countingService");
+        }
+
+        @Override
+        public NotificationResponse fetch(PortletRequest req) {
+            final String count = Integer.toString(fetches.incrementAndGet());
+            try {
+                req.getPreferences().setValue("lastFetch", count);
+                req.getPreferences().store();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            final NotificationEntry entry = new NotificationEntry();
+            entry.setId("1");
+            entry.setTitle(count);
+            final List<NotificationEntry> entries = new ArrayList<>();
+            entries.add(entry);
+            final NotificationCategory category = new NotificationCategory("Category", entries);
+            return new NotificationResponse(Collections.singletonList(category), Collections.emptyList());
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.PortletRequest;
+
+import org.junit.Test;
+import org.springframework.mock.web.portlet.MockPortletPreferences;
+import org.springframework.mock.web.portlet.MockResourceRequest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetachedPortletRequestTest {
+
+    @Test
+    public void testCopiesWhatServicesRead() throws Exception {
+        final MockResourceRequest original = original();
+        final DetachedPortletRequest detached = new DetachedPortletRequest(original,
+                new HashSet<>(Arrays.asList("staff", "student")));
+        final PortletRequest req = detached.getRequest();
+
+        // Changes to the original after the copy is made are not seen
+        original.getPreferences().setValue("color", "green");
+        original.setParameter("read", "false");
+        original.removeAttribute("attr");
+
+        assertEquals("alice", req.getRemoteUser());
+        assertEquals(original.getWindowID(), req.getWindowID());
+        assertEquals("red", req.getPreferences().getValue("color", null));
+        assertArrayEquals(new String[] { "a", "b" }, req.getPreferences().getValues("letters", null));
+        assertEquals("true", req.getParameter("read"));
+        assertNull(req.getParameter("missing"));
+        assertEquals("value", req.getAttribute("attr"));
+        assertTrue(req.isUserInRole("staff"));
+        assertFalse(req.isUserInRole("student"));
+
+        // Attributes set through the copy are shared by the services using it
+        req.setAttribute("shared", 1);
+        assertEquals(1, detached.getRequest().getAttribute("shared"));
+        assertNull(original.getAttribute("shared"));
+    }
+
+    @Test
+    public void testStoredPreferences() throws Exception {
+        final MockResourceRequest original = original();
+        final DetachedPortletRequest detached = new DetachedPortletRequest(original, new HashSet<>());
+        final PortletPreferences prefs = detached.getRequest().getPreferences();
+
+        prefs.setValue("color", "blue");
+        prefs.reset("letters");
+        assertEquals("blue", prefs.getValue("color", null));
+        assertNull(prefs.getValues("letters", null));
+        prefs.store();
+        prefs.setValue("unstored", "true");
+
+        // Nothing reaches the original until the caller stores it
+        assertEquals("red", original.getPreferences().getValue("color", null));
+        detached.release();
+        detached.storePreferences(original);
+        assertEquals("blue", original.getPreferences().getValue("color", null));
+        assertNull(original.getPreferences().getValues("letters", null));
+        assertNull(original.getPreferences().getValue("unstored", null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPreferencesInRenderPhase() throws Exception {
+        final MockResourceRequest original = original();
+        original.setAttribute(PortletRequest.LIFECYCLE_PHASE, PortletRequest.RENDER_PHASE);
+        final PortletPreferences prefs = new DetachedPortletRequest(original, new HashSet<>()).getRequest().getPreferences();
+        prefs.setValue("color", "blue");
+        prefs.store();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPreferencesAfterRelease() throws Exception {
+        final DetachedPortletRequest detached = new DetachedPortletRequest(original(), new HashSet<>());
+        final PortletPreferences prefs = detached.getRequest().getPreferences();
+        detached.release();
+        prefs.setValue("color", "blue");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUnsupportedMethod() throws Exception {
+        new DetachedPortletRequest(original(), new HashSet<>()).getRequest().getPortletSession();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testUndefinedRole() throws Exception {
+        new DetachedPortletRequest(original(), new HashSet<>()).getRequest().isUserInRole("staff");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleased() throws Exception {
+        final DetachedPortletRequest detached = new DetachedPortletRequest(original(), new HashSet<>());
+        detached.release();
+        detached.getRequest().getRemoteUser();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private MockResourceRequest original() throws Exception {
+        final MockPortletPreferences preferences = new MockPortletPreferences();
+        preferences.setValue("color", "red");
+        preferences.setValues("letters", new String[] { "a", "b" });
+
+        final MockResourceRequest rslt = new MockResourceRequest();
+        rslt.setRemoteUser("alice");
+        rslt.setPreferences(preferences);
+        rslt.setParameter("read", "true");
+        rslt.setAttribute("attr", "value");
+        rslt.addUserRole("staff");
+        return rslt;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.jasig.portlet.notice.NotificationState.COMPLETED;
+import static org.jasig.portlet.notice.NotificationState.IN_PROGRESS;
+import static org.jasig.portlet.notice.NotificationState.ISSUED;
+import static org.jasig.portlet.notice.NotificationState.READ;
+import static org.jasig.portlet.notice.NotificationState.SNOOZED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays interleaved histories before and after they are compacted into state snapshots.  The
+ * readers of the transaction log must reach the same conclusions either way.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class JpaEventCompactionTest {
+
+    private static final long MILLIS_IN_ONE_MINUTE = 60L * 1000L;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    // Whole seconds, 30 days ago (before any retention period)
+    private final long base = (System.currentTimeMillis() / 1000L) * 1000L - 30L * 24L * 60L * MILLIS_IN_ONE_MINUTE;
+
+    @Test
+    public void testReplayIsUnchangedByCompaction() {
+        final long entryId = restService.createNotification(
+                JpaNotificationRESTServiceTest.entry("compacted", "alice", "bob")).getId();
+
+        final List<JpaEvent> alice = events(entryId, "alice", 0,
+                ISSUED, READ, SNOOZED, IN_PROGRESS, ISSUED, READ, COMPLETED, SNOOZED, IN_PROGRESS, READ);
+        final List<JpaEvent> bob = events(entryId, "bob", 0,
+                ISSUED, SNOOZED, ISSUED, COMPLETED, SNOOZED, IN_PROGRESS, SNOOZED, ISSUED);
+        final List<JpaEvent> all = new ArrayList<>(alice);
+        all.addAll(bob);
+        notificationDao.createEvents(all);
+
+        assertReplay(alice, notificationDao.getEvents(entryId, "alice"));
+        assertReplay(bob, notificationDao.getEvents(entryId, "bob"));
+        assertEquals(all.size(), restService.getEventsByNotification(entryId).size());
+
+        // Fold everything
+        notificationDao.compactEvents(new Timestamp(base + 60L * MILLIS_IN_ONE_MINUTE), Integer.MAX_VALUE);
+        notificationDao.clear();
+
+        final List<JpaEvent> compacted = notificationDao.getEvents(entryId, "alice");
+        assertTrue(compacted.stream().allMatch(event -> event.getId() == 0L));
+        assertReplay(alice, compacted);
+        assertReplay(bob, notificationDao.getEvents(entryId, "bob"));
+        assertReplay(alice, notificationDao.getEvents(Collections.singleton(entryId), "alice").get(entryId));
+
+        // The audit endpoint lists stored events only
+        assertTrue(restService.getEventsByNotification(entryId).isEmpty());
+
+        // Fold later events into the existing snapshots;  recent events are not compacted
+        final List<JpaEvent> more = events(entryId, "alice", 20, SNOOZED, ISSUED, COMPLETED);
+        final JpaEvent recent = new JpaEvent();
+        recent.setEntry(notificationDao.getEntry(entryId));
+        recent.setUsername("alice");
+        recent.setState(SNOOZED);
+        recent.setTimestamp(new Timestamp((System.currentTimeMillis() / 1000L) * 1000L));
+        final List<JpaEvent> batch = new ArrayList<>(more);
+        batch.add(recent);
+        notificationDao.createEvents(batch);
+        alice.addAll(batch);
+
+        notificationDao.compactEvents(new Timestamp(base + 60L * MILLIS_IN_ONE_MINUTE), Integer.MAX_VALUE);
+        notificationDao.clear();
+
+        assertReplay(alice, notificationDao.getEvents(entryId, "alice"));
+        assertReplay(bob, notificationDao.getEvents(entryId, "bob"));
+
+        final List<EventDTO> stored = restService.getEventsByNotification(entryId);
+        assertEquals(1, stored.size());
+        assertTrue(stored.get(0).getId() != 0L);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private List<JpaEvent> events(long entryId, String username, int startMinute, NotificationState... states) {
+        final JpaEntry entry = notificationDao.getEntry(entryId);
+        final List<JpaEvent> rslt = new ArrayList<>();
+        for (int i = 0; i < states.length; i++) {
+            final JpaEvent event = new JpaEvent();
+            event.setEntry(entry);
+            event.setUsername(username);
+            event.setState(states[i]);
+            event.setTimestamp(new Timestamp(base + (startMinute + i) * MILLIS_IN_ONE_MINUTE));
+            rslt.add(event);
+        }
+        return rslt;
+    }
+
+    /**
+     * Compares what the readers of the log derive from a history:  the active states (and when
+     * they were applied), the last SNOOZED and ISSUED events (snooze), and whether the entry was
+     * ever READ.
+     */
+    private void assertReplay(List<JpaEvent> expected, List<JpaEvent> actual) {
+        assertEquals(toMillis(JpaNotificationService.prepareStates(expected)),
+                toMillis(JpaNotificationService.prepareStates(actual)));
+        assertEquals(last(expected, SNOOZED), last(actual, SNOOZED));
+        assertEquals(last(expected, ISSUED), last(actual, ISSUED));
+        assertEquals(last(expected, READ) != null, last(actual, READ) != null);
+    }
+
+    private static Map<NotificationState,Long> toMillis(Map<NotificationState,Date> states) {
+        final Map<NotificationState,Long> rslt = new HashMap<>();
+        states.forEach((state, date) -> rslt.put(state, date.getTime()));
+        return rslt;
+    }
+
+    private static Long last(List<JpaEvent> history, NotificationState state) {
+        Long rslt = null;
+        for (JpaEvent event : history) {
+            if (event.getState() == state) {
+                rslt = event.getTimestamp().getTime();
+            }
+        }
+        return rslt;
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.portlet.PortletRequest;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.portlet.MockActionRequest;
+import org.springframework.mock.web.portlet.MockPortletPreferences;
+import org.springframework.mock.web.portlet.MockRenderRequest;
+import org.springframework.mock.web.portlet.MockResourceRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JpaNotificationIdSetStoreTest {
+
+    private static final String SET_NAME = "readNotices";
+
+    private CacheManager cacheManager;
+    private Cache cache;
+    private INotificationDao notificationDao;
+    private JpaNotificationIdSetStore store;
+
+    @Before
+    public void setUp() {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        cache = new Cache("JpaNotificationIdSetStore.cache", 100, false, false, 60, 0);
+        cacheManager.addCache(cache);
+
+        notificationDao = mock(INotificationDao.class);
+        when(notificationDao.getIdSet(anyString(), anyString())).thenAnswer(invocation -> new HashSet<>());
+
+        store = new JpaNotificationIdSetStore();
+        store.setCache(cache);
+        ReflectionTestUtils.setField(store, "notificationDao", notificationDao);
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testToggleCoalescing() {
+        final PortletRequest req = request(new MockActionRequest());
+        assertTrue(store.toggle(req, SET_NAME, "1"));
+        assertFalse(store.toggle(req, SET_NAME, "1"));
+        assertTrue(store.toggle(req, SET_NAME, "1"));
+        assertTrue(store.toggle(req, SET_NAME, "2"));
+        assertFalse(store.toggle(req, SET_NAME, "2"));
+        assertEquals(Collections.singleton("1"), store.getIds(req, SET_NAME));
+
+        store.flush();
+        final Map<JpaIdSetMember.Key,Boolean> expected = new HashMap<>();
+        expected.put(new JpaIdSetMember.Key("alice", SET_NAME, "1"), true);
+        expected.put(new JpaIdSetMember.Key("alice", SET_NAME, "2"), false);
+        verify(notificationDao).updateIdSets(expected);
+
+        // Nothing left to write
+        store.flush();
+        verify(notificationDao, times(1)).updateIdSets(anyMapOf(JpaIdSetMember.Key.class, Boolean.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushRetry() {
+        doThrow(new RuntimeException("Database unavailable"))
+                .doNothing()
+                .when(notificationDao).updateIdSets(anyMapOf(JpaIdSetMember.Key.class, Boolean.class));
+
+        final PortletRequest req = request(new MockActionRequest());
+        store.toggle(req, SET_NAME, "1");
+        store.flush();  // Fails
+
+        store.toggle(req, SET_NAME, "2");
+        store.flush();  // Writes both
+
+        final ArgumentCaptor<Map> batches = ArgumentCaptor.forClass(Map.class);
+        verify(notificationDao, times(2)).updateIdSets(batches.capture());
+        assertEquals(1, batches.getAllValues().get(0).size());
+        assertEquals(2, batches.getAllValues().get(1).size());
+
+        store.flush();
+        verify(notificationDao, times(2)).updateIdSets(anyMapOf(JpaIdSetMember.Key.class, Boolean.class));
+    }
+
+    @Test
+    public void testFlushDuringLoad() {
+        final PortletRequest req = request(new MockActionRequest());
+        store.toggle(req, SET_NAME, "1");
+        cache.removeAll();
+
+        // The change is written after the set was read, but before the load looks for pending changes
+        when(notificationDao.getIdSet(anyString(), anyString())).thenAnswer(invocation -> {
+            store.flush();
+            return new HashSet<>();
+        });
+        assertEquals(Collections.singleton("1"), store.getIds(req, SET_NAME));
+    }
+
+    @Test
+    public void testMigration() throws Exception {
+        final MockPortletPreferences prefs = new MockPortletPreferences();
+        prefs.setValues(SET_NAME, new String[] { "a", "b", "c" });
+
+        // The render phase can't clear the preference, so nothing moves (or is removed from it)
+        final MockRenderRequest render = new MockRenderRequest();
+        render.setRemoteUser("alice");
+        final MockPortletPreferences renderPrefs = new RenderPreferences();
+        renderPrefs.setValues(SET_NAME, new String[] { "a", "b", "c" });
+        render.setPreferences(renderPrefs);
+        store.removeAll(render, SET_NAME, Collections.singleton("a"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), store.getIds(render, SET_NAME));
+        assertArrayEquals(new String[] { "a", "b", "c" }, render.getPreferences().getValues(SET_NAME, null));
+        verify(notificationDao, never()).updateIdSets(anyMapOf(JpaIdSetMember.Key.class, Boolean.class));
+
+        // Removing in a resource request migrates first, then removes from the union
+        final MockResourceRequest resource = new MockResourceRequest();
+        resource.setRemoteUser("alice");
+        resource.setPreferences(prefs);
+        store.removeAll(resource, SET_NAME, Collections.singleton("a"));
+        assertEquals(0, prefs.getValues(SET_NAME, new String[0]).length);
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), store.getIds(resource, SET_NAME));
+
+        // Later migrations have nothing to bring back
+        store.toggle(request(new MockActionRequest()), SET_NAME, "d");
+        assertEquals(new HashSet<>(Arrays.asList("b", "c", "d")), store.getIds(resource, SET_NAME));
+
+        store.flush();
+        final Map<JpaIdSetMember.Key,Boolean> migrated = new HashMap<>();
+        migrated.put(new JpaIdSetMember.Key("alice", SET_NAME, "a"), true);
+        migrated.put(new JpaIdSetMember.Key("alice", SET_NAME, "b"), true);
+        migrated.put(new JpaIdSetMember.Key("alice", SET_NAME, "c"), true);
+        verify(notificationDao).updateIdSets(migrated);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static PortletRequest request(MockActionRequest rslt) {
+        rslt.setRemoteUser("alice");
+        return rslt;
+    }
+
+    /**
+     * Preferences of the render phase, which may not be stored.
+     */
+    private static final class RenderPreferences extends MockPortletPreferences {
+
+        @Override
+        public void store() {
+            throw new IllegalStateException("Render phase");
+        }
+
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.ActionDTO;
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.AttributeDTO;
+import org.jasig.portlet.notice.rest.BulkCreateResultDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link JpaNotificationRESTService} against the embedded database.  Each test runs in a
+ * transaction that is rolled back;  the persistence context is cleared after writing, so reads
+ * load entries (and their LAZY collections) from the database.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class JpaNotificationRESTServiceTest {
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Autowired
+    private INotificationDao notificationDao;
+
+    @Test
+    public void testGetNotificationCarriesCollections() {
+        final long id = restService.createNotification(entry("one", "alice", "bob")).getId();
+        notificationDao.clear();
+
+        assertCollections(restService.getNotification(id, false), "alice", "bob");
+        notificationDao.clear();
+        assertCollections(restService.getNotification(id, true), "alice", "bob");
+    }
+
+    @Test
+    public void testListsCarryCollections() {
+        final long first = restService.createNotification(entry("one", "alice")).getId();
+        restService.createNotification(entry("two", "bob"));
+        notificationDao.clear();
+
+        final List<EntryDTO> page = restService.getNotificationsAfter(first - 1L, 10);
+        assertEquals(2, page.size());
+        assertCollections(page.get(0), "alice");
+        assertCollections(page.get(1), "bob");
+        notificationDao.clear();
+
+        final List<EntryDTO> all = restService.getNotifications(null, null);
+        all.stream().filter(dto -> dto.getId() >= first).forEach(dto -> {
+            assertEquals(1, dto.getAttributes().size());
+            assertEquals(1, dto.getActions().size());
+        });
+        notificationDao.clear();
+
+        final List<EntryDTO> streamed = new ArrayList<>();
+        restService.forEachNotification(streamed::add);
+        final EntryDTO streamedFirst = streamed.stream()
+                .filter(dto -> dto.getId() == first).findFirst().orElse(null);
+        assertNotNull(streamedFirst);
+        assertCollections(streamedFirst, "alice");
+    }
+
+    @Test
+    public void testBulkCreate() {
+        final BulkCreateResultDTO result = restService.createNotifications(Arrays.asList(
+                entry("one", "alice", "bob"), entry("two", "carol")));
+        assertEquals(2, result.getNotificationIds().size());
+        assertEquals(3L, result.getEventCount());  // ISSUED to each individual recipient
+        notificationDao.clear();
+
+        assertCollections(restService.getNotification(result.getNotificationIds().get(0), false), "alice", "bob");
+        assertCollections(restService.getNotification(result.getNotificationIds().get(1), false), "carol");
+        assertEquals(Collections.singletonList(NotificationState.ISSUED),
+                restService.getEventsByNotificationAndUser(result.getNotificationIds().get(0), "bob").stream()
+                        .map(EventDTO::getState)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testBulkCreateAcrossBatches() {
+        // More entries than are inserted between flushes
+        final int count = 250;
+        final List<EntryDTO> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(entry("batched" + i, "reader" + i));
+        }
+        final BulkCreateResultDTO result = restService.createNotifications(entries);
+        assertEquals(count, result.getNotificationIds().size());
+        assertEquals(count, result.getEventCount());
+        notificationDao.clear();
+
+        for (int i : new int[] { 0, 99, 100, count - 1 }) {
+            final long id = result.getNotificationIds().get(i);
+            assertEquals("batched" + i, restService.getNotification(id, false).getTitle());
+            assertCollections(restService.getNotification(id, false), "reader" + i);
+            assertEquals(1, restService.getEventsByNotificationAndUser(id, "reader" + i).size());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)  // The service's own transaction must roll back
+    public void testBulkCreateIsAtomic() {
+        final String title = "atomic-" + System.nanoTime();
+        final EntryDTO invalid = entry(title + "-invalid", "bob");
+        invalid.setId(5L);  // Not allowed when creating
+        try {
+            restService.createNotifications(Arrays.asList(entry(title, "alice"), invalid));
+            fail("The invalid notification was accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        // Nothing was created, not even the valid notification that came first
+        assertTrue(restService.getNotifications(null, null).stream()
+                .noneMatch(dto -> dto.getTitle().startsWith(title)));
+    }
+
+    @Test
+    public void testCreateEventsAcrossFlushInterval() {
+        final long entryId = restService.createNotification(entry("viewed")).getId();
+        notificationDao.clear();
+
+        // More events than are written between flushes, by users who are not recipients
+        final int count = 1200;
+        final JpaEntry jpaEntry = notificationDao.getEntry(entryId);
+        final List<JpaEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final JpaEvent event = new JpaEvent();
+            event.setEntry(jpaEntry);
+            event.setUsername("viewer" + i);
+            event.setState(NotificationState.READ);
+            event.setTimestamp(new Timestamp(System.currentTimeMillis()));
+            events.add(event);
+        }
+        assertEquals(count, notificationDao.createEvents(events));
+
+        assertEquals(count, notificationDao.getEvents(entryId).size());
+        // Inbox rows for users before and after the flush
+        for (int i : new int[] { 0, 999, 1000, count - 1 }) {
+            final Set<Long> inbox = notificationDao.getEntriesByRecipient("viewer" + i).stream()
+                    .map(JpaEntry::getId)
+                    .collect(Collectors.toSet());
+            assertEquals("viewer" + i, Collections.singleton(entryId), inbox);
+        }
+    }
+
+    /*
+     * Implementation
+     */
+
+    /* package-private */ static EntryDTO entry(String title, String... usernames) {
+        final AttributeDTO attribute = new AttributeDTO();
+        attribute.setName("color");
+        attribute.setValues(Arrays.asList("red", "blue"));
+
+        final ActionDTO action = new ActionDTO();
+        action.setLabel("Hide");
+        action.setClazz("org.jasig.portlet.notice.action.hide.HideAction");
+
+        final Set<RecipientDTO> recipients = new HashSet<>();
+        for (String username : usernames) {
+            final RecipientDTO recipient = new RecipientDTO();
+            recipient.setUsername(username);
+            recipients.add(recipient);
+        }
+        final AddresseeDTO addressee = new AddresseeDTO();
+        addressee.setName(title + " recipients");
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setRecipients(recipients);
+
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setTitle(title);
+        rslt.setSource("test");
+        rslt.setPriority(1);
+        rslt.setBody("Body of " + title);
+        rslt.setAttributes(Collections.singleton(attribute));
+        rslt.setActions(Collections.singleton(action));
+        rslt.setAddressees(Collections.singleton(addressee));
+        return rslt;
+    }
+
+    private void assertCollections(EntryDTO dto, String... usernames) {
+        assertNotNull(dto);
+
+        assertEquals(1, dto.getAttributes().size());
+        final AttributeDTO attribute = dto.getAttributes().iterator().next();
+        assertEquals("color", attribute.getName());
+        assertEquals(new HashSet<>(Arrays.asList("red", "blue")), new HashSet<>(attribute.getValues()));
+
+        assertEquals(1, dto.getActions().size());
+        assertEquals("Hide", dto.getActions().iterator().next().getLabel());
+
+        assertEquals(1, dto.getAddressees().size());
+        final Set<String> recipients = dto.getAddressees().iterator().next().getRecipients().stream()
+                .map(RecipientDTO::getUsername)
+                .collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList(usernames)), recipients);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.jpa;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.RecipientType;
+
+/**
+ * Measures the throughput of {@link NotificationDTOMapper} for the payloads
+ * behind <code>GET /api/v1/notifications</code> (entries) and
+ * <code>GET /api/v1/notifications/{id}/events</code> (events).  This is not a
+ * unit test;  run it with <code>./gradlew :notification-portlet-webapp:dtoMapperBenchmark</code>.
+ *
+ * @since 4.9
+ */
+public class NotificationDTOMapperBenchmark {
+
+    private static final int ENTRIES = 500;
+    private static final int EVENTS = 5000;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+
+    public static void main(String[] args) {
+        final NotificationDTOMapper mapper = new NotificationDTOMapper();
+        final List<JpaEntry> entries = createEntries();
+        final List<JpaEvent> events = createEvents(entries.get(0));
+
+        run("toEntryList (" + ENTRIES + " entries)", ENTRIES, () -> mapper.toEntryList(entries));
+        run("toEventList (" + EVENTS + " events)", EVENTS, () -> mapper.toEventList(events));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static void run(String label, int itemsPerRound, Supplier<List<?>> operation) {
+        long sink = 0L;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += operation.get().size();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += operation.get().size();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final double itemsPerSecond = (double) itemsPerRound * MEASURED_ROUNDS / elapsed * 1_000_000_000D;
+        final double microsPerRound = elapsed / 1_000D / MEASURED_ROUNDS;
+        System.out.println(String.format("%-32s %,14.0f items/s %,12.1f us/round (sink=%d)",
+                label, itemsPerSecond, microsPerRound, sink));
+    }
+
+    private static List<JpaEntry> createEntries() {
+        final List<JpaEntry> rslt = new ArrayList<>(ENTRIES);
+        for (int i = 1; i <= ENTRIES; i++) {
+            final JpaEntry entry = new JpaEntry();
+            entry.setId(i);
+            entry.setTitle("Notification " + i);
+            entry.setSource("benchmark");
+            entry.setUrl("https://example.org/notifications/" + i);
+            entry.setLinkText("Details");
+            entry.setPriority(1 + i % 5);
+            entry.setDueDate(new Timestamp(System.currentTimeMillis()));
+            entry.setBody("Body of notification " + i);
+
+            for (int a = 0; a < 3; a++) {
+                final JpaAttribute attribute = new JpaAttribute();
+                attribute.setId(i * 10L + a);
+                attribute.setName("attribute" + a);
+                attribute.setValues(Arrays.asList("value1", "value2"));
+                attribute.setEntry(entry);
+                entry.addAttribute(attribute);
+            }
+
+            final JpaAction action = new JpaAction();
+            action.setId(i);
+            action.setLabel("Mark as read");
+            action.setClazz("org.jasig.portlet.notice.action.read.MarkAsReadAndRedirectAction");
+            action.setEntry(entry);
+            entry.addAction(action);
+
+            final JpaAddressee addressee = new JpaAddressee();
+            addressee.setId(i);
+            addressee.setName("Everyone");
+            addressee.setType(RecipientType.GROUP);
+            addressee.setEntry(entry);
+            final JpaRecipient recipient = new JpaRecipient();
+            recipient.setId(i);
+            recipient.setUsername("everyone");
+            recipient.setAddressee(addressee);
+            addressee.addRecipient(recipient);
+            entry.addAddressee(addressee);
+
+            rslt.add(entry);
+        }
+        return rslt;
+    }
+
+    private static List<JpaEvent> createEvents(JpaEntry entry) {
+        final NotificationState[] states = NotificationState.values();
+        final List<JpaEvent> rslt = new ArrayList<>(EVENTS);
+        for (int i = 1; i <= EVENTS; i++) {
+            final JpaEvent event = new JpaEvent();
+            event.setId(i);
+            event.setEntry(entry);
+            event.setUsername("user" + i % 100);
+            event.setState(states[i % states.length]);
+            event.setTimestamp(new Timestamp(System.currentTimeMillis()));
+            rslt.add(event);
+        }
+        return rslt;
+    }
+
+}
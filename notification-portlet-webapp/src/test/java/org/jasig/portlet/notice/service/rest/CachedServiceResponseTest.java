@@ -0,0 +1,167 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rest;
+
+import java.util.Collections;
+
+import org.jasig.portlet.notice.NotificationError;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachedServiceResponseTest {
+
+    private static final long NOW = 1700000000000L;  // Whole seconds, like HTTP dates
+    private static final long DEFAULT_MAX_AGE_MILLIS = 300000L;
+
+    private final NotificationResponse response = new NotificationResponse();
+
+    @Test
+    public void testDefaultMaxAge() {
+        final CachedServiceResponse cached = create(new HttpHeaders());
+        assertEquals(DEFAULT_MAX_AGE_MILLIS, cached.getFreshnessMillis(NOW));
+        assertTrue(cached.isFresh(NOW + DEFAULT_MAX_AGE_MILLIS - 1L));
+        assertFalse(cached.isFresh(NOW + DEFAULT_MAX_AGE_MILLIS));
+        assertTrue(cached.isStorable(NOW));
+        assertFalse(cached.isPrivate());
+        assertSame(response, cached.getResponse());
+    }
+
+    @Test
+    public void testMaxAge() {
+        final CachedServiceResponse cached = create(cacheControl("public, max-age=60"));
+        assertEquals(60000L, cached.getFreshnessMillis(NOW));
+        assertTrue(cached.isStorable(NOW));
+
+        // Wins over Expires
+        final HttpHeaders headers = cacheControl("max-age=60");
+        headers.setExpires(NOW + 3600000L);
+        assertEquals(60000L, create(headers).getFreshnessMillis(NOW));
+
+        // Unreadable values count as stale
+        assertFalse(create(cacheControl("max-age=soon")).isFresh(NOW));
+    }
+
+    @Test
+    public void testNoStore() {
+        final CachedServiceResponse cached = create(cacheControl("max-age=60, no-store"));
+        assertTrue(cached.isFresh(NOW));
+        assertFalse(cached.isStorable(NOW));
+
+        final HttpHeaders headers = cacheControl("No-Store");
+        headers.setETag("\"v1\"");
+        assertFalse(create(headers).isStorable(NOW));
+    }
+
+    @Test
+    public void testNoCache() {
+        // Must be revalidated before every use, whatever max-age says
+        for (String cacheControl : new String[] { "no-cache, max-age=60", "max-age=60, no-cache" }) {
+            final CachedServiceResponse cached = create(cacheControl(cacheControl));
+            assertFalse(cacheControl, cached.isFresh(NOW));
+            assertFalse(cacheControl, cached.isStorable(NOW));  // Nothing to revalidate with
+        }
+
+        final HttpHeaders headers = cacheControl("no-cache");
+        headers.setETag("\"v1\"");
+        final CachedServiceResponse cached = create(headers);
+        assertFalse(cached.isFresh(NOW));
+        assertTrue(cached.isStorable(NOW));
+        assertEquals("\"v1\"", cached.getEtag());
+    }
+
+    @Test
+    public void testPrivate() {
+        final CachedServiceResponse cached = create(cacheControl("private, max-age=60"));
+        assertTrue(cached.isPrivate());
+        assertTrue(cached.isStorable(NOW));
+        assertFalse(create(cacheControl("public, max-age=60")).isPrivate());
+    }
+
+    @Test
+    public void testExpires() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setExpires(NOW + 30000L);
+        final CachedServiceResponse cached = create(headers);
+        assertEquals(30000L, cached.getFreshnessMillis(NOW));
+
+        // Already expired
+        final HttpHeaders zero = new HttpHeaders();
+        zero.set(HttpHeaders.EXPIRES, "0");
+        final CachedServiceResponse expired = create(zero);
+        assertFalse(expired.isFresh(NOW));
+        assertFalse(expired.isStorable(NOW));
+    }
+
+    @Test
+    public void testErrorsNotStored() {
+        final NotificationResponse failed = new NotificationResponse(Collections.emptyList(),
+                Collections.singletonList(new NotificationError("Service Unavailable", "test")));
+        final CachedServiceResponse cached = CachedServiceResponse.create(failed,
+                cacheControl("max-age=60"), NOW, DEFAULT_MAX_AGE_MILLIS);
+        assertFalse(cached.isStorable(NOW));
+    }
+
+    @Test
+    public void testRevalidate() {
+        final HttpHeaders headers = cacheControl("private, no-cache");
+        headers.setETag("\"v1\"");
+        final CachedServiceResponse cached = create(headers);
+        assertNull(create(new HttpHeaders()).getEtag());
+
+        // 304 Not Modified without an ETag keeps the one we have
+        final long later = NOW + 10000L;
+        final CachedServiceResponse revalidated = cached.revalidate(cacheControl("max-age=60"), later,
+                DEFAULT_MAX_AGE_MILLIS);
+        assertSame(response, revalidated.getResponse());
+        assertEquals("\"v1\"", revalidated.getEtag());
+        assertTrue(revalidated.isFresh(later));
+        assertEquals(60000L, revalidated.getFreshnessMillis(later));
+        assertFalse(revalidated.isPrivate());  // Its own headers apply
+
+        // ...or takes the new one
+        final HttpHeaders notModified = cacheControl("no-cache");
+        notModified.setETag("\"v2\"");
+        final CachedServiceResponse again = revalidated.revalidate(notModified, later, DEFAULT_MAX_AGE_MILLIS);
+        assertEquals("\"v2\"", again.getEtag());
+        assertFalse(again.isFresh(later));
+        assertTrue(again.isStorable(later));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private CachedServiceResponse create(HttpHeaders headers) {
+        return CachedServiceResponse.create(response, headers, NOW, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    private static HttpHeaders cacheControl(String value) {
+        final HttpHeaders rslt = new HttpHeaders();
+        rslt.setCacheControl(value);
+        return rslt;
+    }
+
+}
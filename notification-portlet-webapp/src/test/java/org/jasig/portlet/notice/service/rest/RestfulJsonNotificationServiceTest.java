@@ -0,0 +1,127 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rest;
+
+import java.util.Collections;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+import org.jasig.portlet.notice.NotificationResponse;
+import org.jasig.portlet.notice.util.UsernameFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Tests the response cache of the service:  what it keeps and when it lets go.
+ */
+public class RestfulJsonNotificationServiceTest {
+
+    private static final String SERVICE_URL = "http://localhost/notifications";
+
+    private CacheManager cacheManager;
+    private MockRestServiceServer server;
+    private RestfulJsonNotificationService service;
+
+    @Before
+    public void setUp() {
+        cacheManager = new CacheManager(new Configuration().name(getClass().getSimpleName()));
+        final Cache responseCache = new Cache("RestfulJsonNotificationService.responseCache", 100, false, false, 3600, 0);
+        cacheManager.addCache(responseCache);
+
+        final RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+
+        service = new RestfulJsonNotificationService();
+        service.setName("restfulJsonNotificationService");
+        service.setRestTemplate(restTemplate);
+        service.setResponseCache(responseCache);
+        service.setUrlParameterEvaluators(Collections.emptySet());
+        ReflectionTestUtils.setField(service, "serviceUrlsProperty", SERVICE_URL);
+        ReflectionTestUtils.setField(service, "usernameFinder", new UsernameFinder());
+        service.init();
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testNotCachedByDefault() {
+        // No Cache-Control, Expires or ETag
+        server.expect(requestTo(SERVICE_URL)).andRespond(withSuccess(json("one"), MediaType.APPLICATION_JSON));
+        server.expect(requestTo(SERVICE_URL)).andRespond(withSuccess(json("two"), MediaType.APPLICATION_JSON));
+
+        assertEquals("one", title(service.fetch(new MockHttpServletRequest())));
+        assertEquals("two", title(service.fetch(new MockHttpServletRequest())));
+        server.verify();
+    }
+
+    @Test
+    public void testRefresh() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=300");
+        server.expect(requestTo(SERVICE_URL)).andRespond(
+                withSuccess(json("one"), MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(requestTo(SERVICE_URL)).andRespond(
+                withSuccess(json("two"), MediaType.APPLICATION_JSON).headers(headers));
+
+        assertEquals("one", title(service.fetch(new MockHttpServletRequest())));
+        assertEquals("one", title(service.fetch(new MockHttpServletRequest())));  // Cached
+
+        service.refresh(new MockHttpServletRequest(), new MockHttpServletResponse());
+        final NotificationResponse refreshed = service.fetch(new MockHttpServletRequest());
+        assertTrue(refreshed.getErrors().isEmpty());
+        assertEquals("two", title(refreshed));
+        server.verify();
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static String json(String title) {
+        return "{\"categories\":[{\"title\":\"Category\",\"entries\":[{\"id\":\"1\",\"title\":\""
+                + title + "\"}]}],\"errors\":[]}";
+    }
+
+    private static String title(NotificationResponse response) {
+        return response.getCategories().get(0).getEntries().get(0).getTitle();
+    }
+
+}
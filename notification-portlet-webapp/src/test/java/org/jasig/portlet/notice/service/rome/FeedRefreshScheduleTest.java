@@ -0,0 +1,123 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rome;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FeedRefreshScheduleTest {
+
+    private static final String CONFIGURED = "http://example.org/configured.xml";
+    private static final String REQUESTED = "http://example.org/requested.xml";
+
+    private static final long RETRY_MILLIS = 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 8000L;
+    private static final long IDLE_MILLIS = 10000L;
+
+    private final FeedRefreshSchedule schedule =
+            new FeedRefreshSchedule(RETRY_MILLIS, MAX_BACKOFF_MILLIS, IDLE_MILLIS);
+
+    @Test
+    public void testBackoff() {
+        schedule.addConfigured(CONFIGURED);
+
+        // Doubles with each consecutive failure, up to the maximum
+        long now = 0L;
+        for (long delay : new long[] { 1000L, 2000L, 4000L, 8000L, 8000L }) {
+            assertTrue(schedule.start(CONFIGURED));
+            schedule.finish(CONFIGURED, false, now);
+            assertTrue(schedule.eligible(now + delay - 1).isEmpty());
+            assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(now + delay));
+            now += delay;
+        }
+
+        // Success starts over
+        assertTrue(schedule.start(CONFIGURED));
+        schedule.finish(CONFIGURED, true, now);
+        assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(now));
+        assertTrue(schedule.start(CONFIGURED));
+        schedule.finish(CONFIGURED, false, now);
+        assertTrue(schedule.eligible(now + RETRY_MILLIS - 1).isEmpty());
+        assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(now + RETRY_MILLIS));
+    }
+
+    @Test
+    public void testBackoffDoesNotOverflow() {
+        schedule.addConfigured(CONFIGURED);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(schedule.start(CONFIGURED));
+            schedule.finish(CONFIGURED, false, 0L);
+        }
+        assertTrue(schedule.eligible(MAX_BACKOFF_MILLIS - 1).isEmpty());
+        assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(MAX_BACKOFF_MILLIS));
+    }
+
+    @Test
+    public void testOneRefreshAtATime() {
+        schedule.addConfigured(CONFIGURED);
+        assertTrue(schedule.start(CONFIGURED));
+        assertFalse(schedule.start(CONFIGURED));
+        assertTrue(schedule.eligible(0L).isEmpty());
+        schedule.finish(CONFIGURED, true, 0L);
+        assertTrue(schedule.start(CONFIGURED));
+
+        // Unknown feeds can't be claimed
+        assertFalse(schedule.start(REQUESTED));
+    }
+
+    @Test
+    public void testIdleEviction() {
+        schedule.addConfigured(CONFIGURED);
+        schedule.requested(REQUESTED, 0L);
+        assertEquals(2, schedule.size());
+
+        // Requests keep the feed
+        schedule.requested(REQUESTED, 5000L);
+        assertEquals(new HashSet<>(Arrays.asList(CONFIGURED, REQUESTED)),
+                new HashSet<>(schedule.eligible(5000L + IDLE_MILLIS)));
+
+        // Idle feeds are forgotten;  configured feeds never are
+        assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(5000L + IDLE_MILLIS + 1));
+        assertEquals(1, schedule.size());
+        assertFalse(schedule.start(REQUESTED));
+        schedule.finish(REQUESTED, false, 0L);  // No effect
+        assertEquals(1, schedule.size());
+
+        // A later request brings it back
+        schedule.requested(REQUESTED, 20000L);
+        assertEquals(new HashSet<>(Arrays.asList(CONFIGURED, REQUESTED)),
+                new HashSet<>(schedule.eligible(20000L)));
+    }
+
+    @Test
+    public void testRequestedConfiguredFeed() {
+        schedule.addConfigured(CONFIGURED);
+        schedule.requested(CONFIGURED, 0L);
+        assertEquals(Collections.singletonList(CONFIGURED), schedule.eligible(IDLE_MILLIS * 10));
+        assertEquals(1, schedule.size());
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.service.rome;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class StaxFeedParserTest {
+
+    private static final String ELLIPSIS = "\u2026";
+
+    private final StaxFeedParser parser = new StaxFeedParser(100, 8192);
+
+    @Test
+    public void testRss() throws Exception {
+        final StaxFeedParser.Feed feed = parse(parser, "rss2.xml");
+        assertEquals("Campus News", feed.getTitle());  // Not the title of the image
+        assertEquals("news@example.edu (News Office)", feed.getAuthor());
+
+        // Newest first;  the item without a date is left out
+        final List<StaxFeedParser.Item> items = feed.getItems();
+        assertEquals(3, items.size());
+
+        final StaxFeedParser.Item library = items.get(0);
+        assertEquals("Library hours extended", library.getTitle());
+        assertEquals("http://news.example.edu/library-hours", library.getLink());
+        assertEquals("<p>The library is open until <em>midnight</em>.</p>", library.getBody());
+        assertEquals(date("2026-10-07T09:30:00Z"), library.getPublishedDate());
+
+        // No pubDate, but a Dublin Core date
+        final StaxFeedParser.Item parking = items.get(1);
+        assertEquals("Parking lot C closed", parking.getTitle());
+        assertEquals(date("2026-10-06T08:00:00Z"), parking.getPublishedDate());
+        assertNull(parking.getUpdatedDate());
+
+        final StaxFeedParser.Item classes = items.get(2);
+        assertEquals("Classes resume Monday", classes.getTitle());
+        assertEquals("<p>Classes resume on <b>Monday</b>.</p>", classes.getBody());
+        assertEquals("Registrar", classes.getAuthor());
+        assertEquals(date("2026-10-05T10:00:00Z").getTime(), classes.getTimestamp());
+    }
+
+    @Test
+    public void testAtom() throws Exception {
+        final StaxFeedParser.Feed feed = parse(parser, "atom.xml");
+        assertEquals("Research Updates", feed.getTitle());
+        assertEquals("Office of Research", feed.getAuthor());
+
+        final List<StaxFeedParser.Item> items = feed.getItems();
+        assertEquals(2, items.size());
+
+        // No published date;  ordered by the updated date
+        final StaxFeedParser.Item safety = items.get(0);
+        assertEquals("Lab safety training", safety.getTitle());
+        assertEquals("http://research.example.edu/safety", safety.getLink());
+        assertNull(safety.getPublishedDate());
+        assertEquals(date("2026-10-07T12:00:00Z").getTime(), safety.getTimestamp());
+        // Markup of xhtml content is kept, without the div that contains it
+        assertEquals("<p class=\"notice\">Training is <strong>required</strong> for all lab staff "
+                + "&amp; students.<br /></p>\n"
+                + "                <img src=\"http://research.example.edu/safety.png\" alt=\"Safety\" />",
+                safety.getBody());
+
+        final StaxFeedParser.Item grants = items.get(1);
+        assertEquals("Grant deadlines", grants.getTitle());
+        assertEquals("http://research.example.edu/grants", grants.getLink());  // Not the edit link
+        assertEquals("Grants Office", grants.getAuthor());
+        assertEquals("<p>Proposals are due <b>November 1</b>.</p>", grants.getBody());
+        assertEquals(date("2026-10-05T10:00:00Z"), grants.getPublishedDate());
+        assertEquals(date("2026-10-06T10:00:00Z"), grants.getUpdatedDate());
+        assertEquals(date("2026-10-05T10:00:00Z").getTime(), grants.getTimestamp());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        // Items in no particular order;  the newest 5 of them are kept
+        final StringBuilder xml = new StringBuilder("<rss><channel><title>Many</title>");
+        for (int i = 0; i < 50; i++) {
+            final int day = (i * 7) % 50 + 1;  // Each of 1..50 once
+            xml.append("<item><title>").append(day).append("</title><pubDate>")
+                    .append(Instant.parse("2026-01-01T00:00:00Z").plusSeconds(day * 86400L))
+                    .append("</pubDate></item>");
+        }
+        xml.append("</channel></rss>");
+
+        final StaxFeedParser.Feed feed = new StaxFeedParser(5, 8192).parse(new StringReader(xml.toString()));
+        final List<String> titles = feed.getItems().stream()
+                .map(StaxFeedParser.Item::getTitle)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("50", "49", "48", "47", "46"), titles);
+    }
+
+    @Test
+    public void testBodyTruncation() throws Exception {
+        final StaxFeedParser truncating = new StaxFeedParser(100, 20);
+
+        // Short enough
+        assertEquals("<p>Short</p>", body(truncating, "&lt;p&gt;Short&lt;/p&gt;"));
+
+        // Cut at the limit
+        assertEquals("abcdefghijklmnopqrst" + ELLIPSIS, body(truncating, "abcdefghijklmnopqrstuvwxyz"));
+
+        // The limit falls within a tag, which is dropped
+        final String cut = body(truncating, "Some text &lt;a href=\"http://example.edu/\"&gt;link&lt;/a&gt;");
+        assertEquals("Some text " + ELLIPSIS, cut);
+        assertFalse(cut.contains("<"));
+
+        // The same applies to xhtml content
+        final String xhtml = "<feed xmlns=\"http://www.w3.org/2005/Atom\"><entry><title>X</title>"
+                + "<updated>2026-10-05T10:00:00Z</updated><content type=\"xhtml\">"
+                + "<div xmlns=\"http://www.w3.org/1999/xhtml\">Some text <a href=\"http://example.edu/\">"
+                + "link</a></div></content></entry></feed>";
+        assertEquals("Some text " + ELLIPSIS,
+                truncating.parse(new StringReader(xhtml)).getItems().get(0).getBody());
+    }
+
+    @Test
+    public void testExternalEntitiesRejected() {
+        final String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE rss [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+                + "<rss><channel><title>&xxe;</title></channel></rss>";
+        assertRejected(xml);
+    }
+
+    @Test
+    public void testDoctypeDeclarationsRejected() {
+        // Internal entities would allow entity expansion attacks
+        final String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE rss [<!ENTITY a \"aaaaaaaaaa\"><!ENTITY b \"&a;&a;&a;&a;&a;&a;&a;&a;&a;&a;\">]>"
+                + "<rss><channel><title>&b;</title></channel></rss>";
+        assertRejected(xml);
+    }
+
+    @Test
+    public void testExternalDtdNotLoaded() throws Exception {
+        // RSS 0.91 feeds commonly reference this DTD;  it is not fetched
+        final String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE rss PUBLIC \"-//Netscape Communications//DTD RSS 0.91//EN\" "
+                + "\"http://localhost:1/rss-0.91.dtd\">"
+                + "<rss version=\"0.91\"><channel><title>Old</title></channel></rss>";
+        assertEquals("Old", parser.parse(new StringReader(xml)).getTitle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimits() {
+        new StaxFeedParser(0, 8192);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private StaxFeedParser.Feed parse(StaxFeedParser parser, String resource) throws Exception {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(resource),
+                StandardCharsets.UTF_8)) {
+            return parser.parse(reader);
+        }
+    }
+
+    private static String body(StaxFeedParser parser, String description) throws XMLStreamException {
+        final String xml = "<rss><channel><item><description>" + description + "</description>"
+                + "<pubDate>Mon, 05 Oct 2026 10:00:00 GMT</pubDate></item></channel></rss>";
+        return parser.parse(new StringReader(xml)).getItems().get(0).getBody();
+    }
+
+    private void assertRejected(String xml) {
+        try {
+            final StaxFeedParser.Feed feed = parser.parse(new StringReader(xml));
+            fail("Entity was expanded:  " + feed.getTitle());
+        } catch (XMLStreamException e) {
+            // Expected
+        }
+    }
+
+    private static Date date(String instant) {
+        return Date.from(Instant.parse(instant));
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jasig.portlet.notice.NotificationEntry;
+import org.jasig.portlet.notice.NotificationState;
+import org.jasig.portlet.notice.rest.AddresseeDTO;
+import org.jasig.portlet.notice.rest.EntryDTO;
+import org.jasig.portlet.notice.rest.EventDTO;
+import org.jasig.portlet.notice.rest.RecipientDTO;
+import org.jasig.portlet.notice.rest.RecipientType;
+import org.jasig.portlet.notice.service.jpa.IJpaNotificationRESTService;
+import org.jasig.portlet.notice.service.jpa.JpaNotificationService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.jasig.portlet.notice.NotificationState.ISSUED;
+import static org.jasig.portlet.notice.NotificationState.READ;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link IJpaServices#getHistories(java.util.Collection, String)} against the embedded
+ * database, with more entries than fit in one IN clause.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class JpaServicesTest {
+
+    private static final int ENTRY_COUNT = 1100;  // More than two chunks of ids
+
+    @Autowired
+    private IJpaServices jpaServices;
+
+    @Autowired
+    private IJpaNotificationRESTService restService;
+
+    @Test
+    public void testGetHistories() {
+        // JPA-backed entries ISSUED to alice, some of which she has read since
+        final List<EntryDTO> dtos = new ArrayList<>(ENTRY_COUNT);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            dtos.add(entry("jpa" + i, "alice"));
+        }
+        final List<Long> ids = restService.createNotifications(dtos).getNotificationIds();
+        final Timestamp later = new Timestamp(System.currentTimeMillis() + 60000L);
+        final List<Integer> read = Arrays.asList(0, 499, 500, 501, 999, ENTRY_COUNT - 1);
+        for (int i : read) {
+            final EventDTO event = new EventDTO();
+            event.setState(READ);
+            event.setTimestamp(later);
+            event.setUsername("alice");
+            restService.createEvent(ids.get(i), event);
+        }
+
+        final List<NotificationEntry> entries = new ArrayList<>();
+        ids.forEach(id -> entries.add(notificationEntry(JpaNotificationService.ID_PREFIX + id)));
+
+        // External entries, only one of which has a proxy (and history)
+        final NotificationEntry withProxy = notificationEntry("external-read");
+        jpaServices.applyState(withProxy, "alice", READ);
+        entries.add(withProxy);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            entries.add(notificationEntry("external" + i));
+        }
+
+        // Ignored, or without history
+        entries.add(notificationEntry(null));
+        entries.add(notificationEntry(JpaNotificationService.ID_PREFIX + "malformed"));
+
+        final Map<String,List<EventDTO>> histories = jpaServices.getHistories(entries, "alice");
+        assertEquals(entries.size() - 1, histories.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final List<NotificationState> expected = read.contains(i)
+                    ? Arrays.asList(ISSUED, READ)
+                    : Collections.singletonList(ISSUED);
+            assertEquals("jpa" + i, expected, states(histories.get(JpaNotificationService.ID_PREFIX + ids.get(i))));
+        }
+        assertEquals(Collections.singletonList(READ), states(histories.get("external-read")));
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            assertTrue(histories.get("external" + i).isEmpty());
+        }
+        assertTrue(histories.get(JpaNotificationService.ID_PREFIX + "malformed").isEmpty());
+
+        // The same as the history of each entry on its own
+        for (NotificationEntry entry : Arrays.asList(entries.get(0), entries.get(500), withProxy)) {
+            assertEquals(states(jpaServices.getHistory(entry, "alice")), states(histories.get(entry.getId())));
+        }
+
+        // Nobody else has history
+        jpaServices.getHistories(entries, "bob").values().forEach(history -> assertTrue(history.isEmpty()));
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static EntryDTO entry(String title, String username) {
+        final EntryDTO rslt = new EntryDTO();
+        rslt.setTitle(title);
+        rslt.setSource("test");
+        rslt.setPriority(1);
+        rslt.setBody("Body of " + title);
+        final RecipientDTO recipient = new RecipientDTO();
+        recipient.setUsername(username);
+        final AddresseeDTO addressee = new AddresseeDTO();
+        addressee.setName(title + " recipients");
+        addressee.setType(RecipientType.INDIVIDUAL);
+        addressee.setRecipients(Collections.singleton(recipient));
+        rslt.setAddressees(Collections.singleton(addressee));
+        return rslt;
+    }
+
+    private static NotificationEntry notificationEntry(String id) {
+        final NotificationEntry rslt = new NotificationEntry();
+        rslt.setId(id);
+        rslt.setSource("external");
+        rslt.setTitle("Title of " + id);
+        return rslt;
+    }
+
+    private static List<NotificationState> states(List<EventDTO> history) {
+        return history.stream()
+                .map(EventDTO::getState)
+                .collect(Collectors.toList());
+    }
+
+}
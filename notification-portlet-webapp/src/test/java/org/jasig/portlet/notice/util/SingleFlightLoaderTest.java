@@ -0,0 +1,166 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightLoaderTest {
+
+    private static final int THREADS = 8;
+
+    private final SingleFlightLoader<String,String> loader = new SingleFlightLoader<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOneLoadPerKey() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Future<String> first = executor.submit(() -> loader.load("key", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(loading.await(5L, TimeUnit.SECONDS));
+
+        // Everyone else arrives while the load is underway
+        final List<Future<String>> others = new ArrayList<>();
+        for (int i = 1; i < THREADS; i++) {
+            others.add(executor.submit(() -> loader.load("key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        awaitCoalesced(THREADS - 1);
+        release.countDown();
+
+        assertEquals("value", first.get(5L, TimeUnit.SECONDS));
+        for (Future<String> f : others) {
+            assertEquals("value", f.get(5L, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1L, loader.getLoadedCount());
+        assertEquals(THREADS - 1, loader.getCoalescedCount());
+
+        // Loads after that one has finished are loads of their own
+        assertEquals("again", loader.load("key", () -> "again"));
+        assertEquals(2L, loader.getLoadedCount());
+    }
+
+    @Test
+    public void testKeysLoadIndependently() {
+        assertEquals("outer+inner", loader.load("outer", () -> "outer+" + loader.load("inner", () -> "inner")));
+        assertEquals(2L, loader.getLoadedCount());
+        assertEquals(0L, loader.getCoalescedCount());
+    }
+
+    @Test
+    public void testExceptionPropagatedToWaiters() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("Failed to load");
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Future<String> first = executor.submit(() -> loader.load("key", () -> {
+            loading.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertTrue(loading.await(5L, TimeUnit.SECONDS));
+
+        final List<Future<String>> others = new ArrayList<>();
+        for (int i = 1; i < THREADS; i++) {
+            others.add(executor.submit(() -> loader.load("key", () -> "other")));
+        }
+        awaitCoalesced(THREADS - 1);
+        release.countDown();
+
+        others.add(first);
+        for (Future<String> f : others) {
+            try {
+                f.get(5L, TimeUnit.SECONDS);
+                fail("The failure was not propagated");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testKeyReleasedAfterFailure() {
+        try {
+            loader.load("key", () -> {
+                throw new IllegalStateException("Failed to load");
+            });
+            fail("The failure was not propagated");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        // The next request loads again, rather than getting the failure
+        assertEquals("value", loader.load("key", () -> "value"));
+        assertEquals(2L, loader.getLoadedCount());
+        assertEquals(0L, loader.getCoalescedCount());
+    }
+
+    /*
+     * Implementation
+     */
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (loader.getCoalescedCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Only " + loader.getCoalescedCount() + " of " + count + " threads are waiting");
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
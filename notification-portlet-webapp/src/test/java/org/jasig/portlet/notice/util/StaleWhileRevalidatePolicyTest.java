@@ -0,0 +1,204 @@
+/*
+ * Licensed to Apereo under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.
+ * Apereo licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License.  You may obtain a
+ * copy of the License at the following location:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jasig.portlet.notice.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StaleWhileRevalidatePolicyTest {
+
+    private static final int TTL_SECONDS = 100;
+    private static final int STALE_SECONDS = 30;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final Executor executor = tasks::add;
+
+    @Test
+    public void testStaleWindow() {
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 0);
+        final Element element = policy.createElement(cache(TTL_SECONDS), "key", "value");
+        assertEquals(TTL_SECONDS + STALE_SECONDS, element.getTimeToLive());
+        assertFalse(policy.isStale(element));
+    }
+
+    @Test
+    public void testJitter() {
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 20);
+        final Cache cache = cache(TTL_SECONDS);
+        final Set<Integer> lifespans = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            final int ttl = policy.createElement(cache, "key", "value").getTimeToLive();
+            assertTrue("Too short:  " + ttl, ttl >= TTL_SECONDS * 80 / 100 + STALE_SECONDS);
+            assertTrue("Too long:  " + ttl, ttl <= TTL_SECONDS + STALE_SECONDS);
+            lifespans.add(ttl);
+        }
+        assertTrue("Lifespans are not spread out:  " + lifespans, lifespans.size() > 1);
+
+        // The fresh lifetime is never shortened to nothing
+        final StaleWhileRevalidatePolicy full = new StaleWhileRevalidatePolicy(executor, 0, 100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(full.createElement(cache(1), "key", "value").getTimeToLive() >= 1);
+        }
+    }
+
+    @Test
+    public void testBecomesStale() throws InterruptedException {
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 0);
+        final Element element = policy.createElement(cache(1), "key", "value");
+        assertFalse(policy.isStale(element));
+        Thread.sleep(1100L);
+        assertTrue(policy.isStale(element));
+    }
+
+    @Test
+    public void testElementsWithoutPolicy() {
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 0);
+        assertFalse(policy.isStale(new Element("key", "value")));
+
+        final Cache eternal = new Cache("eternal", 100, false, true, 0, 0);
+        final Element element = policy.createElement(eternal, "key", "value");
+        assertFalse(element.isLifespanSet());
+        assertFalse(policy.isStale(element));
+    }
+
+    @Test
+    public void testRevalidate() {
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 0);
+        final AtomicInteger reloads = new AtomicInteger();
+
+        // One reload per key at a time
+        policy.revalidate("a", reloads::incrementAndGet);
+        policy.revalidate("a", reloads::incrementAndGet);
+        policy.revalidate("b", reloads::incrementAndGet);
+        assertEquals(2, tasks.size());
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        assertEquals(2, reloads.get());
+
+        // A failed reload releases the key
+        policy.revalidate("a", () -> {
+            throw new IllegalStateException("Failed to reload");
+        });
+        tasks.forEach(Runnable::run);  // Logged, not thrown
+        tasks.clear();
+        policy.revalidate("a", reloads::incrementAndGet);
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(3, reloads.get());
+    }
+
+    @Test
+    public void testRevalidateRejected() {
+        final AtomicInteger rejections = new AtomicInteger(1);
+        final Executor saturated = task -> {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException("Saturated");
+            }
+            tasks.add(task);
+        };
+        final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(saturated, STALE_SECONDS, 0);
+
+        // A rejected reload releases the key
+        policy.revalidate("a", () -> {});
+        assertTrue(tasks.isEmpty());
+        policy.revalidate("a", () -> {});
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void testSaturatedExecutor() throws Exception {
+        // Shaped like notificationRevalidationExecutor, only smaller
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final Runnable blocked = () -> {
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            final StaleWhileRevalidatePolicy policy = new StaleWhileRevalidatePolicy(pool, STALE_SECONDS, 0);
+            policy.revalidate("a", blocked);  // Running
+            policy.revalidate("b", blocked);  // Queued
+
+            // The caller neither waits for the pool nor runs the reload itself
+            final Set<Thread> reloadThreads = ConcurrentHashMap.newKeySet();
+            final long start = System.currentTimeMillis();
+            policy.revalidate("c", () -> reloadThreads.add(Thread.currentThread()));
+            assertTrue(System.currentTimeMillis() - start < 1000L);
+            assertTrue(reloadThreads.isEmpty());
+
+            // The skipped key is reloaded once the pool has room
+            unblock.countDown();
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (pool.getCompletedTaskCount() < 2L && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            final CountDownLatch reloaded = new CountDownLatch(1);
+            policy.revalidate("c", () -> {
+                reloadThreads.add(Thread.currentThread());
+                reloaded.countDown();
+            });
+            assertTrue(reloaded.await(5L, TimeUnit.SECONDS));
+            assertFalse(reloadThreads.contains(Thread.currentThread()));
+        } finally {
+            unblock.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeStaleSeconds() {
+        new StaleWhileRevalidatePolicy(executor, -1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJitterOutOfRange() {
+        new StaleWhileRevalidatePolicy(executor, STALE_SECONDS, 101);
+    }
+
+    /*
+     * Implementation
+     */
+
+    private static Cache cache(int timeToLiveSeconds) {
+        return new Cache("test", 100, false, false, timeToLiveSeconds, 0);
+    }
+
+}